@@ -23,6 +23,8 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -49,6 +51,13 @@ public class Automaton implements Cloneable {
      */
     private boolean deterministic;
 
+    /**
+     * Index mapping each state to the states having a transition towards it. <br>
+     * It is <code>null</code> until {@link #getPredecessors(State)} is first called, then it is maintained by the methods
+     * adding transitions and removing states
+     */
+    private Map<State,Set<State>> predecessors;
+
 
     /**
      *  Constructs an empty automaton
@@ -200,6 +209,7 @@ public class Automaton implements Cloneable {
         Transition t = new Transition(orig,dest,values);
 
         deterministic &= !orig.addTransition(t);
+        indexPredecessor(orig, dest);
     }
 
     /**
@@ -213,6 +223,7 @@ public class Automaton implements Cloneable {
     {
         Transition t = new Transition(orig,dest,values);
         deterministic &= !orig.addTransition(t);
+        indexPredecessor(orig, dest);
     }
 
     /**
@@ -226,6 +237,7 @@ public class Automaton implements Cloneable {
         Transition t = new Transition(orig,dest,values);
 
         deterministic &= !orig.addTransition(t);
+        indexPredecessor(orig, dest);
     }
 
     /**
@@ -238,6 +250,60 @@ public class Automaton implements Cloneable {
         Transition t = new Transition(orig,dest);
         orig.addTransition(t);
         deterministic = false;
+        indexPredecessor(orig, dest);
+    }
+
+    /**
+     * Returns the states having a transition, carrying values or epsilon, towards the given state. <br>
+     * The first call builds a predecessor index that is then maintained by {@link #addTransition(State, State, IntervalSet)},
+     * {@link #addEpsilonTransition(State, State)}, {@link #removeDeadStates()} and {@link #reIndex()}.
+     * Transitions added or removed directly in the map returned by {@link State#getTransitions()} are not tracked.
+     * @param state a {@link fr.menana.automaton.State} of this automaton
+     * @return an unmodifiable set of {@link fr.menana.automaton.State}
+     */
+    public Set<State> getPredecessors(State state) {
+        if (this.predecessors == null) {
+            this.predecessors = new IdentityHashMap<>();
+            for (State s : this.states) {
+                for (State dest : s.transitions.keySet())
+                    indexPredecessor(s, dest);
+            }
+        }
+        Set<State> preds = this.predecessors.get(state);
+        return preds == null ? Collections.emptySet() : Collections.unmodifiableSet(preds);
+    }
+
+    private void indexPredecessor(State orig, State dest) {
+        if (this.predecessors != null) {
+            Set<State> preds = this.predecessors.get(dest);
+            if (preds == null) {
+                preds = Collections.newSetFromMap(new IdentityHashMap<>());
+                this.predecessors.put(dest, preds);
+            }
+            preds.add(orig);
+        }
+    }
+
+    private void unindexPredecessor(State orig, State dest) {
+        if (this.predecessors != null) {
+            Set<State> preds = this.predecessors.get(dest);
+            if (preds != null)
+                preds.remove(orig);
+        }
+    }
+
+    /**
+     * Replaces the values of every transition by their interned {@link fr.menana.automaton.IntervalSet}. <br>
+     * Identical labels are then shared by all the transitions, and by the clones of this automaton.
+     * @see fr.menana.automaton.IntervalSet#intern()
+     */
+    public void internLabels() {
+        for (State s : this.states) {
+            for (Transition t : s.transitions.values()) {
+                if (t.values != null)
+                    t.values = t.values.intern();
+            }
+        }
     }
 
     /**
@@ -248,6 +314,115 @@ public class Automaton implements Cloneable {
         return deterministic;
     }
 
+    /**
+     * Sets the determinism flag of an automaton whose transitions were added without checking it
+     * @param deterministic <code>true</code> if the automaton is deterministic
+     */
+    void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Returns a {@link fr.menana.automaton.CompactAutomaton} with the same states and transitions as this automaton
+     * @see fr.menana.automaton.CompactAutomaton#fromAutomaton(Automaton)
+     * @return a new compact automaton
+     */
+    public CompactAutomaton toCompact() {
+        return CompactAutomaton.fromAutomaton(this);
+    }
+
+    /**
+     * Returns an immutable snapshot of this automaton, which later changes of this automaton do not affect. <br>
+     * The snapshot only holds final arrays and interned labels, hence it is safely published and any number of threads may
+     * match words against it and traverse it concurrently without locking
+     * @see fr.menana.automaton.CompactAutomaton
+     * @return a new frozen automaton, with the same states in the same order
+     */
+    public CompactAutomaton freeze() {
+        return toCompact();
+    }
+
+    /**
+     * Counts the words of length n accepted by this automaton, determinizing it first if needed
+     * @see fr.menana.automaton.WordCounter#count(AutomatonView, long)
+     * @param n the length of the words
+     * @return the number of accepted words of length n
+     */
+    public BigInteger countWords(long n) {
+        return WordCounter.count(this.isDeterministic() ? this.toCompact() : this.determinize().toCompact(), n);
+    }
+
+    /**
+     * Counts the words of length at most n accepted by this automaton, determinizing it first if needed
+     * @see fr.menana.automaton.WordCounter#countUpTo(AutomatonView, long)
+     * @param n the maximum length of the words
+     * @return the number of accepted words of length lower than or equal to n
+     */
+    public BigInteger countWordsUpTo(long n) {
+        return WordCounter.countUpTo(this.isDeterministic() ? this.toCompact() : this.determinize().toCompact(), n);
+    }
+
+    /**
+     * Returns a sampler drawing uniformly the words of the given length accepted by this automaton, determinizing it first if
+     * needed
+     * @see fr.menana.automaton.WordSampler
+     * @param length the length of the words
+     * @return a new sampler
+     */
+    public WordSampler sampler(int length) {
+        return new WordSampler(this.isDeterministic() ? this.toCompact() : this.determinize().toCompact(), length);
+    }
+
+    /**
+     * Returns a lazy iterator over the words accepted by this automaton in shortlex order, determinizing it first if needed
+     * @see fr.menana.automaton.WordIterator
+     * @return a new iterator
+     */
+    public WordIterator words() {
+        return words(WordIterator.Order.SHORTLEX, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a lazy iterator over the words accepted by this automaton whose length lies between the given bounds,
+     * determinizing it first if needed
+     * @see fr.menana.automaton.WordIterator
+     * @param order the order of enumeration
+     * @param minLength the minimum length of the words
+     * @param maxLength the maximum length of the words, {@link Integer#MAX_VALUE} for no bound
+     * @return a new iterator
+     */
+    public WordIterator words(WordIterator.Order order, int minLength, int maxLength) {
+        return new WordIterator(this.isDeterministic() ? this.toCompact() : this.determinize().toCompact(), order, minLength, maxLength);
+    }
+
+    /**
+     * Unrolls this automaton over the words of the given length, determinizing it first if it has epsilon transitions
+     * @see fr.menana.automaton.LayeredGraph#unroll(AutomatonView, int)
+     * @param length the length of the words
+     * @return a new pruned layered graph
+     */
+    public LayeredGraph unroll(int length) {
+        return unroll(new IntervalSet[length]);
+    }
+
+    /**
+     * Unrolls this automaton over the words whose i-th value belongs to the i-th domain, determinizing it first if it has
+     * epsilon transitions
+     * @see fr.menana.automaton.LayeredGraph#unroll(AutomatonView, IntervalSet...)
+     * @param domains the domain of each position of the words, a null domain standing for any integer
+     * @return a new pruned layered graph
+     */
+    public LayeredGraph unroll(IntervalSet... domains) {
+        CompactAutomaton compact = this.toCompact();
+        for (int e = 0; e < compact.getNbEdges(); ++e) {
+            if (compact.getLabelId(e) == AutomatonView.EPSILON) {
+                compact = this.determinize().toCompact();
+                break;
+            }
+        }
+        return LayeredGraph.unroll(compact, domains);
+    }
+
     /**
      * Checks if a word given as an int array is a word in the language defined by this automaton
      * @param word a word as an int array
@@ -279,6 +454,16 @@ public class Automaton implements Cloneable {
         return Operation.minimize(this);
     }
 
+    /**
+     * Calls {@link fr.menana.automaton.Operation#minimize(Automaton, Operation.MINIMIZATION_ALGO)} on this automaton
+     * @see fr.menana.automaton.Operation#minimize(Automaton, Operation.MINIMIZATION_ALGO)
+     * @param method the minimization algorithm to use
+     * @return a new automaton resulting of the minimization
+     */
+    public Automaton minimize(Operation.MINIMIZATION_ALGO method) {
+        return Operation.minimize(this, method);
+    }
+
     /**
      * Calls {@link fr.menana.automaton.Operation#revert(Automaton)} on this automaton
      * @see fr.menana.automaton.Operation#revert(Automaton)
@@ -298,6 +483,16 @@ public class Automaton implements Cloneable {
     public Automaton concatenate(Automaton other) {
         return Operation.concatenate(this, other);}
 
+    /**
+     * Calls {@link fr.menana.automaton.Operation#concatenate(Automaton, Automaton, Operation.MINIMIZATION_ALGO)} on this automaton and the given one
+     * @see fr.menana.automaton.Operation#concatenate(Automaton, Automaton, Operation.MINIMIZATION_ALGO)
+     * @param other the automaton to append
+     * @param method the minimization algorithm to use
+     * @return a new automaton resulting of the concatenation
+     */
+    public Automaton concatenate(Automaton other, Operation.MINIMIZATION_ALGO method) {
+        return Operation.concatenate(this, other, method);}
+
     /**
      * Calls {@link fr.menana.automaton.Operation#union(Automaton, Automaton)} on this automaton and the given one
      * @see fr.menana.automaton.Operation#union(Automaton, Automaton)
@@ -308,6 +503,16 @@ public class Automaton implements Cloneable {
     public Automaton union(Automaton other) {
         return Operation.union(this, other);}
 
+    /**
+     * Calls {@link fr.menana.automaton.Operation#union(Automaton, Automaton, Operation.MINIMIZATION_ALGO)} on this automaton and the given one
+     * @see fr.menana.automaton.Operation#union(Automaton, Automaton, Operation.MINIMIZATION_ALGO)
+     * @param other the automaton the union is performed with
+     * @param method the minimization algorithm to use
+     * @return a new automaton resulting of the union
+     */
+    public Automaton union(Automaton other, Operation.MINIMIZATION_ALGO method) {
+        return Operation.union(this, other, method);}
+
     /**
      * Calls {@link fr.menana.automaton.Operation#complement(Automaton)} on this automaton
      * @see fr.menana.automaton.Operation#complement(Automaton)
@@ -316,6 +521,10 @@ public class Automaton implements Cloneable {
     @SuppressWarnings("unused")
     public Automaton complement() { return Operation.complement(this);}
 
+    /**
+     * Removes the transitions towards the states from which no accepting state can be reached, then removes the states
+     * that are not reachable anymore from the initial state
+     */
     public void removeDeadStates() {
         Set<State> used = this.getUseFulStates();
       //  System.out.println(this);
@@ -326,6 +535,7 @@ public class Automaton implements Cloneable {
                 if (!used.contains(next)) {
                //     System.out.println("REM");
                     it.remove();
+                    unindexPredecessor(s, next);
                 }
             }
         }
@@ -334,34 +544,24 @@ public class Automaton implements Cloneable {
       //  System.out.println("REINDEX : "+this);
     }
 
+    /**
+     * Returns the states from which an accepting state can be reached, using the predecessor index
+     * @see #getPredecessors(State)
+     * @return the set of co-reachable {@link fr.menana.automaton.State}
+     */
     public Set<State> getUseFulStates() {
         if (this.getNbStates() == 0)
             return new HashSet<>();
         else {
             Set<State> useful = new HashSet<>();
-            Stack<State> toTest = new Stack<>();
-            Map<State,Set<Transition>> reverse = new HashMap<>();
-            List<Transition> trs = this.getAllTransitions();
-            for (Transition tr : trs) {
-                if (!reverse.containsKey(tr.dest)) {
-                    reverse.put(tr.dest,new HashSet<>());
-                }
-                reverse.get(tr.dest).add(tr);
-            }
-            toTest.addAll(this.getAcceptList().stream().collect(Collectors.toList()));
+            ArrayDeque<State> toTest = new ArrayDeque<>(this.getAcceptList());
+            useful.addAll(toTest);
             while (!toTest.isEmpty()) {
                 State s = toTest.pop();
-                useful.add(s);
-                if (reverse.containsKey(s)) {
-                    for (Iterator<Transition> it = reverse.get(s).iterator(); it.hasNext(); ) {
-                        Transition tmp = it.next();
-                        if (tmp != null) {
-                            toTest.push(tmp.orig);
-                            it.remove();
-                        }
-                    }
+                for (State pred : this.getPredecessors(s)) {
+                    if (useful.add(pred))
+                        toTest.push(pred);
                 }
-
             }
             return useful;
         }
@@ -378,6 +578,7 @@ public class Automaton implements Cloneable {
             clone.states = new ArrayList<>(this.states.size());
             clone.deterministic = this.deterministic;
             clone.initIndex = this.initIndex;
+            clone.predecessors = null;
             for (int i = 0 ; i < this.states.size(); ++i)
                 clone.addState();
             for (State s : this.states) {
@@ -462,6 +663,15 @@ public class Automaton implements Cloneable {
             for (State s : this.states)
                 s.transitions.keySet().removeIf(st -> st.index == Integer.MAX_VALUE);
 
+            if (this.predecessors != null) {
+                for (State s : this.states) {
+                    if (s.index == Integer.MAX_VALUE) {
+                        this.predecessors.remove(s);
+                        for (State next : s.transitions.keySet())
+                            unindexPredecessor(s, next);
+                    }
+                }
+            }
             this.states.removeIf(s -> s.index == Integer.MAX_VALUE);
         }
 
@@ -469,15 +679,13 @@ public class Automaton implements Cloneable {
 
     /**
      * Generates a Graphviz dotty file that pictures the current automaton
+     * @see fr.menana.automaton.DotWriter
      * @param filename the filename
      */
     @SuppressWarnings("unused")
     public void toDotty(String filename) {
-        String s = this.toDot();
-        try {
-            BufferedWriter bw = new BufferedWriter(new FileWriter(new File(filename)));
-            bw.write(s);
-            bw.close();
+        try (BufferedWriter bw = new BufferedWriter(new FileWriter(new File(filename)))) {
+            new DotWriter().write(this, bw);
         } catch (IOException e) {
             System.err.println("Unable to write dotty file " + filename);
         }
@@ -485,50 +693,17 @@ public class Automaton implements Cloneable {
 
     /**
      * Returns a {@link java.lang.String} representing the automaton in dot format
+     * @see fr.menana.automaton.DotWriter
      * @return a {@link java.lang.String} in Graphviz dot format
      */
     public String toDot() {
-        StringBuilder b = new StringBuilder("digraph Automaton {\n");
-        b.append(" rankdir = LR;\n");
-        List<State> states = this.getStates();
-        for (State s : states) {
-            int idx = s.getIndex();
-            b.append(" ").append(idx);
-            if (s.isAccept())
-                b.append(" [shape=doublecircle];\n");
-            else
-                b.append(" [shape=circle];\n");
-            if (s.isInitial()) {
-                b.append(" initial [shape=plaintext,label=\"\"];\n");
-                b.append(" initial -> ").append(idx).append("\n");
-            }
-            for (Transition t : s.getTransitions().values()) {
-                b.append(" ").append(idx);
-                appendDot(t, b);
-            }
-        }
-        return b.append("}\n").toString();
-    }
-
-
-    private void appendDot(Transition t, StringBuilder b) {
-        int destIdx = t.dest.getIndex();
-        b.append(" -> ").append(destIdx).append(" [label=\"");
-        if (t.values == null && t.hasEpsilon())
-            b.append("{eps}");
-        else {
-            b.append("{");
-                for (Interval i : t.getIntervals()) {
-                    b.append(i);
-                    b.append(",");
-                }
-            if (b.charAt(b.length()-1) == ',')
-                b.deleteCharAt(b.length()-1);
-
-            b.append("}");
-
+        StringWriter writer = new StringWriter();
+        try {
+            new DotWriter().write(this, writer);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
-        b.append("\"]\n");
+        return writer.toString();
     }
 
     @Override
@@ -580,4 +755,14 @@ public class Automaton implements Cloneable {
         return RegExpParser.toDFA(regexp);
     }
 
+    /**
+     * Constucts an DFA from a regexp given as a {@link java.lang.String}, minimized with the given algorithm
+     * @param regexp a regular expression
+     * @param method the minimization algorithm to use
+     * @return a new deterministic automaton recognizing the same language as the regular expression
+     */
+    public static Automaton dfaFromString(String regexp, Operation.MINIMIZATION_ALGO method) {
+        return RegExpParser.toDFA(regexp, method);
+    }
+
 }
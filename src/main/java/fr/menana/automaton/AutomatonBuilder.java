@@ -0,0 +1,395 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.*;
+
+/**
+ * A builder to construct large automata from bulk edges. <br>
+ * States are identified by integers. Edges are only recorded when added : the determinism detection, the merging of the
+ * labels of parallel edges and the indexing of the outgoing edges of each state are deferred to a single pass in
+ * {@link #buildCompact()} or {@link #build()}. That pass groups the edges with a counting sort on their origin and a sort
+ * of the edges of each state, hence it runs in O(e log d) for e edges and an out-degree d, whereas adding the same edges
+ * with {@link fr.menana.automaton.Automaton#addTransition(State, State, IntervalSet)} costs O(d) per edge.
+ */
+public class AutomatonBuilder {
+
+    /**
+     * The number of states
+     */
+    private int nbStates;
+
+    /**
+     * The index of the initial state, -1 if not set
+     */
+    private int initIndex;
+
+    /**
+     * The accepting states
+     */
+    private BitSet accept;
+
+    /**
+     * The number of labelled edges
+     */
+    private int nbEdges;
+
+    /**
+     * The origin, destination, lower and upper bound of the labelled edges
+     */
+    private int[] origs, dests, mins, maxs;
+
+    /**
+     * The number of epsilon edges
+     */
+    private int nbEpsilons;
+
+    /**
+     * The origin and destination of the epsilon edges
+     */
+    private int[] epsOrigs, epsDests;
+
+    /**
+     * Constructs an empty builder
+     */
+    public AutomatonBuilder() {
+        this(16);
+    }
+
+    /**
+     * Constructs an empty builder sized for the given number of edges
+     * @param expectedEdges the expected number of labelled edges
+     */
+    public AutomatonBuilder(int expectedEdges) {
+        int capacity = Math.max(expectedEdges, 1);
+        this.initIndex = -1;
+        this.accept = new BitSet();
+        this.origs = new int[capacity];
+        this.dests = new int[capacity];
+        this.mins = new int[capacity];
+        this.maxs = new int[capacity];
+        this.epsOrigs = new int[4];
+        this.epsDests = new int[4];
+    }
+
+    /**
+     * Adds a new state
+     * @return the index of the new state
+     */
+    public int addState() {
+        return nbStates++;
+    }
+
+    /**
+     * Adds several new states, whose indexes are consecutive
+     * @param nb the number of states to add
+     * @return the index of the first new state
+     */
+    public int addStates(int nb) {
+        int first = nbStates;
+        nbStates += nb;
+        return first;
+    }
+
+    /**
+     * Returns the number of states added so far
+     * @return the number of states
+     */
+    public int getNbStates() {
+        return nbStates;
+    }
+
+    /**
+     * Sets the initial state
+     * @param state the index of the initial state
+     */
+    public void setInitial(int state) {
+        check(state);
+        this.initIndex = state;
+    }
+
+    /**
+     * Sets a state to be accepting
+     * @param state the index of the state
+     */
+    public void setAccept(int state) {
+        this.setAccept(state, true);
+    }
+
+    /**
+     * Sets a state to be accepting or not
+     * @param state the index of the state
+     * @param accept <code>true</code> if the state is accepting
+     */
+    public void setAccept(int state, boolean accept) {
+        check(state);
+        this.accept.set(state, accept);
+    }
+
+    /**
+     * Adds an edge carrying a single value
+     * @param orig the index of the origin state
+     * @param dest the index of the destination state
+     * @param value the value of the edge
+     */
+    public void addEdge(int orig, int dest, int value) {
+        this.addEdge(orig, dest, value, value);
+    }
+
+    /**
+     * Adds an edge carrying an interval of values
+     * @param orig the index of the origin state
+     * @param dest the index of the destination state
+     * @param min the lower bound of the values
+     * @param max the upper bound of the values
+     */
+    public void addEdge(int orig, int dest, int min, int max) {
+        check(orig);
+        check(dest);
+        if (nbEdges == origs.length) {
+            int capacity = origs.length + (origs.length >> 1) + 1;
+            origs = Arrays.copyOf(origs, capacity);
+            dests = Arrays.copyOf(dests, capacity);
+            mins = Arrays.copyOf(mins, capacity);
+            maxs = Arrays.copyOf(maxs, capacity);
+        }
+        origs[nbEdges] = orig;
+        dests[nbEdges] = dest;
+        mins[nbEdges] = Math.min(min, max);
+        maxs[nbEdges++] = Math.max(min, max);
+    }
+
+    /**
+     * Adds an edge carrying the values of an {@link fr.menana.automaton.IntervalSet}
+     * @param orig the index of the origin state
+     * @param dest the index of the destination state
+     * @param values the values of the edge
+     */
+    public void addEdge(int orig, int dest, IntervalSet values) {
+        for (Interval i : values.intervals())
+            this.addEdge(orig, dest, i.min, i.max);
+    }
+
+    /**
+     * Adds edges carrying a single value each, the i-th edge being given by the i-th element of each array
+     * @param origs the indexes of the origin states
+     * @param dests the indexes of the destination states
+     * @param values the values of the edges
+     */
+    public void addEdges(int[] origs, int[] dests, int[] values) {
+        this.addEdges(origs, dests, values, values);
+    }
+
+    /**
+     * Adds edges carrying an interval of values each, the i-th edge being given by the i-th element of each array
+     * @param origs the indexes of the origin states
+     * @param dests the indexes of the destination states
+     * @param mins the lower bounds of the values
+     * @param maxs the upper bounds of the values
+     */
+    public void addEdges(int[] origs, int[] dests, int[] mins, int[] maxs) {
+        if (origs.length != dests.length || origs.length != mins.length || origs.length != maxs.length)
+            throw new IllegalArgumentException("Edge arrays must have the same length");
+        for (int i = 0; i < origs.length; ++i)
+            this.addEdge(origs[i], dests[i], mins[i], maxs[i]);
+    }
+
+    /**
+     * Adds an epsilon edge
+     * @param orig the index of the origin state
+     * @param dest the index of the destination state
+     */
+    public void addEpsilonEdge(int orig, int dest) {
+        check(orig);
+        check(dest);
+        if (nbEpsilons == epsOrigs.length) {
+            epsOrigs = Arrays.copyOf(epsOrigs, 2 * nbEpsilons);
+            epsDests = Arrays.copyOf(epsDests, 2 * nbEpsilons);
+        }
+        epsOrigs[nbEpsilons] = orig;
+        epsDests[nbEpsilons++] = dest;
+    }
+
+    private void check(int state) {
+        if (state < 0 || state >= nbStates)
+            throw new IllegalArgumentException("Unknown state: " + state);
+    }
+
+    /**
+     * Constructs an {@link fr.menana.automaton.Automaton} from the states and edges added so far
+     * @return a new automaton
+     */
+    public Automaton build() {
+        return this.buildCompact().toAutomaton();
+    }
+
+    /**
+     * Constructs a {@link fr.menana.automaton.CompactAutomaton} from the states and edges added so far. <br>
+     * The parallel edges between two states are merged into one edge whose label is interned,
+     * and the automaton is flagged deterministic if and only if it has no epsilon edge and the labels of the outgoing edges of each state are disjoint.
+     * @return a new compact automaton
+     */
+    public CompactAutomaton buildCompact() {
+        int[] order = new int[nbEdges];
+        int[] start = groupByOrigin(origs, nbEdges, order);
+        int[] epsOrder = new int[nbEpsilons];
+        int[] epsStart = groupByOrigin(epsOrigs, nbEpsilons, epsOrder);
+
+        byte[] flags = new byte[nbStates];
+        int[] offsets = new int[nbStates + 1];
+        int[] targets = new int[nbEdges + nbEpsilons];
+        int[] labels = new int[nbEdges + nbEpsilons];
+        Map<IntervalSet,Integer> labelIds = new IdentityHashMap<>();
+        List<IntervalSet> labelTable = new ArrayList<>();
+        boolean deterministic = nbEpsilons == 0;
+
+        int maxDegree = 0;
+        for (int s = 0; s < nbStates; ++s)
+            maxDegree = Math.max(maxDegree, Math.max(start[s + 1] - start[s], epsStart[s + 1] - epsStart[s]));
+        int[] tmp = new int[maxDegree];
+        int[] mergedMins = new int[maxDegree];
+        int[] mergedMaxs = new int[maxDegree];
+        long[] stateIntervals = new long[maxDegree];
+
+        int e = 0;
+        for (int s = 0; s < nbStates; ++s) {
+            offsets[s] = e;
+            if (accept.get(s))
+                flags[s] |= CompactAutomaton.ACCEPT;
+            if (s == initIndex)
+                flags[s] |= CompactAutomaton.INITIAL;
+
+            sort(order, start[s], start[s + 1], tmp);
+            int nbStateIntervals = 0;
+            for (int i = start[s]; i < start[s + 1]; ) {
+                int dest = dests[order[i]];
+                int nbMerged = 0;
+                int curMin = mins[order[i]];
+                int curMax = maxs[order[i]];
+                for (++i; i < start[s + 1] && dests[order[i]] == dest; ++i) {
+                    int edge = order[i];
+                    if (mins[edge] <= (long) curMax + 1) {
+                        curMax = Math.max(curMax, maxs[edge]);
+                    } else {
+                        mergedMins[nbMerged] = curMin;
+                        mergedMaxs[nbMerged++] = curMax;
+                        curMin = mins[edge];
+                        curMax = maxs[edge];
+                    }
+                }
+                mergedMins[nbMerged] = curMin;
+                mergedMaxs[nbMerged++] = curMax;
+                for (int m = 0; m < nbMerged; ++m)
+                    stateIntervals[nbStateIntervals++] = ((long) mergedMins[m] << 32) | (mergedMaxs[m] & 0xffffffffL);
+
+                IntervalSet label = IntervalSet.fromSortedIntervals(mergedMins, mergedMaxs, 0, nbMerged).intern();
+                Integer id = labelIds.get(label);
+                if (id == null) {
+                    id = labelTable.size();
+                    labelIds.put(label, id);
+                    labelTable.add(label);
+                }
+                targets[e] = dest;
+                labels[e++] = id;
+            }
+            if (deterministic && nbStateIntervals > 1) {
+                Arrays.sort(stateIntervals, 0, nbStateIntervals);
+                long reached = (int) stateIntervals[0];
+                for (int i = 1; i < nbStateIntervals && deterministic; ++i) {
+                    deterministic = (stateIntervals[i] >> 32) > reached;
+                    reached = Math.max(reached, (int) stateIntervals[i]);
+                }
+            }
+
+            int nbEps = 0;
+            for (int i = epsStart[s]; i < epsStart[s + 1]; ++i)
+                tmp[nbEps++] = epsDests[epsOrder[i]];
+            Arrays.sort(tmp, 0, nbEps);
+            for (int i = 0; i < nbEps; ++i) {
+                if (i == 0 || tmp[i] != tmp[i - 1]) {
+                    targets[e] = tmp[i];
+                    labels[e++] = AutomatonView.EPSILON;
+                }
+            }
+        }
+        offsets[nbStates] = e;
+        if (e < targets.length) {
+            targets = Arrays.copyOf(targets, e);
+            labels = Arrays.copyOf(labels, e);
+        }
+        return new CompactAutomaton(flags, offsets, targets, labels, labelTable.toArray(new IntervalSet[labelTable.size()]), initIndex, deterministic);
+    }
+
+    /**
+     * Sorts edge indexes by origin state using a counting sort
+     * @param origins the origin of each edge
+     * @param nb the number of edges
+     * @param order the array receiving the sorted edge indexes
+     * @return the index in order of the first edge of each state, followed by the number of edges
+     */
+    private int[] groupByOrigin(int[] origins, int nb, int[] order) {
+        int[] start = new int[nbStates + 1];
+        for (int e = 0; e < nb; ++e)
+            ++start[origins[e] + 1];
+        for (int s = 0; s < nbStates; ++s)
+            start[s + 1] += start[s];
+        int[] pos = Arrays.copyOf(start, nbStates);
+        for (int e = 0; e < nb; ++e)
+            order[pos[origins[e]]++] = e;
+        return start;
+    }
+
+    /**
+     * Sorts a range of edge indexes by destination state, then by lower bound, using a merge sort
+     * @param order the edge indexes
+     * @param from the first index of the range
+     * @param to the index following the range
+     * @param tmp a work array whose length is at least the length of the range
+     */
+    private void sort(int[] order, int from, int to, int[] tmp) {
+        if (to - from < 16) {
+            for (int i = from + 1; i < to; ++i) {
+                int edge = order[i];
+                int j = i - 1;
+                for (; j >= from && compare(order[j], edge) > 0; --j)
+                    order[j + 1] = order[j];
+                order[j + 1] = edge;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(order, from, mid, tmp);
+        sort(order, mid, to, tmp);
+        if (compare(order[mid - 1], order[mid]) <= 0)
+            return;
+        System.arraycopy(order, from, tmp, 0, to - from);
+        int i = 0, j = mid - from, k = from;
+        while (i < mid - from && j < to - from)
+            order[k++] = compare(tmp[i], tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+        while (i < mid - from)
+            order[k++] = tmp[i++];
+        while (j < to - from)
+            order[k++] = tmp[j++];
+    }
+
+    private int compare(int e1, int e2) {
+        if (dests[e1] != dests[e2])
+            return Integer.compare(dests[e1], dests[e2]);
+        return Integer.compare(mins[e1], mins[e2]);
+    }
+}
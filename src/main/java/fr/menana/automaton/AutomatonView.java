@@ -0,0 +1,130 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+/**
+ * A read-only view of a finite automaton whose states, edges and labels are identified by integers. <br>
+ * The outgoing edges of a state are the edges whose index is in [{@link #getEdgeStart(int)}, {@link #getEdgeEnd(int)}[.
+ * Each edge leads to a target state and carries a label, given by its identifier in the label table of the view,
+ * or {@link #EPSILON} for an epsilon edge. <br>
+ * This interface is implemented by the array based representations of an automaton, such as {@link fr.menana.automaton.CompactAutomaton}
+ */
+public interface AutomatonView {
+
+    /**
+     * The label identifier of an epsilon edge
+     */
+    int EPSILON = -1;
+
+    /**
+     * Returns the number of states
+     * @return the number of states
+     */
+    int getNbStates();
+
+    /**
+     * Returns the index of the initial state
+     * @return the index of the initial state, -1 if the automaton has no initial state
+     */
+    int getInitialIndex();
+
+    /**
+     * Checks if a state is an accepting state
+     * @param state the index of a state
+     * @return <code>true</code> if and only if the state is accepting
+     */
+    boolean isAccept(int state);
+
+    /**
+     * Checks whether the automaton is deterministic or not. A deterministic automaton has no epsilon edge
+     * @return <code>true</code> if and only if the automaton is deterministic
+     */
+    boolean isDeterministic();
+
+    /**
+     * Returns the number of edges
+     * @return the number of edges
+     */
+    int getNbEdges();
+
+    /**
+     * Returns the index of the first outgoing edge of a state
+     * @param state the index of a state
+     * @return the index of the first outgoing edge of the state
+     */
+    int getEdgeStart(int state);
+
+    /**
+     * Returns the index following the last outgoing edge of a state
+     * @param state the index of a state
+     * @return the index following the last outgoing edge of the state
+     */
+    int getEdgeEnd(int state);
+
+    /**
+     * Returns the target state of an edge
+     * @param edge the index of an edge
+     * @return the index of the target state
+     */
+    int getTarget(int edge);
+
+    /**
+     * Returns the label identifier of an edge
+     * @param edge the index of an edge
+     * @return the label identifier, or {@link #EPSILON}
+     */
+    int getLabelId(int edge);
+
+    /**
+     * Returns the number of distinct labels
+     * @return the size of the label table
+     */
+    int getNbLabels();
+
+    /**
+     * Returns the values of a label as an interned {@link fr.menana.automaton.IntervalSet}
+     * @param label a label identifier
+     * @return the values of the label
+     */
+    IntervalSet getLabel(int label);
+
+    /**
+     * Checks if a label contains a value
+     * @param label a label identifier
+     * @param value an integer value
+     * @return <code>true</code> if and only if the label contains the value
+     */
+    boolean labelContains(int label, int value);
+
+    /**
+     * Checks if a word given as an int array is a word in the language defined by this automaton
+     * @param word a word as an int array
+     * @return <code>true</code> if and only if the word belongs to the language of the automaton
+     */
+    default boolean run(int... word) {
+        return ViewMatcher.run(this, word);
+    }
+
+    /**
+     * Constructs an {@link fr.menana.automaton.Automaton} with the same states, in the same order, and the same transitions as this view
+     * @return a new {@link fr.menana.automaton.Automaton}
+     */
+    default Automaton toAutomaton() {
+        return ViewMatcher.toAutomaton(this);
+    }
+}
@@ -0,0 +1,271 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.*;
+
+/**
+ * An immutable finite automaton stored in compressed sparse row arrays. <br>
+ * The flags of the states are stored in a byte array, the outgoing edges of state <code>s</code> are the edges whose
+ * index is in [offsets[s], offsets[s+1][, and each edge is a target state in one int array and a label identifier
+ * in another one. Labels are interned {@link fr.menana.automaton.IntervalSet} shared in a label table, whose bounds are
+ * also flattened in an int array so that matching does not allocate. <br>
+ * This layout costs a few bytes per state and per edge instead of a {@link java.util.HashMap} per state and an object
+ * per transition. It is obtained from an {@link fr.menana.automaton.Automaton} with {@link #fromAutomaton(Automaton)}
+ * and converted back with {@link #toAutomaton()}. The operations of {@link fr.menana.automaton.Operation} accept it as
+ * an {@link fr.menana.automaton.AutomatonView}. <br>
+ * All the fields are final and the labels are interned, hence immutable: once constructed, a compact automaton is safely
+ * published and can be shared by any number of threads without locking, as returned by {@link Automaton#freeze()}.
+ */
+public final class CompactAutomaton implements AutomatonView {
+
+    /**
+     * Flag of an accepting state
+     */
+    static final byte ACCEPT = 1;
+
+    /**
+     * Flag of the initial state
+     */
+    static final byte INITIAL = 2;
+
+    /**
+     * The flags of each state
+     */
+    private final byte[] flags;
+
+    /**
+     * The index of the first outgoing edge of each state, followed by the number of edges
+     */
+    private final int[] offsets;
+
+    /**
+     * The target state of each edge
+     */
+    private final int[] targets;
+
+    /**
+     * The label identifier of each edge
+     */
+    private final int[] labels;
+
+    /**
+     * The table of labels
+     */
+    private final IntervalSet[] labelTable;
+
+    /**
+     * The index in {@link #bounds} of the first interval of each label, followed by the number of intervals
+     */
+    private final int[] labelOffsets;
+
+    /**
+     * The lower and upper bounds of the intervals of all the labels
+     */
+    private final int[] bounds;
+
+    /**
+     * The index of the initial state
+     */
+    private final int initIndex;
+
+    /**
+     * <code>true</code> if the automaton is deterministic
+     */
+    private final boolean deterministic;
+
+    /**
+     * Constructs a compact automaton from its arrays, which are not copied
+     * @param flags the flags of each state
+     * @param offsets the index of the first outgoing edge of each state, followed by the number of edges
+     * @param targets the target state of each edge
+     * @param labels the label identifier of each edge
+     * @param labelTable the interned labels
+     * @param initIndex the index of the initial state, or -1
+     * @param deterministic <code>true</code> if the automaton is deterministic
+     */
+    CompactAutomaton(byte[] flags, int[] offsets, int[] targets, int[] labels, IntervalSet[] labelTable, int initIndex, boolean deterministic) {
+        this.flags = flags;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.labels = labels;
+        this.labelTable = labelTable;
+        this.initIndex = initIndex;
+        this.deterministic = deterministic;
+        this.labelOffsets = new int[labelTable.length + 1];
+        int nbIntervals = 0;
+        for (int l = 0; l < labelTable.length; ++l) {
+            this.labelOffsets[l] = nbIntervals;
+            nbIntervals += labelTable[l].intervals().size();
+        }
+        this.labelOffsets[labelTable.length] = nbIntervals;
+        this.bounds = new int[2 * nbIntervals];
+        int i = 0;
+        for (IntervalSet label : labelTable) {
+            for (Interval interval : label.intervals()) {
+                this.bounds[i++] = interval.min;
+                this.bounds[i++] = interval.max;
+            }
+        }
+    }
+
+    /**
+     * Constructs a compact automaton with the same states, in the same order, and the same transitions as the given automaton. <br>
+     * A transition carrying both values and an epsilon becomes two edges.
+     * @param automaton the {@link fr.menana.automaton.Automaton} to convert
+     * @return a new compact automaton
+     */
+    public static CompactAutomaton fromAutomaton(Automaton automaton) {
+        List<State> states = automaton.getStates();
+        int nbStates = states.size();
+        Map<State,Integer> index = new IdentityHashMap<>(nbStates);
+        int nbEdges = 0;
+        for (int s = 0; s < nbStates; ++s) {
+            State state = states.get(s);
+            index.put(state, s);
+            for (Transition tr : state.transitions.values()) {
+                if (tr.values != null)
+                    ++nbEdges;
+                if (tr.epsilon)
+                    ++nbEdges;
+            }
+        }
+        byte[] flags = new byte[nbStates];
+        int[] offsets = new int[nbStates + 1];
+        int[] targets = new int[nbEdges];
+        int[] labels = new int[nbEdges];
+        Map<IntervalSet,Integer> labelIds = new IdentityHashMap<>();
+        List<IntervalSet> labelTable = new ArrayList<>();
+        int e = 0;
+        for (int s = 0; s < nbStates; ++s) {
+            State state = states.get(s);
+            offsets[s] = e;
+            if (state.accept)
+                flags[s] |= ACCEPT;
+            if (state.initial)
+                flags[s] |= INITIAL;
+            for (Transition tr : state.transitions.values()) {
+                int dest = index.get(tr.dest);
+                if (tr.values != null) {
+                    IntervalSet label = tr.values.intern();
+                    Integer id = labelIds.get(label);
+                    if (id == null) {
+                        id = labelTable.size();
+                        labelIds.put(label, id);
+                        labelTable.add(label);
+                    }
+                    targets[e] = dest;
+                    labels[e++] = id;
+                }
+                if (tr.epsilon) {
+                    targets[e] = dest;
+                    labels[e++] = EPSILON;
+                }
+            }
+        }
+        offsets[nbStates] = e;
+        State init = automaton.getInitial();
+        return new CompactAutomaton(flags, offsets, targets, labels, labelTable.toArray(new IntervalSet[labelTable.size()]),
+                init == null ? -1 : index.get(init), automaton.isDeterministic());
+    }
+
+    @Override
+    public int getNbStates() {
+        return flags.length;
+    }
+
+    @Override
+    public int getInitialIndex() {
+        return initIndex;
+    }
+
+    @Override
+    public boolean isAccept(int state) {
+        return (flags[state] & ACCEPT) != 0;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    @Override
+    public int getNbEdges() {
+        return targets.length;
+    }
+
+    @Override
+    public int getEdgeStart(int state) {
+        return offsets[state];
+    }
+
+    @Override
+    public int getEdgeEnd(int state) {
+        return offsets[state + 1];
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    @Override
+    public int getLabelId(int edge) {
+        return labels[edge];
+    }
+
+    @Override
+    public int getNbLabels() {
+        return labelTable.length;
+    }
+
+    @Override
+    public IntervalSet getLabel(int label) {
+        return labelTable[label];
+    }
+
+    @Override
+    public boolean labelContains(int label, int value) {
+        if (label == EPSILON)
+            return false;
+        int lo = labelOffsets[label];
+        int hi = labelOffsets[label + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value < bounds[2 * mid])
+                hi = mid - 1;
+            else if (value > bounds[2 * mid + 1])
+                lo = mid + 1;
+            else
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int s = 0; s < getNbStates(); ++s) {
+            for (int e = offsets[s]; e < offsets[s + 1]; ++e) {
+                buffer.append(s).append(" -> ").append(labels[e] == EPSILON ? "e" : labelTable[labels[e]].toString())
+                        .append(" -> ").append(targets[e]).append("\n");
+            }
+        }
+        return buffer.toString();
+    }
+}
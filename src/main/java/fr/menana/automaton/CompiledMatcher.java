@@ -0,0 +1,31 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+/**
+ * A matcher of a single language, generated as a JVM class by {@link fr.menana.automaton.MatcherGenerator}
+ */
+public interface CompiledMatcher {
+
+    /**
+     * Checks if a word belongs to the language of the matcher
+     * @param word a word as an int array
+     * @return <code>true</code> if and only if the word is accepted
+     */
+    boolean matches(int... word);
+}
@@ -0,0 +1,436 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A builder of the minimal acyclic deterministic automaton recognizing a finite set of words. <br>
+ * The automaton is kept minimal while words are added, using a register of the states whose right language is final: two
+ * registered states never have the same acceptance and the same transitions. Memory thus stays proportional to the size of the
+ * minimal automaton instead of the size of the word list. <br>
+ * Words added in increasing lexicographic order follow the algorithm of Daciuk, Mihov, Watson and Watson: only the path of
+ * the last word is unregistered, and it is registered when the next word leaves it. As soon as a word is out of order, the
+ * builder switches to the algorithm of Carrasco and Forcada, which unregisters the path of the new word, clones its confluence
+ * states (states with several incoming transitions) and registers the path again from the end.
+ */
+public class DictionaryBuilder {
+
+    /**
+     * The sorted labels of the transitions of each state
+     */
+    private int[][] labels;
+
+    /**
+     * The targets of the transitions of each state
+     */
+    private int[][] targets;
+
+    /**
+     * The number of transitions of each state
+     */
+    private int[] sizes;
+
+    /**
+     * The number of incoming transitions of each state
+     */
+    private int[] indegrees;
+
+    /**
+     * The accepting states
+     */
+    private final BitSet accept = new BitSet();
+
+    /**
+     * The number of allocated state slots
+     */
+    private int nbSlots;
+
+    /**
+     * The deleted state slots, reused by new states
+     */
+    private int[] free = new int[16];
+    private int nbFree;
+
+    /**
+     * The registered states, by content
+     */
+    private final Map<Key,Integer> register = new HashMap<>();
+
+    /**
+     * The initial state, never registered
+     */
+    private final int root;
+
+    /**
+     * <code>true</code> while words are added in increasing order
+     */
+    private boolean sorted = true;
+
+    /**
+     * <code>true</code> once a word has been added
+     */
+    private boolean started;
+
+    /**
+     * The last word added in sorted mode and the states along its path, path[0] being the root
+     */
+    private int[] previous = new int[16];
+    private int previousLength;
+    private int[] path = new int[17];
+
+    /**
+     * Constructs a builder of the automaton recognizing no word
+     */
+    public DictionaryBuilder() {
+        this.labels = new int[16][];
+        this.targets = new int[16][];
+        this.sizes = new int[16];
+        this.indegrees = new int[16];
+        this.root = newState();
+        this.path[0] = root;
+    }
+
+    /**
+     * Adds a word to the dictionary. <br>
+     * Adding the words in increasing lexicographic order (values compared as signed integers, a prefix being smaller) is
+     * noticeably faster.
+     * @param word a word as an int array
+     */
+    public void add(int... word) {
+        if (sorted) {
+            int c = compare(previous, previousLength, word);
+            if (c < 0 || !started) {
+                started = true;
+                addSorted(word);
+                return;
+            }
+            if (c == 0)
+                return;
+            freeze(0);
+            sorted = false;
+        }
+        addUnsorted(word);
+    }
+
+    /**
+     * Returns the number of states of the automaton built so far
+     * @return the number of states
+     */
+    public int getNbStates() {
+        return nbSlots - nbFree;
+    }
+
+    /**
+     * Builds the minimal deterministic automaton of the words added so far. Words may still be added afterwards
+     * @return a new minimal {@link fr.menana.automaton.CompactAutomaton}
+     */
+    public CompactAutomaton buildCompact() {
+        if (sorted) {
+            freeze(0);
+            sorted = false;
+        }
+        int[] ids = new int[nbSlots];
+        Arrays.fill(ids, -1);
+        int[] queue = new int[getNbStates()];
+        int head = 0;
+        int tail = 0;
+        ids[root] = 0;
+        queue[tail++] = root;
+        while (head < tail) {
+            int s = queue[head++];
+            for (int i = 0; i < sizes[s]; ++i) {
+                int t = targets[s][i];
+                if (ids[t] < 0) {
+                    ids[t] = tail;
+                    queue[tail++] = t;
+                }
+            }
+        }
+        AutomatonBuilder builder = new AutomatonBuilder(tail);
+        builder.addStates(tail);
+        builder.setInitial(0);
+        for (int k = 0; k < tail; ++k) {
+            int s = queue[k];
+            if (accept.get(s))
+                builder.setAccept(k);
+            for (int i = 0; i < sizes[s]; ++i)
+                builder.addEdge(k, ids[targets[s][i]], labels[s][i]);
+        }
+        return builder.buildCompact();
+    }
+
+    /**
+     * Builds the minimal deterministic automaton of the words added so far. Words may still be added afterwards
+     * @return a new minimal {@link fr.menana.automaton.Automaton}
+     */
+    public Automaton build() {
+        return buildCompact().toAutomaton();
+    }
+
+    /**
+     * Adds a word greater than the previous one: the part of the previous path that is not shared by the new word is final
+     * and is registered, then the suffix of the new word is appended
+     */
+    private void addSorted(int[] word) {
+        int p = 0;
+        while (p < previousLength && p < word.length && previous[p] == word[p])
+            ++p;
+        freeze(p);
+        if (path.length <= word.length) {
+            path = Arrays.copyOf(path, 2 * word.length + 1);
+            previous = Arrays.copyOf(previous, 2 * word.length);
+        }
+        int state = path[p];
+        for (int i = p; i < word.length; ++i) {
+            int next = newState();
+            // the value is greater than the labels of the state, the transition is appended
+            insert(state, sizes[state], word[i], next);
+            path[i + 1] = next;
+            state = next;
+        }
+        accept.set(state);
+        System.arraycopy(word, 0, previous, 0, word.length);
+        previousLength = word.length;
+    }
+
+    /**
+     * Registers the states of the previous path after the given depth, from the deepest one, merging each with its registered
+     * equivalent if any
+     * @param depth the length of the prefix of the previous path that stays unregistered
+     */
+    private void freeze(int depth) {
+        for (int i = previousLength; i > depth; --i) {
+            int child = path[i];
+            Key key = new Key(child);
+            Integer equivalent = register.get(key);
+            if (equivalent != null) {
+                int parent = path[i - 1];
+                setTarget(parent, sizes[parent] - 1, equivalent);
+                delete(child);
+            }
+            else
+                register.put(key, child);
+        }
+        previousLength = depth;
+    }
+
+    /**
+     * Adds a word in any order
+     */
+    private void addUnsorted(int[] word) {
+        int[] states = new int[word.length + 1];
+        states[0] = root;
+        int prefix = 0;
+        int firstConfluence = -1;
+        while (prefix < word.length) {
+            int i = find(states[prefix], word[prefix]);
+            if (i < 0)
+                break;
+            states[++prefix] = targets[states[prefix - 1]][i];
+            if (firstConfluence < 0 && indegrees[states[prefix]] > 1)
+                firstConfluence = prefix;
+        }
+        if (prefix == word.length && accept.get(states[prefix]))
+            return;
+        int last = firstConfluence < 0 ? prefix : firstConfluence - 1;
+        for (int j = 1; j <= last; ++j)
+            unregister(states[j]);
+        if (firstConfluence > 0) {
+            for (int j = firstConfluence; j <= prefix; ++j) {
+                int clone = copy(states[j]);
+                setTarget(states[j - 1], find(states[j - 1], word[j - 1]), clone);
+                states[j] = clone;
+            }
+        }
+        int state = states[prefix];
+        for (int i = prefix; i < word.length; ++i) {
+            int next = newState();
+            insert(state, -1, word[i], next);
+            states[i + 1] = next;
+            state = next;
+        }
+        accept.set(state);
+        for (int j = word.length; j > 0; --j) {
+            int s = states[j];
+            Key key = new Key(s);
+            Integer equivalent = register.get(key);
+            if (equivalent != null) {
+                setTarget(states[j - 1], find(states[j - 1], word[j - 1]), equivalent);
+                delete(s);
+            }
+            else
+                register.put(key, s);
+        }
+    }
+
+    /**
+     * Removes a state from the register before it is modified
+     */
+    private void unregister(int state) {
+        Key key = new Key(state);
+        Integer registered = register.get(key);
+        if (registered != null && registered == state)
+            register.remove(key);
+    }
+
+    /**
+     * @return a new state slot without transition
+     */
+    private int newState() {
+        int s;
+        if (nbFree > 0)
+            s = free[--nbFree];
+        else {
+            s = nbSlots++;
+            if (s == sizes.length) {
+                int capacity = 2 * s;
+                labels = Arrays.copyOf(labels, capacity);
+                targets = Arrays.copyOf(targets, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                indegrees = Arrays.copyOf(indegrees, capacity);
+            }
+        }
+        labels[s] = new int[2];
+        targets[s] = new int[2];
+        sizes[s] = 0;
+        indegrees[s] = 0;
+        accept.clear(s);
+        return s;
+    }
+
+    /**
+     * @return a new state with the same acceptance and the same transitions as the given one
+     */
+    private int copy(int state) {
+        int s = newState();
+        labels[s] = Arrays.copyOf(labels[state], Math.max(2, sizes[state]));
+        targets[s] = Arrays.copyOf(targets[state], Math.max(2, sizes[state]));
+        sizes[s] = sizes[state];
+        accept.set(s, accept.get(state));
+        for (int i = 0; i < sizes[s]; ++i)
+            indegrees[targets[s][i]]++;
+        return s;
+    }
+
+    /**
+     * Deletes an unregistered state, releasing its outgoing transitions
+     */
+    private void delete(int state) {
+        for (int i = 0; i < sizes[state]; ++i)
+            indegrees[targets[state][i]]--;
+        labels[state] = null;
+        targets[state] = null;
+        sizes[state] = 0;
+        accept.clear(state);
+        if (nbFree == free.length)
+            free = Arrays.copyOf(free, 2 * nbFree);
+        free[nbFree++] = state;
+    }
+
+    /**
+     * Adds a transition to a state
+     * @param state the origin of the transition
+     * @param index the position of the transition among the sorted labels, or -1 to search it
+     * @param label the value of the transition
+     * @param target the destination of the transition
+     */
+    private void insert(int state, int index, int label, int target) {
+        int size = sizes[state];
+        if (index < 0)
+            index = -Arrays.binarySearch(labels[state], 0, size, label) - 1;
+        if (size == labels[state].length) {
+            labels[state] = Arrays.copyOf(labels[state], 2 * size);
+            targets[state] = Arrays.copyOf(targets[state], 2 * size);
+        }
+        System.arraycopy(labels[state], index, labels[state], index + 1, size - index);
+        System.arraycopy(targets[state], index, targets[state], index + 1, size - index);
+        labels[state][index] = label;
+        targets[state][index] = target;
+        sizes[state]++;
+        indegrees[target]++;
+    }
+
+    /**
+     * Redirects a transition to another target
+     */
+    private void setTarget(int state, int index, int target) {
+        indegrees[targets[state][index]]--;
+        targets[state][index] = target;
+        indegrees[target]++;
+    }
+
+    /**
+     * @return the position of the transition of the state labeled by the value, or a negative number if there is none
+     */
+    private int find(int state, int label) {
+        int i = Arrays.binarySearch(labels[state], 0, sizes[state], label);
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * Compares two words in lexicographic order
+     */
+    private static int compare(int[] a, int length, int[] b) {
+        for (int i = 0; i < length && i < b.length; ++i) {
+            if (a[i] != b[i])
+                return a[i] < b[i] ? -1 : 1;
+        }
+        return Integer.compare(length, b.length);
+    }
+
+    /**
+     * The content of a state, used to look up equivalent states in the register
+     */
+    private final class Key {
+        final int state;
+        final int hash;
+
+        Key(int state) {
+            this.state = state;
+            int h = accept.get(state) ? 1 : 0;
+            for (int i = 0; i < sizes[state]; ++i)
+                h = 31 * (31 * h + labels[state][i]) + targets[state][i];
+            this.hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            int a = state;
+            int b = other.state;
+            if (hash != other.hash || accept.get(a) != accept.get(b) || sizes[a] != sizes[b])
+                return false;
+            for (int i = 0; i < sizes[a]; ++i) {
+                if (labels[a][i] != labels[b][i] || targets[a][i] != targets[b][i])
+                    return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Writes an automaton in Graphviz dot format to a {@link java.io.Writer} or an {@link java.io.OutputStream}, state by state,
+ * so that the output of very large automata is never held in memory. <br>
+ * By default the whole automaton is written and the parallel edges between two states are merged into one edge.
+ * The output can be restricted to the states reachable from given states within a maximum depth : the states at the
+ * maximum depth are written without their outgoing edges. <p>
+ * <code>new DotWriter().fromStates(42).maxDepth(3).write(automaton, writer);</code>
+ */
+public class DotWriter {
+
+    /**
+     * <code>true</code> to merge the parallel edges between two states into a single edge
+     */
+    private boolean mergeParallelEdges;
+
+    /**
+     * The states from which the exported neighborhood is computed, <code>null</code> for the initial state
+     */
+    private int[] roots;
+
+    /**
+     * The maximum depth of the exported neighborhood, negative for no limit
+     */
+    private int maxDepth;
+
+    /**
+     * Constructs a writer exporting the whole automaton and merging parallel edges
+     */
+    public DotWriter() {
+        this.mergeParallelEdges = true;
+        this.maxDepth = -1;
+    }
+
+    /**
+     * Sets whether the parallel edges between two states are merged into a single edge, or if each interval of values
+     * and each epsilon is written as its own edge
+     * @param merge <code>true</code> to merge parallel edges
+     * @return this writer
+     */
+    public DotWriter mergeParallelEdges(boolean merge) {
+        this.mergeParallelEdges = merge;
+        return this;
+    }
+
+    /**
+     * Restricts the output to the states reachable from the given states. <br>
+     * The indexes are checked against the number of states of the automaton when it is written
+     * @param states the indexes of the states from which the neighborhood is exported
+     * @return this writer
+     * @throws IllegalArgumentException if an index is negative
+     */
+    public DotWriter fromStates(int... states) {
+        for (int s : states) {
+            if (s < 0)
+                throw new IllegalArgumentException("Unknown state: " + s);
+        }
+        this.roots = states.clone();
+        return this;
+    }
+
+    /**
+     * Restricts the output to the states reachable within a maximum number of transitions from the initial state,
+     * or from the states given to {@link #fromStates(int...)}
+     * @param depth the maximum depth, negative for no limit
+     * @return this writer
+     */
+    public DotWriter maxDepth(int depth) {
+        this.maxDepth = depth;
+        return this;
+    }
+
+    /**
+     * Writes an automaton in dot format
+     * @param automaton the automaton to write
+     * @param out the destination of the dot output
+     * @throws IOException if the output cannot be written
+     */
+    public void write(Automaton automaton, Writer out) throws IOException {
+        this.write(automaton.toCompact(), out);
+    }
+
+    /**
+     * Writes an automaton in dot format, encoded in UTF-8
+     * @param view the automaton to write
+     * @param out the destination of the dot output
+     * @throws IOException if the output cannot be written
+     */
+    public void write(AutomatonView view, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.write(view, writer);
+        writer.flush();
+    }
+
+    /**
+     * Writes an automaton in dot format
+     * @param view the automaton to write
+     * @param out the destination of the dot output
+     * @throws IOException if the output cannot be written
+     * @throws IllegalArgumentException if a state given to {@link #fromStates(int...)} is not a state of the automaton,
+     * in which case nothing is written
+     */
+    public void write(AutomatonView view, Writer out) throws IOException {
+        int nbStates = view.getNbStates();
+        if (roots != null) {
+            for (int s : roots) {
+                if (s >= nbStates)
+                    throw new IllegalArgumentException("Unknown state: " + s + ", the automaton has " + nbStates + " states");
+            }
+        }
+        out.write("digraph Automaton {\n");
+        out.write(" rankdir = LR;\n");
+        long[] edges = new long[16];
+        if (roots == null && maxDepth < 0) {
+            for (int s = 0; s < nbStates; ++s)
+                edges = writeState(view, s, true, edges, out);
+        }
+        else {
+            int[] start = roots != null ? roots : view.getInitialIndex() >= 0 ? new int[]{view.getInitialIndex()} : new int[0];
+            BitSet visited = new BitSet(nbStates);
+            int[] queue = new int[16];
+            int head = 0, tail = 0;
+            for (int s : start) {
+                if (!visited.get(s)) {
+                    visited.set(s);
+                    queue = push(queue, tail++, s);
+                }
+            }
+            for (int depth = 0; head < tail; ++depth) {
+                boolean expand = maxDepth < 0 || depth < maxDepth;
+                for (int end = tail; head < end; ++head) {
+                    int s = queue[head];
+                    edges = writeState(view, s, expand, edges, out);
+                    if (expand) {
+                        for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                            int target = view.getTarget(e);
+                            if (!visited.get(target)) {
+                                visited.set(target);
+                                queue = push(queue, tail++, target);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        out.write("}\n");
+        out.flush();
+    }
+
+    private static int[] push(int[] queue, int index, int state) {
+        if (index == queue.length)
+            queue = Arrays.copyOf(queue, 2 * queue.length);
+        queue[index] = state;
+        return queue;
+    }
+
+    /**
+     * Writes a state and, if required, its outgoing edges
+     * @return the work array, grown if needed
+     */
+    private long[] writeState(AutomatonView view, int s, boolean withEdges, long[] edges, Writer out) throws IOException {
+        out.write(" " + s + (view.isAccept(s) ? " [shape=doublecircle];\n" : " [shape=circle];\n"));
+        if (s == view.getInitialIndex()) {
+            out.write(" initial [shape=plaintext,label=\"\"];\n");
+            out.write(" initial -> " + s + "\n");
+        }
+        if (!withEdges)
+            return edges;
+        int from = view.getEdgeStart(s);
+        int nb = view.getEdgeEnd(s) - from;
+        if (!mergeParallelEdges) {
+            for (int e = from; e < from + nb; ++e) {
+                int label = view.getLabelId(e);
+                if (label == AutomatonView.EPSILON)
+                    writeEdge(s, view.getTarget(e), "{eps}", out);
+                else {
+                    for (Interval i : view.getLabel(label).intervals())
+                        writeEdge(s, view.getTarget(e), "{" + i + "}", out);
+                }
+            }
+            return edges;
+        }
+        if (edges.length < nb)
+            edges = new long[Math.max(nb, 2 * edges.length)];
+        for (int i = 0; i < nb; ++i)
+            edges[i] = ((long) view.getTarget(from + i) << 32) | (from + i);
+        Arrays.sort(edges, 0, nb);
+        StringBuilder label = new StringBuilder();
+        for (int i = 0; i < nb; ) {
+            int target = (int) (edges[i] >>> 32);
+            IntervalSet values = null;
+            boolean epsilon = false;
+            for (; i < nb && (int) (edges[i] >>> 32) == target; ++i) {
+                int id = view.getLabelId((int) edges[i]);
+                if (id == AutomatonView.EPSILON)
+                    epsilon = true;
+                else
+                    values = values == null ? view.getLabel(id) : values.union(view.getLabel(id));
+            }
+            label.setLength(0);
+            if (values == null)
+                label.append("{eps}");
+            else {
+                label.append("{");
+                for (Interval interval : values.intervals())
+                    label.append(interval).append(",");
+                if (epsilon)
+                    label.append("eps");
+                else if (label.charAt(label.length() - 1) == ',')
+                    label.deleteCharAt(label.length() - 1);
+                label.append("}");
+            }
+            writeEdge(s, target, label.toString(), out);
+        }
+        return edges;
+    }
+
+    private static void writeEdge(int orig, int dest, String label, Writer out) throws IOException {
+        out.write(" " + orig + " -> " + dest + " [label=\"" + label + "\"]\n");
+    }
+}
@@ -56,6 +56,22 @@ public class Interval implements Comparable<Interval>,Cloneable {
         }
     }
 
+    /**
+     * Returns the lower bound of this interval
+     * @return the lower bound
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the upper bound of this interval
+     * @return the upper bound
+     */
+    public int getMax() {
+        return max;
+    }
+
     /**
      * Checks if this interval contains a given integer value
      * @param value the value to be checked
@@ -152,6 +168,15 @@ public class Interval implements Comparable<Interval>,Cloneable {
         return this.max - this.min + 1;
     }
 
+    /**
+     * Returns the cardinality of the interval as a long, which does not overflow for intervals of more than
+     * {@link Integer#MAX_VALUE} values
+     * @return the size of the interval
+     */
+    public long cardinality() {
+        return (long) this.max - this.min + 1;
+    }
+
 
     /**
      * Returns the complement of this interval in [|Integer.MIN_VALUE,Integer.MAX_VALUE|]
@@ -17,11 +17,14 @@
  */
 package fr.menana.automaton;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 
 /**
  * This class represents an ordered set of integer values as a set of {@link fr.menana.automaton.Interval} <br>
- * The {@link fr.menana.automaton.Interval} are stored using a TreeSet to preserve ordering <p>
+ * The {@link fr.menana.automaton.Interval} are stored using a TreeSet to preserve ordering <br>
+ * An interval set can be interned with {@link #intern()} : the returned set is immutable, shared by all equal sets
+ * and compared by reference to other interned sets <p>
  * Created by Julien Menana on 01/05/2015.
  */
 public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
@@ -31,19 +34,31 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
      */
     private TreeSet<Interval> container;
 
+    /**
+     * <code>true</code> if this set is the interned, immutable, representative of its values
+     */
+    private boolean immutable;
+
+    /**
+     * The cached hash code of an immutable set
+     */
+    private int hash;
+
+    /**
+     * The pool of interned interval sets. Entries are weakly referenced and vanish once no transition uses them
+     */
+    private static final Map<IntervalSet,WeakReference<IntervalSet>> POOL = new WeakHashMap<>();
+
     /**
      * A static reference to an interval set containting all values between Integer.MIN_VALUE and Integer.MAX_VALUE
      */
-    public static IntervalSet ALL = new IntervalSet();
-    static {
-        ALL.add(new Interval(Integer.MIN_VALUE,Integer.MAX_VALUE));
-    }
+    public static IntervalSet ALL = IntervalSet.fromInterval(new Interval(Integer.MIN_VALUE,Integer.MAX_VALUE)).intern();
 
     /**
      * A static reference to an empty interval set
      */
     @SuppressWarnings("unused")
-    public static IntervalSet EMPTY = new IntervalSet();
+    public static IntervalSet EMPTY = new IntervalSet().intern();
 
 
     /**
@@ -77,6 +92,7 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
      */
     @SuppressWarnings("unused")
     public boolean add(int value) {
+        checkMutable();
         Interval tmp = new Interval(value, value);
         Interval floor = container.floor(tmp);
         Interval ceiling = container.ceiling(tmp);
@@ -121,13 +137,14 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
      * @return <code>true</code> if and only if the values were added
      */
     public boolean add(IntervalSet intervalSet) {
+        checkMutable();
         boolean ret = false;
         if (intervalSet == null)
             return false;
         for (Interval i : intervalSet.container) {
             //System.out.println("on a "+this);
            // System.out.println("on ajoute "+i);
-            ret |= this.add(i);
+            ret |= this.add(i.clone());
            // System.out.println("on obtient "+this);
            // System.out.println();
         }
@@ -140,6 +157,7 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
      * @return <code>true</code> if and only if the values were added
      */
     public boolean add(Interval interval) {
+        checkMutable();
 
         //System.transitions.println(this);
         Interval floor = container.floor(interval);
@@ -211,6 +229,7 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
      */
     @SuppressWarnings("unused")
     public void remove(IntervalSet intervalSet) {
+        checkMutable();
         this.container = this.intersection(intervalSet.complement()).container;
 
     }
@@ -382,6 +401,18 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
         return sz;
     }
 
+    /**
+     * Returns the cardinality of this set as a long, which does not overflow for sets of more than
+     * {@link Integer#MAX_VALUE} values
+     * @return the cardinality of this set
+     */
+    public long cardinality() {
+        long sz = 0;
+        for (Interval i : this.container)
+            sz += i.cardinality();
+        return sz;
+    }
+
 
 
 
@@ -390,8 +421,14 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
         return container.toString();
     }
 
+    /**
+     * Returns a copy of this set. An interned set is immutable, hence it is returned as is instead of being copied
+     * @return a mutable copy of this set, or this set if it is interned
+     */
     @Override
     public IntervalSet clone(){
+        if (this.immutable)
+            return this;
         IntervalSet clone = null;
         try {
             clone = (IntervalSet) super.clone();
@@ -419,13 +456,74 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
     }
 
     /**
-     * Returns the {@link java.util.TreeSet} container of {@link fr.menana.automaton.Interval}
+     * Returns the {@link java.util.TreeSet} container of {@link fr.menana.automaton.Interval} <br>
+     * If this set is interned, a copy of the container is returned so that the shared set cannot be altered
      * @return a sorted set of {@link fr.menana.automaton.Interval}
      */
     public TreeSet<Interval> getIntervals() {
+        if (this.immutable) {
+            TreeSet<Interval> copy = new TreeSet<>();
+            for (Interval i : this.container)
+                copy.add(i.clone());
+            return copy;
+        }
         return container;
     }
 
+    /**
+     * Returns the container of this set without copying it, even if the set is interned. <br>
+     * Callers of the package must not modify the returned intervals
+     * @return the sorted set of {@link fr.menana.automaton.Interval}
+     */
+    TreeSet<Interval> intervals() {
+        return container;
+    }
+
+    /**
+     * Checks whether this set is an interned, immutable, interval set
+     * @return <code>true</code> if and only if this set has been returned by {@link #intern()}
+     */
+    public boolean isImmutable() {
+        return immutable;
+    }
+
+    /**
+     * Returns the canonical immutable interval set with the same values as this set. <br>
+     * All the interned sets with equal values are the same instance, hence they can be compared by reference
+     * and shared between transitions and automata without being copied.
+     * The canonical instances are weakly referenced by the pool and are reclaimed once no longer used.
+     * @return the interned interval set equal to this set
+     */
+    public IntervalSet intern() {
+        if (this.immutable)
+            return this;
+        synchronized (POOL) {
+            WeakReference<IntervalSet> ref = POOL.get(this);
+            IntervalSet canonical = ref == null ? null : ref.get();
+            if (canonical == null) {
+                canonical = new IntervalSet();
+                for (Interval i : this.container)
+                    canonical.container.add(i.clone());
+                canonical.hash = canonical.computeHash();
+                canonical.immutable = true;
+                POOL.put(canonical, new WeakReference<>(canonical));
+            }
+            return canonical;
+        }
+    }
+
+    private void checkMutable() {
+        if (this.immutable)
+            throw new UnsupportedOperationException("An interned interval set cannot be modified");
+    }
+
+    private int computeHash() {
+        int h = 1;
+        for (Interval i : this.container)
+            h = 31 * (31 * h + i.min) + i.max;
+        return h;
+    }
+
 
     /**
      * Returns a new  interval set resulting of the intersection of the given  interval set
@@ -479,17 +577,19 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
     }
 
 
+    @Override
     public boolean equals(Object other) {
         if (other == this)
             return true;
         else if (other != null && other instanceof IntervalSet) {
             IntervalSet inter = (IntervalSet) other;
-            List<Interval> ointer = new ArrayList<>(inter.getIntervals());
-            List<Interval> tinter = new ArrayList<>(inter.getIntervals());
-            if (ointer.size() != tinter.size())
+            if (this.immutable && inter.immutable)
                 return false;
-            for (int i = 0; i < tinter.size(); ++i) {
-                if (!ointer.get(i).equals(tinter.get(i)))
+            if (inter.container.size() != this.container.size() || inter.hashCode() != this.hashCode())
+                return false;
+            Iterator<Interval> oit = inter.container.iterator();
+            for (Interval i : this.container) {
+                if (!i.equals(oit.next()))
                     return false;
             }
             return true;
@@ -497,6 +597,26 @@ public class IntervalSet implements Comparable<IntervalSet>,Cloneable{
         return false;
     }
 
+    @Override
+    public int hashCode() {
+        return this.immutable ? this.hash : this.computeHash();
+    }
+
+
+    /**
+     * Constructs a new interval set from sorted, disjoint and non contiguous intervals, without merging them
+     * @param mins the lower bounds of the intervals
+     * @param maxs the upper bounds of the intervals
+     * @param from the index of the first interval in the arrays
+     * @param to the index following the last interval in the arrays
+     * @return a new interval set
+     */
+    static IntervalSet fromSortedIntervals(int[] mins, int[] maxs, int from, int to) {
+        IntervalSet set = new IntervalSet();
+        for (int i = from; i < to; ++i)
+            set.container.add(new Interval(mins[i], maxs[i]));
+        return set;
+    }
 
     /**
      * Constructs a new interval set from a single {@link fr.menana.automaton.Interval}
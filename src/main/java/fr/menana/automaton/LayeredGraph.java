@@ -0,0 +1,318 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The unrolling of an automaton over words of a fixed length n, as used by the <code>regular</code> global constraint. <br>
+ * The graph has n+1 layers of nodes, node (i,s) standing for the automaton being in state s after reading i values, and arcs
+ * from layer i to layer i+1 labeled by the values the i-th variable may take. Only the nodes that are reachable from the initial
+ * state in layer 0 and that reach an accepting state in layer n are kept, hence every arc belongs to an accepted word. <br>
+ * The graph is stored in primitive arrays: a layer × state index of the nodes, and per layer the outgoing arcs of the nodes in a
+ * compressed sparse row layout. Arc labels are interned {@link fr.menana.automaton.IntervalSet}s, restricted to the domain of
+ * their layer when domains are given.
+ */
+public class LayeredGraph {
+
+    /**
+     * The number of layers of arcs, that is the length of the words
+     */
+    private final int length;
+
+    /**
+     * The number of states of the unrolled automaton
+     */
+    private final int nbStates;
+
+    /**
+     * The index of node (i,s) in layer i at position i * nbStates + s, -1 if the node has been pruned
+     */
+    private final int[] index;
+
+    /**
+     * The state of each node of each layer, in increasing order
+     */
+    private final int[][] states;
+
+    /**
+     * For each layer but the last, the position of the first outgoing arc of each node, and the total number of arcs at the end
+     */
+    private final int[][] arcOffsets;
+
+    /**
+     * For each layer but the last, the node of the next layer each arc leads to
+     */
+    private final int[][] arcTargets;
+
+    /**
+     * For each layer but the last, the values labelling each arc
+     */
+    private final IntervalSet[][] arcLabels;
+
+    private LayeredGraph(int length, int nbStates, int[] index, int[][] states, int[][] arcOffsets, int[][] arcTargets,
+                         IntervalSet[][] arcLabels) {
+        this.length = length;
+        this.nbStates = nbStates;
+        this.index = index;
+        this.states = states;
+        this.arcOffsets = arcOffsets;
+        this.arcTargets = arcTargets;
+        this.arcLabels = arcLabels;
+    }
+
+    /**
+     * Unrolls an automaton over the words of the given length
+     * @param view an automaton without epsilon transitions
+     * @param length the length of the words
+     * @return the pruned layered graph
+     */
+    public static LayeredGraph unroll(AutomatonView view, int length) {
+        return unroll(view, new IntervalSet[length]);
+    }
+
+    /**
+     * Unrolls an automaton over the words whose i-th value belongs to the i-th domain
+     * @param view an automaton without epsilon transitions
+     * @param domains the domain of each position of the words, a null domain standing for any integer
+     * @return the pruned layered graph
+     * @throws IllegalArgumentException if the automaton has epsilon transitions
+     */
+    public static LayeredGraph unroll(AutomatonView view, IntervalSet... domains) {
+        int n = domains.length;
+        int nbStates = view.getNbStates();
+        // labels restricted to the domain of each layer, computed once per label and per layer
+        IntervalSet[][] restricted = new IntervalSet[n][];
+        boolean[] reached = new boolean[(n + 1) * nbStates];
+        int init = view.getInitialIndex();
+        if (init >= 0)
+            reached[init] = true;
+        for (int i = 0; i < n; ++i) {
+            restricted[i] = new IntervalSet[view.getNbLabels()];
+            for (int s = 0; s < nbStates; ++s) {
+                if (!reached[i * nbStates + s])
+                    continue;
+                for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                    if (restrict(view, e, domains[i], restricted[i]) != null)
+                        reached[(i + 1) * nbStates + view.getTarget(e)] = true;
+                }
+            }
+        }
+        int[] index = new int[(n + 1) * nbStates];
+        Arrays.fill(index, -1);
+        int[][] states = new int[n + 1][];
+        states[n] = keep(view, n, nbStates, reached, index, null, null, null);
+        int[][] arcOffsets = new int[n][];
+        int[][] arcTargets = new int[n][];
+        IntervalSet[][] arcLabels = new IntervalSet[n][];
+        for (int i = n - 1; i >= 0; --i) {
+            List<IntervalSet> labels = new ArrayList<>();
+            List<Integer> targets = new ArrayList<>();
+            int[] offsets = new int[nbStates + 1];
+            for (int s = 0; s < nbStates; ++s) {
+                offsets[s] = targets.size();
+                if (!reached[i * nbStates + s])
+                    continue;
+                for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                    IntervalSet label = restrict(view, e, domains[i], restricted[i]);
+                    int target = index[(i + 1) * nbStates + view.getTarget(e)];
+                    if (label != null && target >= 0) {
+                        labels.add(label);
+                        targets.add(target);
+                    }
+                }
+            }
+            offsets[nbStates] = targets.size();
+            states[i] = keep(view, i, nbStates, reached, index, offsets, labels, targets);
+            int[] nodeOffsets = new int[states[i].length + 1];
+            int nb = 0;
+            for (int k = 0; k < states[i].length; ++k) {
+                int s = states[i][k];
+                nodeOffsets[k] = nb;
+                nb += offsets[s + 1] - offsets[s];
+            }
+            nodeOffsets[states[i].length] = nb;
+            arcOffsets[i] = nodeOffsets;
+            arcTargets[i] = new int[nb];
+            arcLabels[i] = new IntervalSet[nb];
+            int a = 0;
+            for (int s : states[i]) {
+                for (int k = offsets[s]; k < offsets[s + 1]; ++k) {
+                    arcTargets[i][a] = targets.get(k);
+                    arcLabels[i][a++] = labels.get(k);
+                }
+            }
+        }
+        return new LayeredGraph(n, nbStates, index, states, arcOffsets, arcTargets, arcLabels);
+    }
+
+    /**
+     * Returns the label of an edge restricted to a domain, or null if the restriction is empty
+     * @throws IllegalArgumentException if the edge is an epsilon transition
+     */
+    private static IntervalSet restrict(AutomatonView view, int edge, IntervalSet domain, IntervalSet[] cache) {
+        int label = view.getLabelId(edge);
+        if (label == AutomatonView.EPSILON)
+            throw new IllegalArgumentException("Automata with epsilon transitions must be determinized before being unrolled");
+        IntervalSet restricted = cache[label];
+        if (restricted == null) {
+            restricted = domain == null ? view.getLabel(label) : view.getLabel(label).intersection(domain).intern();
+            cache[label] = restricted;
+        }
+        return restricted.isEmpty() ? null : restricted;
+    }
+
+    /**
+     * Numbers the nodes of a layer that are reached and, for the last layer, accepting, or, for the other layers, have an arc
+     * @return the states of the kept nodes
+     */
+    private static int[] keep(AutomatonView view, int layer, int nbStates, boolean[] reached, int[] index, int[] offsets,
+                              List<IntervalSet> labels, List<Integer> targets) {
+        int nb = 0;
+        int[] kept = new int[nbStates];
+        for (int s = 0; s < nbStates; ++s) {
+            boolean alive = reached[layer * nbStates + s] && (offsets == null ? view.isAccept(s) : offsets[s + 1] > offsets[s]);
+            if (alive) {
+                index[layer * nbStates + s] = nb;
+                kept[nb++] = s;
+            }
+        }
+        return Arrays.copyOf(kept, nb);
+    }
+
+    /**
+     * @return the length of the words, that is the number of layers of arcs
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the number of states of the unrolled automaton
+     */
+    public int getNbStates() {
+        return nbStates;
+    }
+
+    /**
+     * @return <code>true</code> if and only if no word of the given length is accepted
+     */
+    public boolean isEmpty() {
+        return states[0].length == 0;
+    }
+
+    /**
+     * @param layer a layer, between 0 and the length of the words
+     * @return the number of nodes of the layer
+     */
+    public int getNbNodes(int layer) {
+        return states[layer].length;
+    }
+
+    /**
+     * @param layer a layer
+     * @param node a node of the layer
+     * @return the state of the automaton the node stands for
+     */
+    public int getState(int layer, int node) {
+        return states[layer][node];
+    }
+
+    /**
+     * @param layer a layer
+     * @param state a state of the automaton
+     * @return the node of the layer standing for the state, or -1 if it has been pruned
+     */
+    public int getNode(int layer, int state) {
+        return index[layer * nbStates + state];
+    }
+
+    /**
+     * @param layer a layer, lower than the length of the words
+     * @param node a node of the layer
+     * @return the first outgoing arc of the node
+     */
+    public int getArcStart(int layer, int node) {
+        return arcOffsets[layer][node];
+    }
+
+    /**
+     * @param layer a layer, lower than the length of the words
+     * @param node a node of the layer
+     * @return the position following the last outgoing arc of the node
+     */
+    public int getArcEnd(int layer, int node) {
+        return arcOffsets[layer][node + 1];
+    }
+
+    /**
+     * @param layer a layer, lower than the length of the words
+     * @return the number of arcs from the layer to the next one
+     */
+    public int getNbArcs(int layer) {
+        return arcTargets[layer].length;
+    }
+
+    /**
+     * @param layer a layer, lower than the length of the words
+     * @param arc an arc leaving the layer
+     * @return the node of the next layer the arc leads to
+     */
+    public int getArcTarget(int layer, int arc) {
+        return arcTargets[layer][arc];
+    }
+
+    /**
+     * @param layer a layer, lower than the length of the words
+     * @param arc an arc leaving the layer
+     * @return the interned set of values labelling the arc
+     */
+    public IntervalSet getArcLabel(int layer, int arc) {
+        return arcLabels[layer][arc];
+    }
+
+    /**
+     * Returns the values the i-th variable takes in the accepted words, the union of the labels of the arcs of layer i
+     * @param layer a layer, lower than the length of the words
+     * @return a new set of values
+     */
+    public IntervalSet getSupport(int layer) {
+        return IntervalSet.union(Arrays.asList(arcLabels[layer]));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i <= length; ++i) {
+            b.append("layer ").append(i).append(':');
+            for (int k = 0; k < states[i].length; ++k) {
+                b.append(' ').append(states[i][k]);
+                if (i < length) {
+                    b.append(" ->");
+                    for (int a = getArcStart(i, k); a < getArcEnd(i, k); ++a)
+                        b.append(' ').append(arcLabels[i][a]).append(':').append(states[i + 1][arcTargets[i][a]]);
+                    b.append(';');
+                }
+            }
+            b.append('\n');
+        }
+        return b.toString();
+    }
+}
@@ -0,0 +1,459 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class turns a deterministic automaton into a JVM class implementing {@link fr.menana.automaton.CompiledMatcher}. <br>
+ * Each state becomes a block of code reading the next symbol and jumping to the block of its successor through a binary tree
+ * of range comparisons whose bounds and targets are constants, so that the JIT compiles the matcher without any table lookup.
+ * The class is written directly in the class file format of Java 5, which needs no stack map frames, and is defined by its own
+ * class loader so that it can be unloaded once the matcher is unreachable. <br>
+ * The code of a matcher is limited to 32KB, roughly a few thousand transitions, bigger automata should be run by
+ * {@link fr.menana.automaton.CompactAutomaton}.
+ */
+public final class MatcherGenerator {
+
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    private static final String PACKAGE = "fr/menana/automaton/generated/";
+    private static final String INTERFACE = CompiledMatcher.class.getName().replace('.', '/');
+
+    // local variables of the matches method, the word being in slot 1
+    private static final int INDEX = 2;
+    private static final int LENGTH = 3;
+    private static final int SYMBOL = 4;
+
+    // opcodes
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD = 0x15;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int IALOAD = 0x2e;
+    private static final int ISTORE = 0x36;
+    private static final int IINC = 0x84;
+    private static final int IF_ICMPLT = 0xa1;
+    private static final int IF_ICMPGT = 0xa3;
+    private static final int GOTO = 0xa7;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int ARRAYLENGTH = 0xbe;
+
+    private MatcherGenerator() {}
+
+    /**
+     * Generates a matcher of the language of an automaton, which is minimized first if it is not deterministic
+     * @param automaton an automaton
+     * @return a new matcher accepting the same words as the automaton
+     * @throws IllegalArgumentException if the automaton is too big to be compiled
+     */
+    public static CompiledMatcher generate(Automaton automaton) {
+        return generate(automaton.isDeterministic() ? automaton.toCompact() : automaton.minimize().toCompact());
+    }
+
+    /**
+     * Generates a matcher of the language of a deterministic automaton
+     * @param view a deterministic automaton
+     * @return a new matcher accepting the same words as the automaton
+     * @throws IllegalArgumentException if the automaton is not deterministic or too big to be compiled
+     */
+    public static CompiledMatcher generate(AutomatonView view) {
+        if (!view.isDeterministic())
+            throw new IllegalArgumentException("Only deterministic automata can be compiled");
+        String name = PACKAGE + "Matcher" + COUNTER.getAndIncrement();
+        byte[] bytes = new ClassWriter(name).write(matches(view));
+        Class<?> c = new MatcherLoader(CompiledMatcher.class.getClassLoader()).define(name.replace('/', '.'), bytes);
+        try {
+            return (CompiledMatcher) c.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the code of the matches method
+     * @param view a deterministic automaton
+     * @return the code of the method
+     */
+    private static Code matches(AutomatonView view) {
+        Code code = new Code();
+        int reject = code.newLabel();
+        int init = view.getInitialIndex();
+        if (init < 0) {
+            code.op(ICONST_0);
+            code.op(IRETURN);
+            return code;
+        }
+        int[] states = new int[view.getNbStates()];
+        for (int s = 0; s < states.length; ++s)
+            states[s] = code.newLabel();
+        code.op(ALOAD_1);
+        code.op(ARRAYLENGTH);
+        code.local(ISTORE, LENGTH);
+        code.op(ICONST_0);
+        code.local(ISTORE, INDEX);
+        code.jump(GOTO, states[init]);
+        for (int s = 0; s < states.length; ++s) {
+            int read = code.newLabel();
+            code.mark(states[s]);
+            code.local(ILOAD, INDEX);
+            code.local(ILOAD, LENGTH);
+            code.jump(IF_ICMPLT, read);
+            code.op(view.isAccept(s) ? ICONST_1 : ICONST_0);
+            code.op(IRETURN);
+            code.mark(read);
+            code.op(ALOAD_1);
+            code.local(ILOAD, INDEX);
+            code.op(IALOAD);
+            code.local(ISTORE, SYMBOL);
+            code.op(IINC);
+            code.u1(INDEX);
+            code.u1(1);
+            Ranges ranges = ranges(view, s, states);
+            tree(code, ranges, 0, ranges.size - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, reject);
+        }
+        code.mark(reject);
+        code.op(ICONST_0);
+        code.op(IRETURN);
+        return code;
+    }
+
+    /**
+     * Collects the outgoing intervals of a state sorted by lower bound, merging adjacent intervals leading to the same state
+     */
+    private static Ranges ranges(AutomatonView view, int s, int[] states) {
+        List<long[]> list = new ArrayList<>();
+        for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+            int label = view.getLabelId(e);
+            if (label == AutomatonView.EPSILON)
+                throw new IllegalArgumentException("Only deterministic automata can be compiled");
+            for (Interval i : view.getLabel(label).intervals())
+                list.add(new long[]{i.getMin(), i.getMax(), states[view.getTarget(e)]});
+        }
+        list.sort((a, b) -> Long.compare(a[0], b[0]));
+        Ranges ranges = new Ranges(list.size());
+        for (long[] r : list) {
+            int n = ranges.size;
+            if (n > 0 && ranges.targets[n - 1] == r[2] && (long) ranges.maxs[n - 1] + 1 == r[0])
+                ranges.maxs[n - 1] = (int) r[1];
+            else {
+                ranges.mins[n] = (int) r[0];
+                ranges.maxs[n] = (int) r[1];
+                ranges.targets[n] = (int) r[2];
+                ranges.size++;
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Writes a binary tree of comparisons jumping to the target of the range holding the symbol
+     * @param from the first range of the subtree
+     * @param to the last range of the subtree
+     * @param low a lower bound of the symbol known at this point of the tree
+     * @param high an upper bound of the symbol known at this point of the tree
+     * @param reject the label of the rejecting block
+     */
+    private static void tree(Code code, Ranges ranges, int from, int to, int low, int high, int reject) {
+        if (from > to) {
+            code.jump(GOTO, reject);
+            return;
+        }
+        if (from == to) {
+            if (ranges.mins[from] > low) {
+                code.local(ILOAD, SYMBOL);
+                code.push(ranges.mins[from]);
+                code.jump(IF_ICMPLT, reject);
+            }
+            if (ranges.maxs[from] < high) {
+                code.local(ILOAD, SYMBOL);
+                code.push(ranges.maxs[from]);
+                code.jump(IF_ICMPGT, reject);
+            }
+            code.jump(GOTO, ranges.targets[from]);
+            return;
+        }
+        int mid = (from + to + 1) >>> 1;
+        int left = code.newLabel();
+        code.local(ILOAD, SYMBOL);
+        code.push(ranges.mins[mid]);
+        code.jump(IF_ICMPLT, left);
+        tree(code, ranges, mid, to, ranges.mins[mid], high, reject);
+        code.mark(left);
+        tree(code, ranges, from, mid - 1, low, ranges.mins[mid] - 1, reject);
+    }
+
+    /**
+     * The sorted disjoint intervals of a state and the labels of their targets
+     */
+    private static class Ranges {
+        final int[] mins;
+        final int[] maxs;
+        final int[] targets;
+        int size;
+
+        Ranges(int capacity) {
+            mins = new int[capacity];
+            maxs = new int[capacity];
+            targets = new int[capacity];
+        }
+    }
+
+    /**
+     * The bytecode of a method with forward and backward jumps to labels resolved once the code is complete
+     */
+    private static class Code {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int[] labels = new int[16];
+        private int nbLabels;
+        private final List<int[]> jumps = new ArrayList<>();
+        private final List<Integer> constants = new ArrayList<>();
+        private final List<Integer> constantPositions = new ArrayList<>();
+
+        int newLabel() {
+            if (nbLabels == labels.length)
+                labels = Arrays.copyOf(labels, 2 * nbLabels);
+            labels[nbLabels] = -1;
+            return nbLabels++;
+        }
+
+        void mark(int label) {
+            labels[label] = out.size();
+        }
+
+        void op(int opcode) {
+            out.write(opcode);
+        }
+
+        void u1(int value) {
+            out.write(value);
+        }
+
+        void local(int opcode, int index) {
+            out.write(opcode);
+            out.write(index);
+        }
+
+        void jump(int opcode, int label) {
+            jumps.add(new int[]{out.size(), label});
+            out.write(opcode);
+            out.write(0);
+            out.write(0);
+        }
+
+        void push(int value) {
+            if (value >= -1 && value <= 5)
+                out.write(ICONST_0 + value);
+            else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                out.write(BIPUSH);
+                out.write(value);
+            }
+            else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                out.write(SIPUSH);
+                out.write(value >> 8);
+                out.write(value);
+            }
+            else {
+                constants.add(value);
+                constantPositions.add(out.size());
+                out.write(LDC_W);
+                out.write(0);
+                out.write(0);
+            }
+        }
+
+        /**
+         * Returns the resolved code, the constant pool indices of the pushed integers are given by the pool
+         */
+        byte[] toByteArray(ConstantPool pool) {
+            byte[] code = out.toByteArray();
+            if (code.length > Short.MAX_VALUE)
+                throw new IllegalArgumentException("The automaton is too big to be compiled: " + code.length + " bytes of code");
+            for (int[] jump : jumps) {
+                int offset = labels[jump[1]] - jump[0];
+                code[jump[0] + 1] = (byte) (offset >> 8);
+                code[jump[0] + 2] = (byte) offset;
+            }
+            for (int i = 0; i < constants.size(); ++i) {
+                int index = pool.integer(constants.get(i));
+                int pos = constantPositions.get(i);
+                code[pos + 1] = (byte) (index >> 8);
+                code[pos + 2] = (byte) index;
+            }
+            return code;
+        }
+    }
+
+    /**
+     * The constant pool of a class, each constant being stored once
+     */
+    private static class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String,Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        private int entry(String key, int tag, int a, int b, String utf) {
+            Integer index = indices.get(key);
+            if (index != null)
+                return index;
+            try {
+                out.writeByte(tag);
+                if (utf != null)
+                    out.writeUTF(utf);
+                else if (b < 0)
+                    out.writeShort(a);
+                else if (tag == 3)
+                    out.writeInt(a);
+                else {
+                    out.writeShort(a);
+                    out.writeShort(b);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            indices.put(key, count);
+            return count++;
+        }
+
+        int utf8(String s) {
+            return entry("U" + s, 1, 0, 0, s);
+        }
+
+        int integer(int value) {
+            return entry("I" + value, 3, value, 0, null);
+        }
+
+        int classRef(String internalName) {
+            return entry("C" + internalName, 7, utf8(internalName), -1, null);
+        }
+
+        int nameAndType(String name, String descriptor) {
+            return entry("N" + name + descriptor, 12, utf8(name), utf8(descriptor), null);
+        }
+
+        int methodRef(String owner, String name, String descriptor) {
+            return entry("M" + owner + name + descriptor, 10, classRef(owner), nameAndType(name, descriptor), null);
+        }
+    }
+
+    /**
+     * Writes a final class with a default constructor and the given matches method
+     */
+    private static class ClassWriter {
+        private final String name;
+        private final ConstantPool pool = new ConstantPool();
+
+        ClassWriter(String name) {
+            this.name = name;
+        }
+
+        byte[] write(Code matches) {
+            int thisClass = pool.classRef(name);
+            int superClass = pool.classRef("java/lang/Object");
+            int itf = pool.classRef(INTERFACE);
+            int codeName = pool.utf8("Code");
+            int objectInit = pool.methodRef("java/lang/Object", "<init>", "()V");
+            int initName = pool.utf8("<init>");
+            int initDesc = pool.utf8("()V");
+            int matchesName = pool.utf8("matches");
+            int matchesDesc = pool.utf8("([I)Z");
+            Code init = new Code();
+            init.op(ALOAD_0);
+            init.op(INVOKESPECIAL);
+            init.u1(objectInit >> 8);
+            init.u1(objectInit & 0xFF);
+            init.op(RETURN);
+            byte[] initCode = init.toByteArray(pool);
+            byte[] matchesCode = matches.toByteArray(pool);
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            try {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(49);
+                out.writeShort(pool.count);
+                pool.bytes.writeTo(out);
+                out.writeShort(0x0001 | 0x0010 | 0x0020);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(itf);
+                out.writeShort(0);
+                out.writeShort(2);
+                method(out, initName, initDesc, codeName, 1, 1, initCode);
+                // the varargs flag matches the interface declaration
+                method(out, matchesName, matchesDesc, codeName, 2, SYMBOL + 1, matchesCode, 0x0001 | 0x0080);
+                out.writeShort(0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static void method(DataOutputStream out, int name, int desc, int codeName, int maxStack, int maxLocals, byte[] code)
+                throws IOException {
+            method(out, name, desc, codeName, maxStack, maxLocals, code, 0x0001);
+        }
+
+        private static void method(DataOutputStream out, int name, int desc, int codeName, int maxStack, int maxLocals, byte[] code,
+                                   int access) throws IOException {
+            out.writeShort(access);
+            out.writeShort(name);
+            out.writeShort(desc);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(12 + code.length);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+    }
+
+    /**
+     * A class loader defining a single generated matcher
+     */
+    private static class MatcherLoader extends ClassLoader {
+
+        MatcherLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
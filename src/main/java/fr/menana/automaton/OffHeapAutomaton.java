@@ -0,0 +1,402 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable finite automaton whose states, edges and labels are stored outside of the Java heap. <br>
+ * It uses the same compressed sparse row layout as {@link fr.menana.automaton.CompactAutomaton}, each array being a
+ * direct buffer. The garbage collector only sees a handful of small objects whatever the size of the automaton,
+ * and each array may hold up to 2GB, that is more than 500 millions edges. <br>
+ * The automaton is read through the {@link fr.menana.automaton.AutomatonView} interface : matching and traversal
+ * do not create any object, except {@link #getLabel(int)} which builds the interned {@link fr.menana.automaton.IntervalSet} of a
+ * label the first time it is asked for, and keeps it afterwards. <p>
+ * The same layout is used as a binary file format, written by {@link #write(AutomatonView, Path)} and memory-mapped
+ * by {@link #map(Path)} without deserializing anything. A file starts with a {@value #HEADER_SIZE} bytes header made of
+ * little-endian ints : the magic number, the format version, the flags of the automaton, the number of states, the
+ * index of the initial state, the number of edges, the number of labels and the number of intervals. It is followed
+ * by the arrays of the layout, each one starting on an 8 bytes boundary : the state flags as bytes, then the edge
+ * offsets, the targets, the label identifiers, the label offsets and the interval bounds as little-endian ints.
+ */
+public class OffHeapAutomaton implements AutomatonView {
+
+    /**
+     * The magic number starting an automaton file
+     */
+    public static final int MAGIC = 0x4155544d;
+
+    /**
+     * The version of the file format
+     */
+    public static final int FORMAT_VERSION = 1;
+
+    /**
+     * The size in bytes of the header of an automaton file
+     */
+    public static final int HEADER_SIZE = 64;
+
+    /**
+     * Flag of a deterministic automaton in the header
+     */
+    private static final int DETERMINISTIC = 1;
+
+    /**
+     * The flags of each state
+     */
+    private final ByteBuffer flags;
+
+    /**
+     * The index of the first outgoing edge of each state, followed by the number of edges
+     */
+    private final IntBuffer offsets;
+
+    /**
+     * The target state of each edge
+     */
+    private final IntBuffer targets;
+
+    /**
+     * The label identifier of each edge
+     */
+    private final IntBuffer labels;
+
+    /**
+     * The index of the first interval of each label, followed by the number of intervals
+     */
+    private final IntBuffer labelOffsets;
+
+    /**
+     * The lower and upper bounds of the intervals of all the labels
+     */
+    private final IntBuffer bounds;
+
+    /**
+     * The interned set of each label, built on the first call to {@link #getLabel(int)}
+     */
+    private final AtomicReferenceArray<IntervalSet> labelSets;
+
+    /**
+     * The index of the initial state
+     */
+    private final int initIndex;
+
+    /**
+     * <code>true</code> if the automaton is deterministic
+     */
+    private final boolean deterministic;
+
+    /**
+     * Constructs an off-heap automaton from its buffers, which are not copied
+     * @param flags the flags of each state
+     * @param offsets the index of the first outgoing edge of each state, followed by the number of edges
+     * @param targets the target state of each edge
+     * @param labels the label identifier of each edge
+     * @param labelOffsets the index of the first interval of each label, followed by the number of intervals
+     * @param bounds the lower and upper bounds of the intervals
+     * @param initIndex the index of the initial state, or -1
+     * @param deterministic <code>true</code> if the automaton is deterministic
+     */
+    OffHeapAutomaton(ByteBuffer flags, IntBuffer offsets, IntBuffer targets, IntBuffer labels, IntBuffer labelOffsets, IntBuffer bounds, int initIndex, boolean deterministic) {
+        this.flags = flags;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.labels = labels;
+        this.labelOffsets = labelOffsets;
+        this.bounds = bounds;
+        this.labelSets = new AtomicReferenceArray<>(labelOffsets.capacity() - 1);
+        this.initIndex = initIndex;
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Copies an automaton outside of the heap
+     * @param view the automaton to copy, for instance a {@link fr.menana.automaton.CompactAutomaton}
+     * @return a new off-heap automaton
+     */
+    public static OffHeapAutomaton copyOf(AutomatonView view) {
+        int nbStates = view.getNbStates();
+        int nbEdges = view.getNbEdges();
+        int nbLabels = view.getNbLabels();
+        ByteBuffer flags = ByteBuffer.allocateDirect(nbStates);
+        IntBuffer offsets = allocateInts(nbStates + 1);
+        IntBuffer targets = allocateInts(nbEdges);
+        IntBuffer labels = allocateInts(nbEdges);
+        IntBuffer labelOffsets = allocateInts(nbLabels + 1);
+        int nbIntervals = 0;
+        for (int l = 0; l < nbLabels; ++l) {
+            labelOffsets.put(l, nbIntervals);
+            nbIntervals += view.getLabel(l).intervals().size();
+        }
+        labelOffsets.put(nbLabels, nbIntervals);
+        IntBuffer bounds = allocateInts(2 * nbIntervals);
+        int i = 0;
+        for (int l = 0; l < nbLabels; ++l) {
+            for (Interval interval : view.getLabel(l).intervals()) {
+                bounds.put(i++, interval.min);
+                bounds.put(i++, interval.max);
+            }
+        }
+        for (int s = 0; s < nbStates; ++s) {
+            flags.put(s, view.isAccept(s) ? CompactAutomaton.ACCEPT : 0);
+            offsets.put(s, view.getEdgeStart(s));
+        }
+        offsets.put(nbStates, nbEdges);
+        for (int e = 0; e < nbEdges; ++e) {
+            targets.put(e, view.getTarget(e));
+            labels.put(e, view.getLabelId(e));
+        }
+        int init = view.getInitialIndex();
+        if (init >= 0)
+            flags.put(init, (byte) (flags.get(init) | CompactAutomaton.INITIAL));
+        return new OffHeapAutomaton(flags, offsets, targets, labels, labelOffsets, bounds, init, view.isDeterministic());
+    }
+
+    /**
+     * Writes an automaton to a file in the binary format of this class. <br>
+     * The file must not be mapped by {@link #map(Path)} : it is truncated before being written
+     * @param view the automaton to write, for instance a {@link fr.menana.automaton.CompactAutomaton}
+     * @param path the file to write, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(AutomatonView view, Path path) throws IOException {
+        int nbStates = view.getNbStates();
+        int nbEdges = view.getNbEdges();
+        int nbLabels = view.getNbLabels();
+        int nbIntervals = 0;
+        for (int l = 0; l < nbLabels; ++l)
+            nbIntervals += view.getLabel(l).intervals().size();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(view.isDeterministic() ? DETERMINISTIC : 0)
+                    .putInt(nbStates).putInt(view.getInitialIndex()).putInt(nbEdges).putInt(nbLabels).putInt(nbIntervals);
+            buffer.position(HEADER_SIZE);
+            for (int s = 0; s < nbStates; ++s) {
+                byte flag = view.isAccept(s) ? CompactAutomaton.ACCEPT : 0;
+                if (s == view.getInitialIndex())
+                    flag |= CompactAutomaton.INITIAL;
+                put(channel, buffer, 1).put(flag);
+            }
+            pad(channel, buffer, nbStates);
+            for (int s = 0; s < nbStates; ++s)
+                put(channel, buffer, 4).putInt(view.getEdgeStart(s));
+            put(channel, buffer, 4).putInt(nbEdges);
+            pad(channel, buffer, 4L * (nbStates + 1));
+            for (int e = 0; e < nbEdges; ++e)
+                put(channel, buffer, 4).putInt(view.getTarget(e));
+            pad(channel, buffer, 4L * nbEdges);
+            for (int e = 0; e < nbEdges; ++e)
+                put(channel, buffer, 4).putInt(view.getLabelId(e));
+            pad(channel, buffer, 4L * nbEdges);
+            int offset = 0;
+            for (int l = 0; l < nbLabels; ++l) {
+                put(channel, buffer, 4).putInt(offset);
+                offset += view.getLabel(l).intervals().size();
+            }
+            put(channel, buffer, 4).putInt(offset);
+            pad(channel, buffer, 4L * (nbLabels + 1));
+            for (int l = 0; l < nbLabels; ++l) {
+                for (Interval interval : view.getLabel(l).intervals())
+                    put(channel, buffer, 8).putInt(interval.min).putInt(interval.max);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+    }
+
+    /**
+     * Returns the buffer after making sure it has enough space left, writing its content to the channel if needed
+     */
+    private static ByteBuffer put(FileChannel channel, ByteBuffer buffer, int size) throws IOException {
+        if (buffer.remaining() < size) {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * Pads a section of the given length to the next 8 bytes boundary
+     */
+    private static void pad(FileChannel channel, ByteBuffer buffer, long length) throws IOException {
+        for (long i = length; i % 8 != 0; ++i)
+            put(channel, buffer, 1).put((byte) 0);
+    }
+
+    private static long align(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    /**
+     * Maps an automaton file, written by {@link #write(AutomatonView, Path)}, in memory. <br>
+     * Nothing is deserialized : the returned automaton reads the mapped file, which the operating system loads lazily
+     * and may share between processes. The mapping is released when the automaton is garbage collected.
+     * @param path the automaton file
+     * @return a read-only automaton backed by the file
+     * @throws IOException if the file cannot be read or is not a valid automaton file, in particular if the sizes or the initial
+     * state given by its header are out of range, or if its sections do not fit in the file
+     */
+    public static OffHeapAutomaton map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException("Not an automaton file: " + path);
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC)
+                throw new IOException("Not an automaton file: " + path);
+            int version = header.getInt();
+            if (version != FORMAT_VERSION)
+                throw new IOException("Unsupported automaton file version " + version + ": " + path);
+            boolean deterministic = (header.getInt() & DETERMINISTIC) != 0;
+            int nbStates = header.getInt();
+            int initIndex = header.getInt();
+            int nbEdges = header.getInt();
+            int nbLabels = header.getInt();
+            int nbIntervals = header.getInt();
+            if (nbStates < 0 || nbEdges < 0 || nbLabels < 0 || nbIntervals < 0)
+                throw new IOException("Negative size in automaton file header: " + path);
+            if (initIndex < -1 || initIndex >= nbStates)
+                throw new IOException("Initial state " + initIndex + " out of range [-1, " + nbStates + "[: " + path);
+
+            long position = HEADER_SIZE;
+            long[] sizes = {nbStates, 4L * (nbStates + 1), 4L * nbEdges, 4L * nbEdges, 4L * (nbLabels + 1), 8L * nbIntervals};
+            ByteBuffer[] sections = new ByteBuffer[sizes.length];
+            for (int i = 0; i < sizes.length; ++i) {
+                if (sizes[i] > Integer.MAX_VALUE)
+                    throw new IOException("Section " + i + " of " + sizes[i] + " bytes too large to be mapped: " + path);
+                if (position + sizes[i] > channel.size())
+                    throw new IOException("Truncated automaton file: " + path);
+                sections[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, sizes[i]).order(ByteOrder.LITTLE_ENDIAN);
+                position += align(sizes[i]);
+            }
+            IntBuffer offsets = sections[1].asIntBuffer();
+            IntBuffer labelOffsets = sections[4].asIntBuffer();
+            if (offsets.get(0) != 0 || offsets.get(nbStates) != nbEdges)
+                throw new IOException("Edge offsets do not cover the " + nbEdges + " edges: " + path);
+            if (labelOffsets.get(0) != 0 || labelOffsets.get(nbLabels) != nbIntervals)
+                throw new IOException("Label offsets do not cover the " + nbIntervals + " intervals: " + path);
+            return new OffHeapAutomaton(sections[0], offsets, sections[2].asIntBuffer(), sections[3].asIntBuffer(),
+                    labelOffsets, sections[5].asIntBuffer(), initIndex, deterministic);
+        }
+    }
+
+    private static IntBuffer allocateInts(int size) {
+        if (size > Integer.MAX_VALUE / 4)
+            throw new IllegalArgumentException("Too many elements for an off-heap array: " + size);
+        return ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Returns the number of intervals of all the labels
+     * @return the number of intervals
+     */
+    int getNbIntervals() {
+        return labelOffsets.get(getNbLabels());
+    }
+
+    @Override
+    public int getNbStates() {
+        return flags.capacity();
+    }
+
+    @Override
+    public int getInitialIndex() {
+        return initIndex;
+    }
+
+    @Override
+    public boolean isAccept(int state) {
+        return (flags.get(state) & CompactAutomaton.ACCEPT) != 0;
+    }
+
+    @Override
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    @Override
+    public int getNbEdges() {
+        return targets.capacity();
+    }
+
+    @Override
+    public int getEdgeStart(int state) {
+        return offsets.get(state);
+    }
+
+    @Override
+    public int getEdgeEnd(int state) {
+        return offsets.get(state + 1);
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    @Override
+    public int getLabelId(int edge) {
+        return labels.get(edge);
+    }
+
+    @Override
+    public int getNbLabels() {
+        return labelOffsets.capacity() - 1;
+    }
+
+    @Override
+    public IntervalSet getLabel(int label) {
+        IntervalSet cached = labelSets.get(label);
+        if (cached != null)
+            return cached;
+        IntervalSet set = new IntervalSet();
+        for (int i = labelOffsets.get(label), end = labelOffsets.get(label + 1); i < end; ++i)
+            set.add(new Interval(bounds.get(2 * i), bounds.get(2 * i + 1)));
+        // concurrent calls intern equal sets, hence store the same instance
+        set = set.intern();
+        labelSets.set(label, set);
+        return set;
+    }
+
+    @Override
+    public boolean labelContains(int label, int value) {
+        if (label == EPSILON)
+            return false;
+        int lo = labelOffsets.get(label);
+        int hi = labelOffsets.get(label + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value < bounds.get(2 * mid))
+                hi = mid - 1;
+            else if (value > bounds.get(2 * mid + 1))
+                lo = mid + 1;
+            else
+                return true;
+        }
+        return false;
+    }
+}
@@ -38,7 +38,9 @@ public class Operation {
     }
 
     /**
-     * The minimization algorithm to use when {@link fr.menana.automaton.Operation#minimize(Automaton)} is called
+     * The minimization algorithm to use when {@link fr.menana.automaton.Operation#minimize(Automaton)} is called. <br>
+     * As this field is shared by all the threads, concurrent code should rather pass the algorithm to the overloads taking a
+     * {@link fr.menana.automaton.Operation.MINIMIZATION_ALGO}
      */
     public static MINIMIZATION_ALGO minimization_method = MINIMIZATION_ALGO.Hopcroft;
 
@@ -100,7 +102,13 @@ public class Operation {
             Set<State> a = w.iterator().next();
             w.remove(a);
             for (Interval interval : alphabet) {
-                Set<State> x = allTransitions.stream().filter(tr -> a.contains(tr.dest) && tr.values.intersects(interval)).map(tr -> tr.orig).collect(Collectors.toSet());
+                Set<State> x = new HashSet<>();
+                for (State dest : a) {
+                    for (State orig : base.getPredecessors(dest)) {
+                        if (orig.transitions.get(dest).values.intersects(interval))
+                            x.add(orig);
+                    }
+                }
                 if (!x.isEmpty()) {
                     for (Set<State> y : new HashSet<>(p)) {
                         Set<State> inter = intersection(x, y);
@@ -149,8 +157,11 @@ public class Operation {
             }
         }
         out.setInitial(newInit);
+        // equivalent states of the DFA have overlapping transitions towards the same group, this is not a non-determinism
+        out.setDeterministic(true);
 
         out.reIndex();
+        out.internLabels();
 
 
         return out;
@@ -252,6 +263,7 @@ public class Operation {
 
         dfa.setInitial(dfaInit);
         dfa.reIndex();
+        dfa.internLabels();
 
 
         return dfa;
@@ -345,7 +357,7 @@ public class Operation {
                             onlyEpsilon = false;
                     } else if (t.values != null && !t.values.isEmpty())
                         onlyEpsilon = false;
-                if (onlyEpsilon)
+                if (onlyEpsilon && !s.accept)
                     toRem.add(s);
             }
 
@@ -389,11 +401,14 @@ public class Operation {
         for (State s : automaton.getStates()) {
             map.put(s, out.addState());
         }
-        for (State s : automaton.getStates()) {
-            for (Transition t : s.transitions.values())
+        for (State d : automaton.getStates()) {
+            for (State s : automaton.getPredecessors(d))
             {
-                State d = t.dest;
-                out.addTransition(map.get(d),map.get(s),t.values.clone());
+                Transition t = s.transitions.get(d);
+                if (t.values != null)
+                    out.addTransition(map.get(d),map.get(s),t.values.clone());
+                if (t.hasEpsilon())
+                    out.addEpsilonTransition(map.get(d),map.get(s));
             }
         }
         out.setAccept(map.get(automaton.getInitial()));
@@ -414,6 +429,18 @@ public class Operation {
      * @return a new automaton recognizing the concatenation of the languages defined by the {@link fr.menana.automaton.Automaton} parameters
      */
     public static Automaton concatenate(Automaton first, Automaton second) {
+        return concatenate(first, second, minimization_method);
+    }
+
+    /**
+     * Returns a new automaton recognizing the concatenation of the languages defined by the {@link fr.menana.automaton.Automaton} given as a parameter
+     * The returned automaton is deterministic if and only if both given automatons already are, in which case it is minimized with the given algorithm
+     * @param first the first {@link fr.menana.automaton.Automaton} used for the concatenation
+     * @param second the second {@link fr.menana.automaton.Automaton} used for the concatenation
+     * @param method the minimization algorithm to use
+     * @return a new automaton recognizing the concatenation of the languages defined by the {@link fr.menana.automaton.Automaton} parameters
+     */
+    public static Automaton concatenate(Automaton first, Automaton second, MINIMIZATION_ALGO method) {
         Automaton out = first.clone();
         Map<State, State> map = new HashMap<>();
         for (State s : second.getStates()) {
@@ -435,7 +462,7 @@ public class Operation {
                     out.addEpsilonTransition(map.get(tr.orig),map.get(tr.dest));
             }
         }
-        return (first.isDeterministic() && second.isDeterministic()?out.minimize():out) ;
+        return (first.isDeterministic() && second.isDeterministic()?minimize(out, method):out) ;
     }
 
     /**
@@ -446,6 +473,18 @@ public class Operation {
      * @return a new automaton recognizing the union of the languages defined by the {@link fr.menana.automaton.Automaton} parameters
      */
     public static Automaton union(Automaton first, Automaton second) {
+        return union(first, second, minimization_method);
+    }
+
+    /**
+     * Returns a new automaton recognizing the union of the languages defined by the {@link fr.menana.automaton.Automaton} given as a parameter
+     * The returned automaton is deterministic if and only if both given automatons already are, in which case it is minimized with the given algorithm
+     * @param first the first {@link fr.menana.automaton.Automaton} used for the union
+     * @param second the second {@link fr.menana.automaton.Automaton} used for the union
+     * @param method the minimization algorithm to use
+     * @return a new automaton recognizing the union of the languages defined by the {@link fr.menana.automaton.Automaton} parameters
+     */
+    public static Automaton union(Automaton first, Automaton second, MINIMIZATION_ALGO method) {
         if (first.getInitial() == null)
             return second.clone();
         else if (second.getInitial() == null)
@@ -471,7 +510,7 @@ public class Operation {
         out.addEpsilonTransition(init,out.getInitial());
         out.addEpsilonTransition(init, map.get(second.getInitial()));
         out.setInitial(init);
-        return (first.isDeterministic() && second.isDeterministic()?out.minimize():out) ;
+        return (first.isDeterministic() && second.isDeterministic()?minimize(out, method):out) ;
     }
 
     /**
@@ -501,6 +540,104 @@ public class Operation {
     }
 
 
+    /**
+     * Returns a new minimal automaton that recognizes the same language as the given {@link fr.menana.automaton.AutomatonView}
+     * @see fr.menana.automaton.Operation#minimize(Automaton)
+     * @param base the automaton to minimize
+     * @return an equivalent minimal compact automaton
+     */
+    public static CompactAutomaton minimize(AutomatonView base) {
+        return ViewOperations.minimize(base, minimization_method);
+    }
+
+    /**
+     * Returns a new minimal automaton that recognizes the same language as the given {@link fr.menana.automaton.AutomatonView}
+     * @see fr.menana.automaton.Operation#minimize(Automaton, MINIMIZATION_ALGO)
+     * @param base the automaton to minimize
+     * @param method the minimization algorithm to use
+     * @return an equivalent minimal compact automaton
+     */
+    public static CompactAutomaton minimize(AutomatonView base, MINIMIZATION_ALGO method) {
+        return ViewOperations.minimize(base, method);
+    }
+
+    /**
+     * Determinizes a given {@link fr.menana.automaton.AutomatonView}
+     * @see fr.menana.automaton.Operation#determinize(Automaton)
+     * @param nfa a non-deterministic automaton
+     * @return a deterministic compact automaton, or null if the given automaton has no initial state
+     */
+    public static CompactAutomaton determinize(AutomatonView nfa) {
+        return ViewOperations.determinize(nfa);
+    }
+
+    /**
+     * Returns a new automaton that recognizes the mirror of the language defined by the given {@link fr.menana.automaton.AutomatonView}
+     * @see fr.menana.automaton.Operation#revert(Automaton)
+     * @param automaton the automaton to revert
+     * @return a reverted compact automaton
+     */
+    public static CompactAutomaton revert(AutomatonView automaton) {
+        return ViewOperations.revert(automaton);
+    }
+
+    /**
+     * Returns a new automaton recognizing the concatenation of the languages defined by the {@link fr.menana.automaton.AutomatonView} given as a parameter
+     * @see fr.menana.automaton.Operation#concatenate(Automaton, Automaton)
+     * @param first the first automaton used for the concatenation
+     * @param second the second automaton used for the concatenation
+     * @return a new compact automaton recognizing the concatenation of the languages
+     */
+    public static CompactAutomaton concatenate(AutomatonView first, AutomatonView second) {
+        return ViewOperations.concatenate(first, second, minimization_method);
+    }
+
+    /**
+     * Returns a new automaton recognizing the concatenation of the languages defined by the {@link fr.menana.automaton.AutomatonView} given as a parameter
+     * @see fr.menana.automaton.Operation#concatenate(Automaton, Automaton, MINIMIZATION_ALGO)
+     * @param first the first automaton used for the concatenation
+     * @param second the second automaton used for the concatenation
+     * @param method the minimization algorithm to use
+     * @return a new compact automaton recognizing the concatenation of the languages
+     */
+    public static CompactAutomaton concatenate(AutomatonView first, AutomatonView second, MINIMIZATION_ALGO method) {
+        return ViewOperations.concatenate(first, second, method);
+    }
+
+    /**
+     * Returns a new automaton recognizing the union of the languages defined by the {@link fr.menana.automaton.AutomatonView} given as a parameter
+     * @see fr.menana.automaton.Operation#union(Automaton, Automaton)
+     * @param first the first automaton used for the union
+     * @param second the second automaton used for the union
+     * @return a new compact automaton recognizing the union of the languages
+     */
+    public static CompactAutomaton union(AutomatonView first, AutomatonView second) {
+        return ViewOperations.union(first, second, minimization_method);
+    }
+
+    /**
+     * Returns a new automaton recognizing the union of the languages defined by the {@link fr.menana.automaton.AutomatonView} given as a parameter
+     * @see fr.menana.automaton.Operation#union(Automaton, Automaton, MINIMIZATION_ALGO)
+     * @param first the first automaton used for the union
+     * @param second the second automaton used for the union
+     * @param method the minimization algorithm to use
+     * @return a new compact automaton recognizing the union of the languages
+     */
+    public static CompactAutomaton union(AutomatonView first, AutomatonView second, MINIMIZATION_ALGO method) {
+        return ViewOperations.union(first, second, method);
+    }
+
+    /**
+     * Returns a new automaton that recognizes the complementary language of the given {@link fr.menana.automaton.AutomatonView}
+     * @see fr.menana.automaton.Operation#complement(Automaton)
+     * @param automaton the automaton to complement
+     * @return a new compact automaton recognizing the complementary language
+     */
+    public static CompactAutomaton complement(AutomatonView automaton) {
+        return ViewOperations.complement(automaton);
+    }
+
+
   /*  public static void main(String[] args) {
         Automaton a = Automaton.nfaFromString("((72345)|((7|8)+))");
        // System.out.println(a);
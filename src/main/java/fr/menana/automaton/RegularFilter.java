@@ -0,0 +1,438 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.Arrays;
+
+/**
+ * An incremental generalized arc consistency filter for the <code>regular</code> global constraint, with trail based
+ * backtracking. <br>
+ * The automaton is unrolled once into a {@link fr.menana.automaton.LayeredGraph} over the initial domains. The values of each
+ * layer are split into elementary intervals, the coarsest partition such that every arc label is a union of them, so that all
+ * the values of an elementary interval are supported by the same arcs. The filter then works on edges, one per arc and
+ * elementary interval of its label, and maintains the number of alive outgoing and incoming edges of each node and the
+ * number of alive edges of each elementary interval. When a domain shrinks, the edges of the elementary intervals it no
+ * longer meets are removed, and a node left without outgoing or incoming edges gets its remaining edges removed in turn. A
+ * value is supported while its elementary interval has an alive edge. <br>
+ * Removed edges and replaced domains are recorded on a trail: {@link #worldPush()} marks a choice point and
+ * {@link #worldPop()} restores the state of the last mark, so the cost of a propagation is proportional to the number of edges
+ * it removes plus the number of elementary intervals the removed values meet.
+ */
+public class RegularFilter {
+
+    private final LayeredGraph graph;
+
+    private final int length;
+
+    /**
+     * The current domain of each position, interned so that the mutable sets given by the caller are never kept
+     */
+    private final IntervalSet[] domains;
+
+    /**
+     * For each layer of edges, the bounds of its elementary intervals in increasing order
+     */
+    private final int[][] elementMins;
+    private final int[][] elementMaxs;
+
+    /**
+     * For each layer of edges, the origin node, the destination node and the elementary interval of each edge. The edges are
+     * sorted by origin node
+     */
+    private final int[][] edgeOrigins;
+    private final int[][] edgeDestinations;
+    private final int[][] edgeElements;
+
+    /**
+     * For each layer of edges, the position of the first edge of each origin node, and of the last one at the end
+     */
+    private final int[][] outOffsets;
+
+    /**
+     * For each layer of edges, the edges sorted by destination node, and the position of the first edge of each destination node
+     */
+    private final int[][] inEdges;
+    private final int[][] inOffsets;
+
+    /**
+     * For each layer of edges, the edges sorted by elementary interval, and the position of the first edge of each of them
+     */
+    private final int[][] elementEdges;
+    private final int[][] elementOffsets;
+
+    /**
+     * The alive edges of each layer
+     */
+    private final boolean[][] alive;
+
+    /**
+     * The number of alive outgoing edges of the nodes of layers 0 to n - 1, and of alive incoming edges of the nodes of layers
+     * 1 to n, the first entry being unused
+     */
+    private final int[][] outDegrees;
+    private final int[][] inDegrees;
+
+    /**
+     * The number of alive edges of each elementary interval of each layer
+     */
+    private final int[][] supports;
+
+    /**
+     * The removed edges as pairs (layer, edge), in the order of their removal
+     */
+    private int[] edgeTrail = new int[64];
+    private int edgeTrailSize;
+
+    /**
+     * The positions whose domain has been replaced and their previous domains
+     */
+    private int[] domainTrailPositions = new int[16];
+    private IntervalSet[] domainTrailValues = new IntervalSet[16];
+    private int domainTrailSize;
+
+    /**
+     * The sizes of both trails at each choice point
+     */
+    private int[] worlds = new int[32];
+    private int nbWorlds;
+
+    /**
+     * The nodes left without outgoing or incoming edges whose other edges have not been removed yet, as pairs (layer, node)
+     */
+    private int[] pending = new int[64];
+    private int nbPending;
+
+    /**
+     * Constructs a filter over the words accepted by an automaton whose i-th value belongs to the i-th domain
+     * @param view an automaton without epsilon transitions
+     * @param domains the initial domain of each position of the words, a null domain standing for any integer
+     * @throws IllegalArgumentException if the automaton has epsilon transitions
+     */
+    public RegularFilter(AutomatonView view, IntervalSet... domains) {
+        this.graph = LayeredGraph.unroll(view, domains);
+        this.length = domains.length;
+        this.domains = new IntervalSet[length];
+        for (int i = 0; i < length; ++i)
+            this.domains[i] = domains[i] == null ? IntervalSet.ALL : domains[i].intern();
+        elementMins = new int[length][];
+        elementMaxs = new int[length][];
+        edgeOrigins = new int[length][];
+        edgeDestinations = new int[length][];
+        edgeElements = new int[length][];
+        outOffsets = new int[length][];
+        inEdges = new int[length][];
+        inOffsets = new int[length][];
+        elementEdges = new int[length][];
+        elementOffsets = new int[length][];
+        alive = new boolean[length][];
+        outDegrees = new int[length][];
+        inDegrees = new int[length + 1][];
+        supports = new int[length][];
+        for (int i = 0; i < length; ++i)
+            buildLayer(i);
+    }
+
+    /**
+     * Splits the labels of a layer into elementary intervals and builds its edges
+     */
+    private void buildLayer(int i) {
+        int nbArcs = graph.getNbArcs(i);
+        // the elementary intervals start at the lower bounds of the labels and after their upper bounds
+        long[] bounds = new long[0];
+        int nbBounds = 0;
+        for (int a = 0; a < nbArcs; ++a) {
+            for (Interval interval : graph.getArcLabel(i, a).intervals()) {
+                if (nbBounds + 2 > bounds.length)
+                    bounds = Arrays.copyOf(bounds, Math.max(16, 2 * bounds.length));
+                bounds[nbBounds++] = interval.getMin();
+                bounds[nbBounds++] = interval.getMax() + 1L;
+            }
+        }
+        Arrays.sort(bounds, 0, nbBounds);
+        int nbDistinct = 0;
+        for (int k = 0; k < nbBounds; ++k) {
+            if (nbDistinct == 0 || bounds[nbDistinct - 1] != bounds[k])
+                bounds[nbDistinct++] = bounds[k];
+        }
+        IntervalSet support = graph.getSupport(i);
+        int[] mins = new int[Math.max(0, nbDistinct - 1)];
+        int[] maxs = new int[mins.length];
+        int nbElements = 0;
+        for (int k = 0; k + 1 < nbDistinct; ++k) {
+            if (support.contains((int) bounds[k])) {
+                mins[nbElements] = (int) bounds[k];
+                maxs[nbElements++] = (int) (bounds[k + 1] - 1);
+            }
+        }
+        elementMins[i] = Arrays.copyOf(mins, nbElements);
+        elementMaxs[i] = Arrays.copyOf(maxs, nbElements);
+
+        // one edge per arc and elementary interval of its label
+        int nbNodes = graph.getNbNodes(i);
+        int[] origins = new int[16];
+        int[] destinations = new int[16];
+        int[] elements = new int[16];
+        int nbEdges = 0;
+        outOffsets[i] = new int[nbNodes + 1];
+        for (int k = 0; k < nbNodes; ++k) {
+            outOffsets[i][k] = nbEdges;
+            for (int a = graph.getArcStart(i, k); a < graph.getArcEnd(i, k); ++a) {
+                for (Interval interval : graph.getArcLabel(i, a).intervals()) {
+                    for (int el = element(i, interval.getMin()); el < nbElements && elementMins[i][el] <= interval.getMax(); ++el) {
+                        if (nbEdges == origins.length) {
+                            origins = Arrays.copyOf(origins, 2 * nbEdges);
+                            destinations = Arrays.copyOf(destinations, 2 * nbEdges);
+                            elements = Arrays.copyOf(elements, 2 * nbEdges);
+                        }
+                        origins[nbEdges] = k;
+                        destinations[nbEdges] = graph.getArcTarget(i, a);
+                        elements[nbEdges++] = el;
+                    }
+                }
+            }
+        }
+        outOffsets[i][nbNodes] = nbEdges;
+        edgeOrigins[i] = Arrays.copyOf(origins, nbEdges);
+        edgeDestinations[i] = Arrays.copyOf(destinations, nbEdges);
+        edgeElements[i] = Arrays.copyOf(elements, nbEdges);
+        alive[i] = new boolean[nbEdges];
+        Arrays.fill(alive[i], true);
+
+        outDegrees[i] = new int[nbNodes];
+        for (int k = 0; k < nbNodes; ++k)
+            outDegrees[i][k] = outOffsets[i][k + 1] - outOffsets[i][k];
+        inDegrees[i + 1] = new int[graph.getNbNodes(i + 1)];
+        inOffsets[i] = new int[graph.getNbNodes(i + 1) + 1];
+        inEdges[i] = bucket(edgeDestinations[i], inDegrees[i + 1], inOffsets[i]);
+        supports[i] = new int[nbElements];
+        elementOffsets[i] = new int[nbElements + 1];
+        elementEdges[i] = bucket(edgeElements[i], supports[i], elementOffsets[i]);
+    }
+
+    /**
+     * Sorts the edges of a layer by key with a counting sort
+     * @param keys the key of each edge
+     * @param counts filled with the number of edges of each key
+     * @param offsets filled with the position of the first edge of each key, and the number of edges at the end
+     * @return the edges sorted by key
+     */
+    private static int[] bucket(int[] keys, int[] counts, int[] offsets) {
+        for (int key : keys)
+            counts[key]++;
+        for (int k = 0; k < counts.length; ++k)
+            offsets[k + 1] = offsets[k] + counts[k];
+        int[] sorted = new int[keys.length];
+        int[] next = Arrays.copyOf(offsets, counts.length);
+        for (int e = 0; e < keys.length; ++e)
+            sorted[next[keys[e]]++] = e;
+        return sorted;
+    }
+
+    /**
+     * Returns the first elementary interval of a layer whose upper bound is at least the given value
+     */
+    private int element(int layer, int value) {
+        int[] maxs = elementMaxs[layer];
+        int low = 0;
+        int high = maxs.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxs[mid] < value)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * @return the length of the words
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return <code>true</code> if no word is left
+     */
+    public boolean isFailed() {
+        return graph.isEmpty() || (length > 0 && outDegrees[0][0] == 0);
+    }
+
+    /**
+     * @param position a position in the words
+     * @return the current domain of the position
+     */
+    public IntervalSet getDomain(int position) {
+        return domains[position];
+    }
+
+    /**
+     * Returns the values of the current domain of a position that belong to a word accepted by the automaton and whose values
+     * all lie in the current domains
+     * @param position a position in the words
+     * @return a new interned set of values
+     */
+    public IntervalSet getSupport(int position) {
+        IntervalSet values = new IntervalSet();
+        if (!isFailed()) {
+            for (int el = 0; el < supports[position].length; ++el) {
+                if (supports[position][el] > 0)
+                    values.add(new Interval(elementMins[position][el], elementMaxs[position][el]));
+            }
+        }
+        return values.intersection(domains[position]).intern();
+    }
+
+    /**
+     * Restricts the domain of a position to the given values and removes the values of all the positions that are no longer
+     * supported
+     * @param position a position in the words
+     * @param values the values the position may still take
+     * @return <code>false</code> if no word is left
+     */
+    public boolean restrict(int position, IntervalSet values) {
+        IntervalSet previous = domains[position];
+        IntervalSet domain = previous.intersection(values).intern();
+        if (domain.equals(previous))
+            return !isFailed();
+        if (domainTrailSize == domainTrailPositions.length) {
+            domainTrailPositions = Arrays.copyOf(domainTrailPositions, 2 * domainTrailSize);
+            domainTrailValues = Arrays.copyOf(domainTrailValues, 2 * domainTrailSize);
+        }
+        domainTrailPositions[domainTrailSize] = position;
+        domainTrailValues[domainTrailSize++] = previous;
+        domains[position] = domain;
+        for (Interval removed : previous.minus(domain).intervals()) {
+            for (int el = element(position, removed.getMin());
+                 el < elementMins[position].length && elementMins[position][el] <= removed.getMax(); ++el) {
+                if (supports[position][el] > 0 && !domain.intersects(new Interval(elementMins[position][el], elementMaxs[position][el]))) {
+                    for (int k = elementOffsets[position][el]; k < elementOffsets[position][el + 1]; ++k)
+                        remove(position, elementEdges[position][k]);
+                }
+            }
+        }
+        propagate();
+        return !isFailed();
+    }
+
+    /**
+     * Removes values from the domain of a position and the values of all the positions that are no longer supported
+     * @param position a position in the words
+     * @param values the values to remove
+     * @return <code>false</code> if no word is left
+     */
+    public boolean remove(int position, IntervalSet values) {
+        return restrict(position, values.complement());
+    }
+
+    /**
+     * Marks a choice point, to which the next call to {@link #worldPop()} restores the filter
+     */
+    public void worldPush() {
+        if (2 * nbWorlds + 2 > worlds.length)
+            worlds = Arrays.copyOf(worlds, 2 * worlds.length);
+        worlds[2 * nbWorlds] = edgeTrailSize;
+        worlds[2 * nbWorlds + 1] = domainTrailSize;
+        nbWorlds++;
+    }
+
+    /**
+     * Restores the domains and the edges as they were at the last choice point
+     * @throws IllegalStateException if there is no choice point
+     */
+    public void worldPop() {
+        if (nbWorlds == 0)
+            throw new IllegalStateException("No world to pop");
+        nbWorlds--;
+        int edgeMark = worlds[2 * nbWorlds];
+        while (edgeTrailSize > edgeMark) {
+            int edge = edgeTrail[--edgeTrailSize];
+            int layer = edgeTrail[--edgeTrailSize];
+            alive[layer][edge] = true;
+            outDegrees[layer][edgeOrigins[layer][edge]]++;
+            inDegrees[layer + 1][edgeDestinations[layer][edge]]++;
+            supports[layer][edgeElements[layer][edge]]++;
+        }
+        int domainMark = worlds[2 * nbWorlds + 1];
+        while (domainTrailSize > domainMark) {
+            --domainTrailSize;
+            domains[domainTrailPositions[domainTrailSize]] = domainTrailValues[domainTrailSize];
+            domainTrailValues[domainTrailSize] = null;
+        }
+    }
+
+    /**
+     * @return the number of choice points
+     */
+    public int getWorldIndex() {
+        return nbWorlds;
+    }
+
+    /**
+     * Removes an edge, updates the counters and records the edge on the trail, and the nodes it leaves without outgoing or
+     * incoming edges on the stack of nodes to propagate
+     */
+    private void remove(int layer, int edge) {
+        if (!alive[layer][edge])
+            return;
+        alive[layer][edge] = false;
+        supports[layer][edgeElements[layer][edge]]--;
+        if (edgeTrailSize + 2 > edgeTrail.length)
+            edgeTrail = Arrays.copyOf(edgeTrail, 2 * edgeTrail.length);
+        edgeTrail[edgeTrailSize++] = layer;
+        edgeTrail[edgeTrailSize++] = edge;
+        int origin = edgeOrigins[layer][edge];
+        if (--outDegrees[layer][origin] == 0 && layer > 0)
+            schedule(layer, origin);
+        int destination = edgeDestinations[layer][edge];
+        if (--inDegrees[layer + 1][destination] == 0 && layer + 1 < length)
+            schedule(~(layer + 1), destination);
+    }
+
+    /**
+     * Records a node to propagate
+     * @param layer the layer of a node without outgoing edges, or its complement for a node without incoming edges
+     */
+    private void schedule(int layer, int node) {
+        if (nbPending + 2 > pending.length)
+            pending = Arrays.copyOf(pending, 2 * pending.length);
+        pending[nbPending++] = layer;
+        pending[nbPending++] = node;
+    }
+
+    /**
+     * Removes the incoming edges of the nodes without outgoing edges and the outgoing edges of the nodes without incoming
+     * edges, until no such node is left
+     */
+    private void propagate() {
+        while (nbPending > 0) {
+            int node = pending[--nbPending];
+            int layer = pending[--nbPending];
+            if (layer >= 0) {
+                for (int k = inOffsets[layer - 1][node]; k < inOffsets[layer - 1][node + 1]; ++k)
+                    remove(layer - 1, inEdges[layer - 1][k]);
+            }
+            else {
+                layer = ~layer;
+                for (int k = outOffsets[layer][node]; k < outOffsets[layer][node + 1]; ++k)
+                    remove(layer, k);
+            }
+        }
+    }
+}
@@ -105,6 +105,8 @@ public class State { //implements Comparable<State>{
         else {
             if (ex.values == null)
                 ex.values = tr.values;
+            else if (ex.values.isImmutable())
+                ex.values = ex.values.union(tr.values);
             else
                 ex.values.add(tr.values);
 
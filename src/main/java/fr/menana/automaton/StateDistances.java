@@ -0,0 +1,254 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * The distances from each state of an automaton to acceptance: the minimum and maximum numbers of values to read from a state
+ * to reach an accepting state. A state is dead when it reaches no accepting state. <br>
+ * These distances give necessary conditions on the words that may still be accepted once a state is reached: a run in a
+ * state s with r values left can only succeed if s is not dead and min(s) &le; r &le; max(s). {@link #run(int...)} uses
+ * them to reject a word as soon as its remaining length cannot lead to acceptance, and the prefix queries use them to prune
+ * completions, as for autocompletion. The minimum distances come from a breadth first search from the accepting states on
+ * the reversed transitions, the maximum ones from a topological order of the live states, states reaching a cycle of live
+ * states being at an infinite maximum distance.
+ */
+public class StateDistances {
+
+    /**
+     * The maximum distance of the states that reach a cycle of live states
+     */
+    public static final int INFINITE = Integer.MAX_VALUE;
+
+    private final AutomatonView view;
+
+    /**
+     * The minimum distance of each state to an accepting state, -1 for dead states
+     */
+    private final int[] minDistances;
+
+    /**
+     * The maximum distance of each state to an accepting state, {@link #INFINITE} if unbounded, -1 for dead states
+     */
+    private final int[] maxDistances;
+
+    /**
+     * Computes the distances of the states of an automaton to acceptance
+     * @param view an automaton without epsilon transitions
+     * @throws IllegalArgumentException if the automaton has epsilon transitions
+     */
+    public StateDistances(AutomatonView view) {
+        this.view = view;
+        int nbStates = view.getNbStates();
+        // the reversed transitions, in a compressed sparse row layout
+        int[] offsets = new int[nbStates + 1];
+        for (int e = 0; e < view.getNbEdges(); ++e) {
+            if (view.getLabelId(e) == AutomatonView.EPSILON)
+                throw new IllegalArgumentException("Automata with epsilon transitions must be determinized before computing distances");
+            offsets[view.getTarget(e) + 1]++;
+        }
+        for (int s = 0; s < nbStates; ++s)
+            offsets[s + 1] += offsets[s];
+        int[] sources = new int[view.getNbEdges()];
+        int[] next = Arrays.copyOf(offsets, nbStates);
+        for (int s = 0; s < nbStates; ++s) {
+            for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e)
+                sources[next[view.getTarget(e)]++] = s;
+        }
+
+        minDistances = new int[nbStates];
+        Arrays.fill(minDistances, -1);
+        int[] queue = new int[nbStates];
+        int head = 0;
+        int tail = 0;
+        for (int s = 0; s < nbStates; ++s) {
+            if (view.isAccept(s)) {
+                minDistances[s] = 0;
+                queue[tail++] = s;
+            }
+        }
+        while (head < tail) {
+            int s = queue[head++];
+            for (int k = offsets[s]; k < offsets[s + 1]; ++k) {
+                if (minDistances[sources[k]] < 0) {
+                    minDistances[sources[k]] = minDistances[s] + 1;
+                    queue[tail++] = sources[k];
+                }
+            }
+        }
+
+        // a live state is done once all its transitions towards live states are
+        maxDistances = new int[nbStates];
+        int[] pending = new int[nbStates];
+        head = 0;
+        tail = 0;
+        for (int s = 0; s < nbStates; ++s) {
+            maxDistances[s] = minDistances[s] < 0 ? -1 : view.isAccept(s) ? 0 : Integer.MIN_VALUE;
+            for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                if (minDistances[view.getTarget(e)] >= 0)
+                    pending[s]++;
+            }
+            if (minDistances[s] >= 0 && pending[s] == 0)
+                queue[tail++] = s;
+        }
+        BitSet done = new BitSet(nbStates);
+        while (head < tail) {
+            int s = queue[head++];
+            done.set(s);
+            for (int k = offsets[s]; k < offsets[s + 1]; ++k) {
+                int p = sources[k];
+                if (minDistances[p] < 0)
+                    continue;
+                maxDistances[p] = Math.max(maxDistances[p], maxDistances[s] + 1);
+                if (--pending[p] == 0)
+                    queue[tail++] = p;
+            }
+        }
+        for (int s = 0; s < nbStates; ++s) {
+            if (minDistances[s] >= 0 && !done.get(s))
+                maxDistances[s] = INFINITE;
+        }
+    }
+
+    /**
+     * @return the automaton whose states are measured
+     */
+    public AutomatonView getView() {
+        return view;
+    }
+
+    /**
+     * @param state the index of a state
+     * @return <code>true</code> if no accepting state can be reached from the state
+     */
+    public boolean isDead(int state) {
+        return minDistances[state] < 0;
+    }
+
+    /**
+     * @param state the index of a state
+     * @return the minimum number of values to read from the state to reach an accepting state, -1 if the state is dead
+     */
+    public int getMinDistance(int state) {
+        return minDistances[state];
+    }
+
+    /**
+     * @param state the index of a state
+     * @return the maximum number of values to read from the state to reach an accepting state, {@link #INFINITE} if it is
+     * unbounded, -1 if the state is dead
+     */
+    public int getMaxDistance(int state) {
+        return maxDistances[state];
+    }
+
+    /**
+     * Checks the necessary condition for a word of a length within the given bounds to be accepted from a state
+     * @param state the index of a state
+     * @param minRemaining the minimum number of values left
+     * @param maxRemaining the maximum number of values left
+     * @return <code>false</code> if no word of such a length is accepted from the state
+     */
+    public boolean mayAccept(int state, int minRemaining, int maxRemaining) {
+        return minDistances[state] >= 0 && minDistances[state] <= maxRemaining && maxDistances[state] >= minRemaining;
+    }
+
+    /**
+     * Checks if a word is accepted, rejecting it as soon as the run reaches states from which its remaining length cannot be
+     * accepted
+     * @param word the word
+     * @return <code>true</code> if and only if the automaton accepts the word
+     */
+    public boolean run(int... word) {
+        BitSet states = reach(word, word.length);
+        return states != null && states.nextSetBit(0) >= 0;
+    }
+
+    /**
+     * Checks if some word accepted by the automaton starts with the given prefix
+     * @param prefix the prefix
+     * @return <code>true</code> if and only if the prefix can be completed into an accepted word
+     */
+    public boolean isViablePrefix(int... prefix) {
+        return isViablePrefix(prefix, prefix.length, INFINITE);
+    }
+
+    /**
+     * Checks the necessary condition for some word accepted by the automaton of a length within the given bounds to start with
+     * the given prefix. The answer is exact when the lengths of the completions from the reached states have no gaps, in
+     * particular when the length is not bounded
+     * @param prefix the prefix
+     * @param minLength the minimum length of the words
+     * @param maxLength the maximum length of the words
+     * @return <code>false</code> if no accepted word of such a length starts with the prefix
+     */
+    public boolean isViablePrefix(int[] prefix, int minLength, int maxLength) {
+        if (maxLength < prefix.length || maxLength < minLength)
+            return false;
+        int minRemaining = Math.max(0, minLength - prefix.length);
+        int maxRemaining = maxLength == INFINITE ? INFINITE : maxLength - prefix.length;
+        BitSet states = reach(prefix, -1);
+        if (states == null)
+            return false;
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+            if (mayAccept(s, minRemaining, maxRemaining))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads the values of a word from the initial state, keeping only the states from which the rest of the word may be accepted
+     * @param word the values to read
+     * @param length the length of the whole word, or -1 to only discard dead states
+     * @return the states reached at the end of the word, accepting ones only if the length is given, or null if none is left
+     */
+    private BitSet reach(int[] word, int length) {
+        int init = view.getInitialIndex();
+        if (init < 0 || !alive(init, length, 0))
+            return null;
+        BitSet current = new BitSet(view.getNbStates());
+        BitSet next = new BitSet(view.getNbStates());
+        current.set(init);
+        for (int i = 0; i < word.length; ++i) {
+            next.clear();
+            for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+                for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                    int t = view.getTarget(e);
+                    if (!next.get(t) && view.labelContains(view.getLabelId(e), word[i]) && alive(t, length, i + 1))
+                        next.set(t);
+                }
+            }
+            if (next.isEmpty())
+                return null;
+            BitSet swap = current;
+            current = next;
+            next = swap;
+        }
+        return current;
+    }
+
+    private boolean alive(int state, int length, int position) {
+        if (length < 0)
+            return minDistances[state] >= 0;
+        int remaining = length - position;
+        return mayAccept(state, remaining, remaining);
+    }
+}
@@ -126,7 +126,7 @@ public class Transition {
      * @return the list of {@link fr.menana.automaton.Interval} carried by this transition
      */
     List<Interval> getIntervals() {
-        return values != null ? new ArrayList<>(this.values.getIntervals()) : new ArrayList<>(0);
+        return values != null ? new ArrayList<>(this.values.intervals()) : new ArrayList<>(0);
     }
 
     public boolean equals(Object other) {
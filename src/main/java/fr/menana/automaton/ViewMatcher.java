@@ -0,0 +1,155 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class consists of static methods shared by the implementations of {@link fr.menana.automaton.AutomatonView}
+ */
+final class ViewMatcher {
+
+    private ViewMatcher() {}
+
+    /**
+     * Checks if a word is accepted by the given view. <br>
+     * A deterministic view is run following a single path, a non-deterministic view is run on sets of states
+     * @param view the automaton to run
+     * @param word a word as an int array
+     * @return <code>true</code> if and only if the word belongs to the language of the automaton
+     */
+    static boolean run(AutomatonView view, int[] word) {
+        int init = view.getInitialIndex();
+        if (init < 0)
+            return false;
+        if (view.isDeterministic()) {
+            int state = init;
+            for (int value : word) {
+                state = next(view, state, value);
+                if (state < 0)
+                    return false;
+            }
+            return view.isAccept(state);
+        }
+        int[] stack = new int[view.getNbStates()];
+        BitSet current = new BitSet(view.getNbStates());
+        BitSet next = new BitSet(view.getNbStates());
+        current.set(init);
+        closure(view, current, stack);
+        for (int value : word) {
+            next.clear();
+            for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+                for (int e = view.getEdgeStart(s), end = view.getEdgeEnd(s); e < end; ++e) {
+                    int label = view.getLabelId(e);
+                    if (label != AutomatonView.EPSILON && view.labelContains(label, value))
+                        next.set(view.getTarget(e));
+                }
+            }
+            if (next.isEmpty())
+                return false;
+            closure(view, next, stack);
+            BitSet tmp = current;
+            current = next;
+            next = tmp;
+        }
+        for (int s = current.nextSetBit(0); s >= 0; s = current.nextSetBit(s + 1)) {
+            if (view.isAccept(s))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the state reached from a given state with a given value, the view being deterministic
+     * @param view a deterministic automaton
+     * @param state the index of the origin state
+     * @param value the value read
+     * @return the index of the reached state, -1 if there is none
+     */
+    static int next(AutomatonView view, int state, int value) {
+        for (int e = view.getEdgeStart(state), end = view.getEdgeEnd(state); e < end; ++e) {
+            if (view.labelContains(view.getLabelId(e), value))
+                return view.getTarget(e);
+        }
+        return -1;
+    }
+
+    /**
+     * Adds to the given set of states all the states reachable with epsilon edges
+     * @param view the automaton
+     * @param states the set of states to close
+     * @param stack a work array whose length is at least the number of states
+     */
+    static void closure(AutomatonView view, BitSet states, int[] stack) {
+        int size = 0;
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1))
+            stack[size++] = s;
+        while (size > 0) {
+            int s = stack[--size];
+            for (int e = view.getEdgeStart(s), end = view.getEdgeEnd(s); e < end; ++e) {
+                if (view.getLabelId(e) == AutomatonView.EPSILON) {
+                    int target = view.getTarget(e);
+                    if (!states.get(target)) {
+                        states.set(target);
+                        stack[size++] = target;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructs an {@link fr.menana.automaton.Automaton} from a view, keeping the index of each state. <br>
+     * Parallel edges are merged into a single {@link fr.menana.automaton.Transition}
+     * @param view the view to convert
+     * @return a new {@link fr.menana.automaton.Automaton}
+     */
+    static Automaton toAutomaton(AutomatonView view) {
+        Automaton out = new Automaton();
+        int nbStates = view.getNbStates();
+        for (int s = 0; s < nbStates; ++s) {
+            State state = out.addState();
+            if (view.isAccept(s))
+                out.setAccept(state);
+        }
+        List<State> states = out.getStates();
+        for (int s = 0; s < nbStates; ++s) {
+            State orig = states.get(s);
+            for (int e = view.getEdgeStart(s), end = view.getEdgeEnd(s); e < end; ++e) {
+                State dest = states.get(view.getTarget(e));
+                int label = view.getLabelId(e);
+                Transition tr = orig.transitions.get(dest);
+                if (tr == null) {
+                    tr = label == AutomatonView.EPSILON ? new Transition(orig, dest) : new Transition(orig, dest, view.getLabel(label));
+                    orig.transitions.put(dest, tr);
+                }
+                else if (label == AutomatonView.EPSILON)
+                    tr.epsilon = true;
+                else if (tr.values == null)
+                    tr.values = view.getLabel(label);
+                else
+                    tr.values = tr.values.union(view.getLabel(label)).intern();
+            }
+        }
+        if (view.getInitialIndex() >= 0)
+            out.setInitial(states.get(view.getInitialIndex()));
+        out.setDeterministic(view.isDeterministic());
+        return out;
+    }
+}
@@ -0,0 +1,695 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.*;
+
+/**
+ * This class consists of static methods implementing the operations of {@link fr.menana.automaton.Operation} directly on
+ * the arrays of an {@link fr.menana.automaton.AutomatonView}, without converting it to an {@link fr.menana.automaton.Automaton}. <br>
+ * Sets of states are {@link java.util.BitSet} or sorted int arrays, the alphabet is split into the elementary intervals
+ * delimited by the bounds of the labels, and the results are built with an {@link fr.menana.automaton.AutomatonBuilder}.
+ */
+final class ViewOperations {
+
+    private ViewOperations() {}
+
+    /**
+     * Returns the given view as a {@link fr.menana.automaton.CompactAutomaton}, copying it if needed
+     * @param view the automaton to copy
+     * @return a compact automaton with the same states and edges
+     */
+    static CompactAutomaton copy(AutomatonView view) {
+        if (view instanceof CompactAutomaton)
+            return (CompactAutomaton) view;
+        AutomatonBuilder builder = new AutomatonBuilder(view.getNbEdges());
+        int offset = append(view, builder);
+        if (view.getInitialIndex() >= 0)
+            builder.setInitial(offset + view.getInitialIndex());
+        return builder.buildCompact();
+    }
+
+    /**
+     * Adds the states and the edges of a view to a builder, without setting the initial state
+     * @param view the automaton to add
+     * @param builder the builder receiving the states and the edges
+     * @return the index in the builder of the first state of the view
+     */
+    private static int append(AutomatonView view, AutomatonBuilder builder) {
+        int nbStates = view.getNbStates();
+        int offset = builder.addStates(nbStates);
+        for (int s = 0; s < nbStates; ++s) {
+            if (view.isAccept(s))
+                builder.setAccept(offset + s);
+            for (int e = view.getEdgeStart(s), end = view.getEdgeEnd(s); e < end; ++e) {
+                int label = view.getLabelId(e);
+                if (label == AutomatonView.EPSILON)
+                    builder.addEpsilonEdge(offset + s, offset + view.getTarget(e));
+                else
+                    builder.addEdge(offset + s, offset + view.getTarget(e), view.getLabel(label));
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Determinizes a view using the subset construction algorithm. <br>
+     * The outgoing edges of a subset are computed by sweeping the bounds of the labels of its states, so that each
+     * elementary interval leads to the closure of the targets of the edges covering it.
+     * States that are not accepting and have no labelled edge are dropped from the subsets, since they cannot lead to acceptance by themselves.
+     * @param nfa a non-deterministic automaton
+     * @return a deterministic compact automaton, or null if the given automaton has no initial state
+     */
+    static CompactAutomaton determinize(AutomatonView nfa) {
+        if (nfa.isDeterministic())
+            return copy(nfa);
+        int init = nfa.getInitialIndex();
+        if (init < 0)
+            return null;
+
+        int nbStates = nfa.getNbStates();
+        boolean[] relevant = new boolean[nbStates];
+        for (int s = 0; s < nbStates; ++s) {
+            relevant[s] = nfa.isAccept(s);
+            for (int e = nfa.getEdgeStart(s), end = nfa.getEdgeEnd(s); e < end && !relevant[s]; ++e)
+                relevant[s] = nfa.getLabelId(e) != AutomatonView.EPSILON;
+        }
+
+        AutomatonBuilder builder = new AutomatonBuilder();
+        Map<Subset, Integer> ids = new HashMap<>();
+        List<int[]> subsets = new ArrayList<>();
+        BitSet set = new BitSet(nbStates);
+        int[] stack = new int[nbStates];
+        int[] buffer = new int[nbStates];
+
+        set.set(init);
+        int[] start = subset(nfa, set, stack, buffer, relevant);
+        ids.put(new Subset(start), builder.addState());
+        subsets.add(start);
+        builder.setInitial(0);
+
+        long[] bounds = new long[16];
+        int[] eventStart = new int[17];
+        int[] events = new int[16];
+        int[] count = new int[nbStates];
+        BitSet active = new BitSet(nbStates);
+
+        for (int d = 0; d < subsets.size(); ++d) {
+            int[] states = subsets.get(d);
+            int nbBounds = 0;
+            int nbEvents = 0;
+            for (int s : states) {
+                if (nfa.isAccept(s))
+                    builder.setAccept(d);
+                for (int e = nfa.getEdgeStart(s), end = nfa.getEdgeEnd(s); e < end; ++e) {
+                    int label = nfa.getLabelId(e);
+                    if (label == AutomatonView.EPSILON)
+                        continue;
+                    for (Interval i : nfa.getLabel(label).intervals()) {
+                        if (nbBounds + 2 > bounds.length)
+                            bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+                        bounds[nbBounds++] = i.min;
+                        nbEvents++;
+                        if (i.max < Integer.MAX_VALUE) {
+                            bounds[nbBounds++] = i.max + 1L;
+                            nbEvents++;
+                        }
+                    }
+                }
+            }
+            if (nbBounds == 0)
+                continue;
+            nbBounds = sortUnique(bounds, nbBounds);
+
+            // events of the edges grouped by bound: the target when the interval opens, its complement when it closes
+            if (eventStart.length < nbBounds + 1)
+                eventStart = new int[2 * nbBounds + 1];
+            if (events.length < nbEvents)
+                events = new int[2 * nbEvents];
+            Arrays.fill(eventStart, 0, nbBounds + 1, 0);
+            for (int pass = 0; pass < 2; ++pass) {
+                for (int s : states) {
+                    for (int e = nfa.getEdgeStart(s), end = nfa.getEdgeEnd(s); e < end; ++e) {
+                        int label = nfa.getLabelId(e);
+                        if (label == AutomatonView.EPSILON)
+                            continue;
+                        int target = nfa.getTarget(e);
+                        for (Interval i : nfa.getLabel(label).intervals()) {
+                            int open = Arrays.binarySearch(bounds, 0, nbBounds, i.min);
+                            int close = i.max < Integer.MAX_VALUE ? Arrays.binarySearch(bounds, 0, nbBounds, i.max + 1L) : -1;
+                            if (pass == 0) {
+                                eventStart[open + 1]++;
+                                if (close >= 0)
+                                    eventStart[close + 1]++;
+                            } else {
+                                events[eventStart[open]++] = target;
+                                if (close >= 0)
+                                    events[eventStart[close]++] = ~target;
+                            }
+                        }
+                    }
+                }
+                if (pass == 0) {
+                    for (int b = 0; b < nbBounds; ++b)
+                        eventStart[b + 1] += eventStart[b];
+                } else {
+                    for (int b = nbBounds; b > 0; --b)
+                        eventStart[b] = eventStart[b - 1];
+                    eventStart[0] = 0;
+                }
+            }
+
+            for (int b = 0; b < nbBounds; ++b) {
+                for (int i = eventStart[b]; i < eventStart[b + 1]; ++i) {
+                    int target = events[i];
+                    if (target >= 0) {
+                        if (count[target]++ == 0)
+                            active.set(target);
+                    } else if (--count[~target] == 0) {
+                        active.clear(~target);
+                    }
+                }
+                if (active.isEmpty())
+                    continue;
+                set.clear();
+                set.or(active);
+                int[] next = subset(nfa, set, stack, buffer, relevant);
+                if (next.length == 0)
+                    continue;
+                Subset key = new Subset(next);
+                Integer id = ids.get(key);
+                if (id == null) {
+                    id = builder.addState();
+                    ids.put(key, id);
+                    subsets.add(next);
+                }
+                long max = b + 1 < nbBounds ? bounds[b + 1] - 1 : Integer.MAX_VALUE;
+                builder.addEdge(d, id, (int) bounds[b], (int) max);
+            }
+            for (int s = active.nextSetBit(0); s >= 0; s = active.nextSetBit(s + 1))
+                count[s] = 0;
+            active.clear();
+        }
+        return builder.buildCompact();
+    }
+
+    /**
+     * Computes the epsilon closure of a set of states and returns its relevant states
+     * @param view the automaton
+     * @param set the set of states, replaced by its closure
+     * @param stack a stack able to hold all the states of the view
+     * @param buffer a buffer able to hold all the states of the view
+     * @param relevant the states that are kept in the subsets
+     * @return the sorted relevant states of the closure
+     */
+    private static int[] subset(AutomatonView view, BitSet set, int[] stack, int[] buffer, boolean[] relevant) {
+        ViewMatcher.closure(view, set, stack);
+        int size = 0;
+        for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1))
+            if (relevant[s])
+                buffer[size++] = s;
+        return Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Sorts the first elements of an array and removes the duplicates
+     * @param values the array to sort
+     * @param size the number of elements to sort
+     * @return the number of distinct elements, now at the beginning of the array
+     */
+    private static int sortUnique(long[] values, int size) {
+        Arrays.sort(values, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; ++i)
+            if (unique == 0 || values[i] != values[unique - 1])
+                values[unique++] = values[i];
+        return unique;
+    }
+
+    /**
+     * Returns a new minimal automaton recognizing the same language as a view, using the given algorithm
+     * @param base the automaton to minimize
+     * @param method the minimization algorithm
+     * @return an equivalent minimal compact automaton
+     */
+    static CompactAutomaton minimize(AutomatonView base, Operation.MINIMIZATION_ALGO method) {
+        return method == Operation.MINIMIZATION_ALGO.Brzozowski ? minimizeBrzozowski(base) : minimizeHopcroft(base);
+    }
+
+    /**
+     * Minimizes a view using Brzozowski algorithm, that is by determinizing its mirror twice
+     * @param base the automaton to minimize
+     * @return a minimal compact automaton
+     */
+    static CompactAutomaton minimizeBrzozowski(AutomatonView base) {
+        CompactAutomaton dfa = determinize(base);
+        if (dfa == null)
+            return new AutomatonBuilder().buildCompact();
+        return determinize(revert(determinize(revert(dfa))));
+    }
+
+    /**
+     * Minimizes a view using a Hopcroft partition refinement on the transitions, as described by Valmari and Lehtinen
+     * for partial transition functions. <br>
+     * The view is determinized if needed and trimmed to its reachable and co-reachable states. Each edge is then split
+     * into one transition per elementary interval of the alphabet, the blocks of states are refined by the sets of
+     * transitions sharing an interval and leading to the same block, and one state is emitted per block.
+     * @param base the automaton to minimize
+     * @return a minimal compact automaton
+     */
+    static CompactAutomaton minimizeHopcroft(AutomatonView base) {
+        AutomatonView dfa = base.isDeterministic() ? base : determinize(base);
+        if (dfa == null || dfa.getInitialIndex() < 0)
+            return new AutomatonBuilder().buildCompact();
+
+        // elementary intervals of the alphabet
+        int nbLabels = dfa.getNbLabels();
+        long[] bounds = new long[16];
+        int nbBounds = 0;
+        for (int l = 0; l < nbLabels; ++l) {
+            for (Interval i : dfa.getLabel(l).intervals()) {
+                if (nbBounds + 2 > bounds.length)
+                    bounds = Arrays.copyOf(bounds, 2 * bounds.length);
+                bounds[nbBounds++] = i.min;
+                if (i.max < Integer.MAX_VALUE)
+                    bounds[nbBounds++] = i.max + 1L;
+            }
+        }
+        nbBounds = sortUnique(bounds, nbBounds);
+        int[][] segments = new int[nbLabels][];
+        for (int l = 0; l < nbLabels; ++l) {
+            Collection<Interval> intervals = dfa.getLabel(l).intervals();
+            int[] ranges = new int[2 * intervals.size()];
+            int r = 0;
+            for (Interval i : intervals) {
+                ranges[r++] = Arrays.binarySearch(bounds, 0, nbBounds, i.min);
+                ranges[r++] = i.max < Integer.MAX_VALUE ? Arrays.binarySearch(bounds, 0, nbBounds, i.max + 1L) : nbBounds;
+            }
+            segments[l] = ranges;
+        }
+
+        // states reachable from the initial state, then those of them reaching an accepting state
+        int nbStates = dfa.getNbStates();
+        int[] order = new int[nbStates];
+        boolean[] reached = new boolean[nbStates];
+        int nbReached = 0;
+        order[nbReached++] = dfa.getInitialIndex();
+        reached[dfa.getInitialIndex()] = true;
+        int nbTransitions = 0;
+        for (int i = 0; i < nbReached; ++i) {
+            int s = order[i];
+            for (int e = dfa.getEdgeStart(s), end = dfa.getEdgeEnd(s); e < end; ++e) {
+                int[] ranges = segments[dfa.getLabelId(e)];
+                for (int r = 0; r < ranges.length; r += 2)
+                    nbTransitions += ranges[r + 1] - ranges[r];
+                int target = dfa.getTarget(e);
+                if (!reached[target]) {
+                    reached[target] = true;
+                    order[nbReached++] = target;
+                }
+            }
+        }
+        int[] predStart = new int[nbStates + 1];
+        for (int i = 0; i < nbReached; ++i)
+            for (int e = dfa.getEdgeStart(order[i]), end = dfa.getEdgeEnd(order[i]); e < end; ++e)
+                predStart[dfa.getTarget(e) + 1]++;
+        for (int s = 0; s < nbStates; ++s)
+            predStart[s + 1] += predStart[s];
+        int[] preds = new int[predStart[nbStates]];
+        int[] fill = Arrays.copyOf(predStart, nbStates);
+        for (int i = 0; i < nbReached; ++i)
+            for (int e = dfa.getEdgeStart(order[i]), end = dfa.getEdgeEnd(order[i]); e < end; ++e)
+                preds[fill[dfa.getTarget(e)]++] = order[i];
+        int[] index = new int[nbStates];
+        Arrays.fill(index, -1);
+        int nbUseful = 0;
+        for (int i = 0; i < nbReached; ++i)
+            if (dfa.isAccept(order[i]))
+                index[order[i]] = nbUseful++;
+        int[] useful = new int[nbReached];
+        for (int s = 0; s < nbStates; ++s)
+            if (index[s] >= 0)
+                useful[index[s]] = s;
+        for (int i = 0; i < nbUseful; ++i) {
+            int s = useful[i];
+            for (int p = predStart[s]; p < predStart[s + 1]; ++p) {
+                if (index[preds[p]] < 0) {
+                    index[preds[p]] = nbUseful;
+                    useful[nbUseful++] = preds[p];
+                }
+            }
+        }
+        int init = index[dfa.getInitialIndex()];
+        if (init < 0) {
+            AutomatonBuilder builder = new AutomatonBuilder();
+            builder.setInitial(builder.addState());
+            return builder.buildCompact();
+        }
+
+        // transitions between useful states, one per elementary interval
+        int[] tails = new int[nbTransitions];
+        int[] symbols = new int[nbTransitions];
+        int[] heads = new int[nbTransitions];
+        int nbKept = 0;
+        for (int i = 0; i < nbUseful; ++i) {
+            int s = useful[i];
+            for (int e = dfa.getEdgeStart(s), end = dfa.getEdgeEnd(s); e < end; ++e) {
+                int head = index[dfa.getTarget(e)];
+                if (head < 0)
+                    continue;
+                int[] ranges = segments[dfa.getLabelId(e)];
+                for (int r = 0; r < ranges.length; r += 2) {
+                    for (int k = ranges[r]; k < ranges[r + 1]; ++k) {
+                        tails[nbKept] = i;
+                        symbols[nbKept] = k;
+                        heads[nbKept++] = head;
+                    }
+                }
+            }
+        }
+
+        // initial partitions: accepting states apart, transitions grouped by interval
+        Partition blocks = new Partition(nbUseful);
+        for (int i = 0; i < nbUseful; ++i)
+            if (dfa.isAccept(useful[i]))
+                blocks.mark(i);
+        blocks.split();
+        Partition cords = new Partition(nbKept);
+        int[] symbolStart = new int[nbBounds + 1];
+        for (int t = 0; t < nbKept; ++t)
+            symbolStart[symbols[t] + 1]++;
+        for (int k = 0; k < nbBounds; ++k)
+            symbolStart[k + 1] += symbolStart[k];
+        fill = Arrays.copyOf(symbolStart, nbBounds);
+        for (int t = 0; t < nbKept; ++t) {
+            int position = fill[symbols[t]]++;
+            cords.elements[position] = t;
+            cords.location[t] = position;
+        }
+        cords.nbSets = 0;
+        for (int k = 0; k < nbBounds; ++k) {
+            if (symbolStart[k] == symbolStart[k + 1])
+                continue;
+            for (int i = symbolStart[k]; i < symbolStart[k + 1]; ++i)
+                cords.setOf[cords.elements[i]] = cords.nbSets;
+            cords.first[cords.nbSets] = symbolStart[k];
+            cords.past[cords.nbSets++] = symbolStart[k + 1];
+        }
+
+        // transitions grouped by head
+        int[] headStart = new int[nbUseful + 1];
+        for (int t = 0; t < nbKept; ++t)
+            headStart[heads[t] + 1]++;
+        for (int s = 0; s < nbUseful; ++s)
+            headStart[s + 1] += headStart[s];
+        int[] byHead = new int[nbKept];
+        fill = Arrays.copyOf(headStart, nbUseful);
+        for (int t = 0; t < nbKept; ++t)
+            byHead[fill[heads[t]]++] = t;
+
+        int b = 1;
+        for (int c = 0; c < cords.nbSets; ++c) {
+            for (int i = cords.first[c]; i < cords.past[c]; ++i)
+                blocks.mark(tails[cords.elements[i]]);
+            blocks.split();
+            for (; b < blocks.nbSets; ++b) {
+                for (int i = blocks.first[b]; i < blocks.past[b]; ++i) {
+                    int s = blocks.elements[i];
+                    for (int j = headStart[s]; j < headStart[s + 1]; ++j)
+                        cords.mark(byHead[j]);
+                }
+                cords.split();
+            }
+        }
+
+        AutomatonBuilder builder = new AutomatonBuilder(nbKept);
+        builder.addStates(blocks.nbSets);
+        builder.setInitial(blocks.setOf[init]);
+        for (int i = 0; i < nbUseful; ++i)
+            if (dfa.isAccept(useful[i]))
+                builder.setAccept(blocks.setOf[i]);
+        for (int t = 0; t < nbKept; ++t) {
+            int tail = tails[t];
+            if (blocks.location[tail] != blocks.first[blocks.setOf[tail]])
+                continue;
+            int k = symbols[t];
+            long max = k + 1 < nbBounds ? bounds[k + 1] - 1 : Integer.MAX_VALUE;
+            builder.addEdge(blocks.setOf[tail], blocks.setOf[heads[t]], (int) bounds[k], (int) max);
+        }
+        return builder.buildCompact();
+    }
+
+    /**
+     * Returns a new automaton recognizing the mirror of the language of a view. <br>
+     * Every edge is reversed, the initial state becomes accepting and a new initial state has an epsilon edge to each accepting state
+     * @param automaton the automaton to revert
+     * @return a reverted compact automaton
+     */
+    static CompactAutomaton revert(AutomatonView automaton) {
+        int nbStates = automaton.getNbStates();
+        AutomatonBuilder builder = new AutomatonBuilder(automaton.getNbEdges());
+        builder.addStates(nbStates);
+        for (int s = 0; s < nbStates; ++s) {
+            for (int e = automaton.getEdgeStart(s), end = automaton.getEdgeEnd(s); e < end; ++e) {
+                int label = automaton.getLabelId(e);
+                if (label == AutomatonView.EPSILON)
+                    builder.addEpsilonEdge(automaton.getTarget(e), s);
+                else
+                    builder.addEdge(automaton.getTarget(e), s, automaton.getLabel(label));
+            }
+        }
+        if (automaton.getInitialIndex() >= 0)
+            builder.setAccept(automaton.getInitialIndex());
+        int init = builder.addState();
+        builder.setInitial(init);
+        for (int s = 0; s < nbStates; ++s)
+            if (automaton.isAccept(s))
+                builder.addEpsilonEdge(init, s);
+        return builder.buildCompact();
+    }
+
+    /**
+     * Returns a new automaton recognizing the complementary language of a view. <br>
+     * The view is determinized if needed, then the acceptance of each state is flipped and the values missing from its
+     * outgoing edges lead to a new accepting sink state
+     * @param automaton the automaton to complement
+     * @return a new compact automaton recognizing the complementary language
+     */
+    static CompactAutomaton complement(AutomatonView automaton) {
+        CompactAutomaton dfa = determinize(automaton);
+        AutomatonBuilder builder = new AutomatonBuilder();
+        if (dfa == null) {
+            int all = builder.addState();
+            builder.setInitial(all);
+            builder.setAccept(all);
+            builder.addEdge(all, all, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            return builder.buildCompact();
+        }
+        int nbStates = dfa.getNbStates();
+        builder.addStates(nbStates);
+        int sink = builder.addState();
+        List<IntervalSet> labels = new ArrayList<>();
+        for (int s = 0; s < nbStates; ++s) {
+            builder.setAccept(s, !dfa.isAccept(s));
+            labels.clear();
+            for (int e = dfa.getEdgeStart(s), end = dfa.getEdgeEnd(s); e < end; ++e) {
+                IntervalSet label = dfa.getLabel(dfa.getLabelId(e));
+                builder.addEdge(s, dfa.getTarget(e), label);
+                labels.add(label);
+            }
+            IntervalSet missing = IntervalSet.union(labels).complement();
+            if (!missing.isEmpty())
+                builder.addEdge(s, sink, missing);
+        }
+        builder.setAccept(sink);
+        builder.addEdge(sink, sink, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        builder.setInitial(dfa.getInitialIndex());
+        return builder.buildCompact();
+    }
+
+    /**
+     * Returns a new automaton recognizing the concatenation of the languages of two views. <br>
+     * The accepting states of the first one get an epsilon edge to the initial state of the second one,
+     * and the result is minimized with the given algorithm if both views are deterministic
+     * @param first the first automaton used for the concatenation
+     * @param second the second automaton used for the concatenation
+     * @param method the minimization algorithm to use
+     * @return a new compact automaton recognizing the concatenation of the languages
+     */
+    static CompactAutomaton concatenate(AutomatonView first, AutomatonView second, Operation.MINIMIZATION_ALGO method) {
+        AutomatonBuilder builder = new AutomatonBuilder(first.getNbEdges() + second.getNbEdges());
+        int offset1 = append(first, builder);
+        int offset2 = append(second, builder);
+        if (first.getInitialIndex() >= 0)
+            builder.setInitial(offset1 + first.getInitialIndex());
+        for (int s = 0; s < first.getNbStates(); ++s) {
+            if (first.isAccept(s)) {
+                builder.setAccept(offset1 + s, false);
+                if (second.getInitialIndex() >= 0)
+                    builder.addEpsilonEdge(offset1 + s, offset2 + second.getInitialIndex());
+            }
+        }
+        CompactAutomaton out = builder.buildCompact();
+        return first.isDeterministic() && second.isDeterministic() ? minimize(out, method) : out;
+    }
+
+    /**
+     * Returns a new automaton recognizing the union of the languages of two views. <br>
+     * A new initial state has an epsilon edge to the initial state of each view,
+     * and the result is minimized with the given algorithm if both views are deterministic
+     * @param first the first automaton used for the union
+     * @param second the second automaton used for the union
+     * @param method the minimization algorithm to use
+     * @return a new compact automaton recognizing the union of the languages
+     */
+    static CompactAutomaton union(AutomatonView first, AutomatonView second, Operation.MINIMIZATION_ALGO method) {
+        if (first.getInitialIndex() < 0)
+            return copy(second);
+        else if (second.getInitialIndex() < 0)
+            return copy(first);
+        AutomatonBuilder builder = new AutomatonBuilder(first.getNbEdges() + second.getNbEdges());
+        int offset1 = append(first, builder);
+        int offset2 = append(second, builder);
+        int init = builder.addState();
+        builder.setInitial(init);
+        builder.addEpsilonEdge(init, offset1 + first.getInitialIndex());
+        builder.addEpsilonEdge(init, offset2 + second.getInitialIndex());
+        CompactAutomaton out = builder.buildCompact();
+        return first.isDeterministic() && second.isDeterministic() ? minimize(out, method) : out;
+    }
+
+    /**
+     * A sorted set of states used as a key of the subset construction
+     */
+    private static final class Subset {
+
+        private final int[] states;
+
+        private final int hash;
+
+        Subset(int[] states) {
+            this.states = states;
+            this.hash = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Subset && Arrays.equals(states, ((Subset) other).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A refinable partition of the integers [0, n[. <br>
+     * The elements of each set are contiguous in {@link #elements}, the marked elements of a set being moved to its
+     * beginning, and {@link #split()} separates the marked elements of each touched set, the smaller part getting a new set
+     */
+    private static final class Partition {
+
+        /**
+         * The number of sets
+         */
+        int nbSets;
+
+        /**
+         * The elements grouped by set, and the position of each element in this array
+         */
+        final int[] elements, location;
+
+        /**
+         * The set of each element
+         */
+        final int[] setOf;
+
+        /**
+         * The position of the first element of each set, and the position following its last element
+         */
+        final int[] first, past;
+
+        /**
+         * The number of marked elements of each set
+         */
+        private final int[] marked;
+
+        /**
+         * The sets having marked elements
+         */
+        private final int[] touched;
+
+        private int nbTouched;
+
+        Partition(int size) {
+            this.elements = new int[size];
+            this.location = new int[size];
+            this.setOf = new int[size];
+            this.first = new int[size];
+            this.past = new int[size];
+            this.marked = new int[size];
+            this.touched = new int[size];
+            for (int i = 0; i < size; ++i)
+                elements[i] = location[i] = i;
+            if (size > 0) {
+                this.nbSets = 1;
+                this.past[0] = size;
+            }
+        }
+
+        /**
+         * Marks an element, which must not be already marked
+         * @param element the element to mark
+         */
+        void mark(int element) {
+            int set = setOf[element];
+            int i = location[element];
+            int j = first[set] + marked[set];
+            elements[i] = elements[j];
+            location[elements[i]] = i;
+            elements[j] = element;
+            location[element] = j;
+            if (marked[set]++ == 0)
+                touched[nbTouched++] = set;
+        }
+
+        /**
+         * Splits the touched sets between their marked and their unmarked elements, and unmarks all the elements
+         */
+        void split() {
+            while (nbTouched > 0) {
+                int set = touched[--nbTouched];
+                int j = first[set] + marked[set];
+                marked[set] = 0;
+                if (j == past[set])
+                    continue;
+                int created = nbSets++;
+                if (j - first[set] <= past[set] - j) {
+                    first[created] = first[set];
+                    past[created] = first[set] = j;
+                } else {
+                    past[created] = past[set];
+                    first[created] = past[set] = j;
+                }
+                for (int i = first[created]; i < past[created]; ++i)
+                    setOf[elements[i]] = created;
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.TreeMap;
+
+/**
+ * An automaton whose transitions carry a cost, as used by the <code>cost-regular</code> global constraint. <br>
+ * The cost of reading a value depends on the state it is read from: each state maps the intervals of values to a cost, the
+ * values without an explicit cost costing 0. Costs are thus attached to the (state, interval) pairs of the transitions of the
+ * automaton instead of being encoded in its states, and the cost of a word is the sum of the costs along its run. <br>
+ * The costs are stored per state as a piecewise constant function of the value. Minimum and maximum cost queries over words
+ * of a fixed length are answered by {@link fr.menana.automaton.WeightedLayeredGraph}.
+ */
+public class WeightedAutomaton {
+
+    /**
+     * The underlying automaton
+     */
+    private final AutomatonView view;
+
+    /**
+     * For each state, the cost of the values from each key up to the next one, null if all the values cost 0
+     */
+    private final TreeMap<Integer,Long>[] costs;
+
+    /**
+     * Constructs a weighted automaton whose transitions all cost 0
+     * @param view an automaton, states being designated by their index in it
+     */
+    @SuppressWarnings("unchecked")
+    public WeightedAutomaton(AutomatonView view) {
+        this.view = view;
+        this.costs = (TreeMap<Integer,Long>[]) new TreeMap<?,?>[view.getNbStates()];
+    }
+
+    /**
+     * @return the underlying automaton
+     */
+    public AutomatonView getView() {
+        return view;
+    }
+
+    /**
+     * Sets the cost of reading the values between min and max from a state
+     * @param state the index of the state
+     * @param min the lower bound of the values
+     * @param max the upper bound of the values
+     * @param cost the cost of reading each of these values
+     */
+    public void setCost(int state, int min, int max, long cost) {
+        if (min > max)
+            return;
+        TreeMap<Integer,Long> function = costs[state];
+        if (function == null) {
+            function = new TreeMap<>();
+            function.put(Integer.MIN_VALUE, 0L);
+            costs[state] = function;
+        }
+        if (max < Integer.MAX_VALUE)
+            function.put(max + 1, function.floorEntry(max + 1).getValue());
+        function.subMap(min, true, max, true).clear();
+        function.put(min, cost);
+    }
+
+    /**
+     * Sets the cost of reading the given values from a state
+     * @param state the index of the state
+     * @param values the values
+     * @param cost the cost of reading each of these values
+     */
+    public void setCost(int state, IntervalSet values, long cost) {
+        for (Interval i : values.intervals())
+            setCost(state, i.getMin(), i.getMax(), cost);
+    }
+
+    /**
+     * Returns the cost of reading a value from a state
+     * @param state the index of the state
+     * @param value the value
+     * @return the cost of reading the value
+     */
+    public long getCost(int state, int value) {
+        return costs[state] == null ? 0L : costs[state].floorEntry(value).getValue();
+    }
+
+    /**
+     * Computes the cost of a word accepted by a deterministic automaton
+     * @param word the word
+     * @return the sum of the costs of the values of the word along its run
+     * @throws IllegalArgumentException if the automaton is not deterministic or does not accept the word
+     */
+    public long cost(int... word) {
+        if (!view.isDeterministic())
+            throw new IllegalArgumentException("The cost of a word is only defined along the run of a deterministic automaton");
+        int state = view.getInitialIndex();
+        long cost = 0;
+        for (int i = 0; i < word.length && state >= 0; ++i) {
+            int next = -1;
+            for (int e = view.getEdgeStart(state); e < view.getEdgeEnd(state) && next < 0; ++e) {
+                if (view.labelContains(view.getLabelId(e), word[i]))
+                    next = view.getTarget(e);
+            }
+            if (next >= 0)
+                cost = Math.addExact(cost, getCost(state, word[i]));
+            state = next;
+        }
+        if (state < 0 || !view.isAccept(state))
+            throw new IllegalArgumentException("The word is not accepted by the automaton");
+        return cost;
+    }
+
+    /**
+     * Unrolls this automaton over the words of the given length and computes their minimum and maximum costs
+     * @see fr.menana.automaton.LayeredGraph#unroll(AutomatonView, int)
+     * @param length the length of the words
+     * @return the weighted layered graph
+     */
+    public WeightedLayeredGraph unroll(int length) {
+        return new WeightedLayeredGraph(this, LayeredGraph.unroll(view, length));
+    }
+
+    /**
+     * Unrolls this automaton over the words whose i-th value belongs to the i-th domain and computes their minimum and maximum
+     * costs
+     * @see fr.menana.automaton.LayeredGraph#unroll(AutomatonView, IntervalSet...)
+     * @param domains the domain of each position of the words, a null domain standing for any integer
+     * @return the weighted layered graph
+     */
+    public WeightedLayeredGraph unroll(IntervalSet... domains) {
+        return new WeightedLayeredGraph(this, LayeredGraph.unroll(view, domains));
+    }
+
+    /**
+     * Returns the first value of each segment of values of constant cost read from a state, in increasing order
+     */
+    int[] segmentStarts(int state) {
+        TreeMap<Integer,Long> function = costs[state];
+        if (function == null)
+            return new int[]{Integer.MIN_VALUE};
+        int[] starts = new int[function.size()];
+        int k = 0;
+        for (int start : function.keySet())
+            starts[k++] = start;
+        return starts;
+    }
+
+    /**
+     * Returns the cost of each segment of values read from a state, in the order of {@link #segmentStarts(int)}
+     */
+    long[] segmentCosts(int state) {
+        TreeMap<Integer,Long> function = costs[state];
+        if (function == null)
+            return new long[]{0L};
+        long[] values = new long[function.size()];
+        int k = 0;
+        for (long cost : function.values())
+            values[k++] = cost;
+        return values;
+    }
+}
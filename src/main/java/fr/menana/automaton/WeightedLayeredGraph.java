@@ -0,0 +1,247 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.Arrays;
+
+/**
+ * The unrolling of a {@link fr.menana.automaton.WeightedAutomaton} over words of a fixed length, with the minimum and maximum
+ * costs of its words. <br>
+ * Each arc of the underlying {@link fr.menana.automaton.LayeredGraph} gets the minimum and maximum costs of its values, then
+ * two dynamic programs over the layers compute for each node the cheapest and the most expensive paths from the first layer
+ * and to the last one. Everything is stored in primitive arrays indexed like the nodes and arcs of the layered graph. For a
+ * nondeterministic automaton the cost of a word is the minimum, respectively maximum, over its accepting runs.
+ */
+public class WeightedLayeredGraph {
+
+    private final WeightedAutomaton automaton;
+
+    private final LayeredGraph graph;
+
+    /**
+     * For each layer but the last, the minimum and maximum costs of the values of each arc, and values reaching them
+     */
+    private final long[][] arcMinCosts;
+    private final long[][] arcMaxCosts;
+    private final int[][] arcMinValues;
+    private final int[][] arcMaxValues;
+
+    /**
+     * For each layer, the minimum and maximum costs of the paths from the first layer to each node
+     */
+    private final long[][] forwardMin;
+    private final long[][] forwardMax;
+
+    /**
+     * For each layer, the minimum and maximum costs of the paths from each node to the last layer
+     */
+    private final long[][] backwardMin;
+    private final long[][] backwardMax;
+
+    /**
+     * Computes the costs of the words of a layered graph
+     * @param automaton the weighted automaton the graph was unrolled from
+     * @param graph the layered graph
+     * @throws ArithmeticException if a cost overflows a long
+     */
+    WeightedLayeredGraph(WeightedAutomaton automaton, LayeredGraph graph) {
+        this.automaton = automaton;
+        this.graph = graph;
+        int n = graph.getLength();
+        arcMinCosts = new long[n][];
+        arcMaxCosts = new long[n][];
+        arcMinValues = new int[n][];
+        arcMaxValues = new int[n][];
+        for (int i = 0; i < n; ++i) {
+            int nbArcs = graph.getNbArcs(i);
+            arcMinCosts[i] = new long[nbArcs];
+            arcMaxCosts[i] = new long[nbArcs];
+            arcMinValues[i] = new int[nbArcs];
+            arcMaxValues[i] = new int[nbArcs];
+            for (int k = 0; k < graph.getNbNodes(i); ++k) {
+                int state = graph.getState(i, k);
+                int[] starts = automaton.segmentStarts(state);
+                long[] costs = automaton.segmentCosts(state);
+                for (int a = graph.getArcStart(i, k); a < graph.getArcEnd(i, k); ++a) {
+                    long min = Long.MAX_VALUE;
+                    long max = Long.MIN_VALUE;
+                    for (Interval interval : graph.getArcLabel(i, a).intervals()) {
+                        for (int s = segment(starts, interval.getMin()); s < starts.length && starts[s] <= interval.getMax(); ++s) {
+                            int value = Math.max(interval.getMin(), starts[s]);
+                            if (costs[s] < min) {
+                                min = costs[s];
+                                arcMinValues[i][a] = value;
+                            }
+                            if (costs[s] > max) {
+                                max = costs[s];
+                                arcMaxValues[i][a] = value;
+                            }
+                        }
+                    }
+                    arcMinCosts[i][a] = min;
+                    arcMaxCosts[i][a] = max;
+                }
+            }
+        }
+        forwardMin = new long[n + 1][];
+        forwardMax = new long[n + 1][];
+        backwardMin = new long[n + 1][];
+        backwardMax = new long[n + 1][];
+        for (int i = 0; i <= n; ++i) {
+            forwardMin[i] = new long[graph.getNbNodes(i)];
+            forwardMax[i] = new long[graph.getNbNodes(i)];
+            backwardMin[i] = new long[graph.getNbNodes(i)];
+            backwardMax[i] = new long[graph.getNbNodes(i)];
+        }
+        for (int i = 1; i <= n; ++i) {
+            Arrays.fill(forwardMin[i], Long.MAX_VALUE);
+            Arrays.fill(forwardMax[i], Long.MIN_VALUE);
+        }
+        for (int i = 0; i < n; ++i) {
+            for (int k = 0; k < graph.getNbNodes(i); ++k) {
+                for (int a = graph.getArcStart(i, k); a < graph.getArcEnd(i, k); ++a) {
+                    int t = graph.getArcTarget(i, a);
+                    forwardMin[i + 1][t] = Math.min(forwardMin[i + 1][t], Math.addExact(forwardMin[i][k], arcMinCosts[i][a]));
+                    forwardMax[i + 1][t] = Math.max(forwardMax[i + 1][t], Math.addExact(forwardMax[i][k], arcMaxCosts[i][a]));
+                }
+            }
+        }
+        for (int i = n - 1; i >= 0; --i) {
+            for (int k = 0; k < graph.getNbNodes(i); ++k) {
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int a = graph.getArcStart(i, k); a < graph.getArcEnd(i, k); ++a) {
+                    int t = graph.getArcTarget(i, a);
+                    min = Math.min(min, Math.addExact(arcMinCosts[i][a], backwardMin[i + 1][t]));
+                    max = Math.max(max, Math.addExact(arcMaxCosts[i][a], backwardMax[i + 1][t]));
+                }
+                backwardMin[i][k] = min;
+                backwardMax[i][k] = max;
+            }
+        }
+    }
+
+    /**
+     * Returns the segment of constant cost containing a value
+     * @param starts the first value of each segment, the first one being {@link Integer#MIN_VALUE}
+     */
+    private static int segment(int[] starts, int value) {
+        int k = Arrays.binarySearch(starts, value);
+        return k >= 0 ? k : -k - 2;
+    }
+
+    /**
+     * @return the unweighted layered graph
+     */
+    public LayeredGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return <code>true</code> if there is no word of the given length
+     */
+    public boolean isEmpty() {
+        return graph.isEmpty();
+    }
+
+    /**
+     * @return the minimum cost of the words, {@link Long#MAX_VALUE} if there is none
+     */
+    public long getMinCost() {
+        return isEmpty() ? Long.MAX_VALUE : backwardMin[0][0];
+    }
+
+    /**
+     * @return the maximum cost of the words, {@link Long#MIN_VALUE} if there is none
+     */
+    public long getMaxCost() {
+        return isEmpty() ? Long.MIN_VALUE : backwardMax[0][0];
+    }
+
+    /**
+     * @return a word of minimum cost, or null if there is none
+     */
+    public int[] getMinCostWord() {
+        return word(backwardMin, arcMinCosts, arcMinValues);
+    }
+
+    /**
+     * @return a word of maximum cost, or null if there is none
+     */
+    public int[] getMaxCostWord() {
+        return word(backwardMax, arcMaxCosts, arcMaxValues);
+    }
+
+    /**
+     * Follows from the first layer arcs whose cost added to the best cost of their target gives the best cost of their origin
+     */
+    private int[] word(long[][] backward, long[][] arcCosts, int[][] arcValues) {
+        if (isEmpty())
+            return null;
+        int[] word = new int[graph.getLength()];
+        int k = 0;
+        for (int i = 0; i < word.length; ++i) {
+            int a = graph.getArcStart(i, k);
+            while (arcCosts[i][a] + backward[i + 1][graph.getArcTarget(i, a)] != backward[i][k])
+                ++a;
+            word[i] = arcValues[i][a];
+            k = graph.getArcTarget(i, a);
+        }
+        return word;
+    }
+
+    /**
+     * Returns for each position the values that belong to a word whose minimum cost through them is at most maxCost and whose
+     * maximum cost through them is at least minCost. As for the <code>cost-regular</code> constraint, both bounds are checked
+     * separately, so a kept value may lie only on words whose cost is outside the bounds, but a removed value lies on none
+     * @param minCost the lower bound of the costs
+     * @param maxCost the upper bound of the costs
+     * @return the supports of the positions, all empty if no word may have a cost between the bounds
+     */
+    public IntervalSet[] filter(long minCost, long maxCost) {
+        int n = graph.getLength();
+        IntervalSet[] supports = new IntervalSet[n];
+        boolean empty = isEmpty() || getMinCost() > maxCost || getMaxCost() < minCost;
+        for (int i = 0; i < n; ++i) {
+            IntervalSet support = new IntervalSet();
+            for (int k = 0; !empty && k < graph.getNbNodes(i); ++k) {
+                int state = graph.getState(i, k);
+                int[] starts = automaton.segmentStarts(state);
+                long[] costs = automaton.segmentCosts(state);
+                for (int a = graph.getArcStart(i, k); a < graph.getArcEnd(i, k); ++a) {
+                    int t = graph.getArcTarget(i, a);
+                    if (forwardMin[i][k] + arcMinCosts[i][a] + backwardMin[i + 1][t] > maxCost
+                            || forwardMax[i][k] + arcMaxCosts[i][a] + backwardMax[i + 1][t] < minCost)
+                        continue;
+                    for (Interval interval : graph.getArcLabel(i, a).intervals()) {
+                        for (int s = segment(starts, interval.getMin()); s < starts.length && starts[s] <= interval.getMax(); ++s) {
+                            if (forwardMin[i][k] + costs[s] + backwardMin[i + 1][t] > maxCost
+                                    || forwardMax[i][k] + costs[s] + backwardMax[i + 1][t] < minCost)
+                                continue;
+                            int min = Math.max(interval.getMin(), starts[s]);
+                            int max = s + 1 < starts.length ? Math.min(interval.getMax(), starts[s + 1] - 1) : interval.getMax();
+                            support.add(new Interval(min, max));
+                        }
+                    }
+                }
+            }
+            supports[i] = support.intern();
+        }
+        return supports;
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * This class consists of static methods counting the words of a given length accepted by a deterministic automaton, without
+ * enumerating them. <br>
+ * Counts are computed by dynamic programming over the states, c<sub>k+1</sub>(s) = Σ |label(e)| c<sub>k</sub>(target(e)) for
+ * the edges e leaving s, each {@link fr.menana.automaton.IntervalSet} label contributing its cardinality. The computation runs on
+ * <code>long</code> values as long as no overflow occurs, then goes on with {@link java.math.BigInteger}. For lengths large
+ * enough that O(log n) products of transition matrices are cheaper than n steps, the counts are obtained by matrix
+ * exponentiation.
+ */
+public final class WordCounter {
+
+    private WordCounter() {}
+
+    /**
+     * Counts the words of length n accepted by a deterministic automaton
+     * @param view a deterministic automaton
+     * @param n the length of the words
+     * @return the number of accepted words of length n
+     * @throws IllegalArgumentException if the automaton is not deterministic
+     */
+    public static BigInteger count(AutomatonView view, long n) {
+        return count(view, n, false);
+    }
+
+    /**
+     * Counts the words of length at most n accepted by a deterministic automaton
+     * @param view a deterministic automaton
+     * @param n the maximum length of the words
+     * @return the number of accepted words of length lower than or equal to n
+     * @throws IllegalArgumentException if the automaton is not deterministic
+     */
+    public static BigInteger countUpTo(AutomatonView view, long n) {
+        return count(view, n, true);
+    }
+
+    private static BigInteger count(AutomatonView view, long n, boolean upTo) {
+        if (!view.isDeterministic())
+            throw new IllegalArgumentException("Words can only be counted on deterministic automata");
+        if (n < 0)
+            throw new IllegalArgumentException("Negative length: " + n);
+        int init = view.getInitialIndex();
+        if (init < 0)
+            return BigInteger.ZERO;
+        long nbStates = view.getNbStates();
+        int log = 64 - Long.numberOfLeadingZeros(n);
+        // compares the cost of the products, |Q|^3 log n, with that of the n / 4 steps over the edges, dividing the former
+        // as the latter could overflow
+        if (nbStates <= 1 << 12 && nbStates * nbStates * nbStates * log / (view.getNbEdges() + nbStates) < n / 4)
+            return byMatrix(view, n, upTo);
+        return byDynamicProgramming(view, n, upTo);
+    }
+
+    /**
+     * Counts by dynamic programming, on long values until an overflow occurs
+     */
+    private static BigInteger byDynamicProgramming(AutomatonView view, long n, boolean upTo) {
+        int nbStates = view.getNbStates();
+        int init = view.getInitialIndex();
+        long[] sizes = labelSizes(view);
+        long[] current = new long[nbStates];
+        long[] next = new long[nbStates];
+        for (int s = 0; s < nbStates; ++s)
+            current[s] = view.isAccept(s) ? 1 : 0;
+        long total = current[init];
+        long k = 0;
+        try {
+            for (; k < n; ++k) {
+                for (int s = 0; s < nbStates; ++s) {
+                    long c = 0;
+                    for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                        long t = current[view.getTarget(e)];
+                        if (t != 0)
+                            c = Math.addExact(c, Math.multiplyExact(sizes[view.getLabelId(e)], t));
+                    }
+                    next[s] = c;
+                }
+                if (upTo)
+                    total = Math.addExact(total, next[init]);
+                long[] tmp = current;
+                current = next;
+                next = tmp;
+            }
+            return BigInteger.valueOf(upTo ? total : current[init]);
+        } catch (ArithmeticException overflow) {
+            // current holds the counts of length k, the step towards k + 1 is done again with big integers
+        }
+        BigInteger[] big = new BigInteger[nbStates];
+        BigInteger[] bigNext = new BigInteger[nbStates];
+        BigInteger[] bigSizes = new BigInteger[sizes.length];
+        for (int s = 0; s < nbStates; ++s)
+            big[s] = BigInteger.valueOf(current[s]);
+        for (int l = 0; l < sizes.length; ++l)
+            bigSizes[l] = BigInteger.valueOf(sizes[l]);
+        BigInteger bigTotal = BigInteger.valueOf(total);
+        for (; k < n; ++k) {
+            for (int s = 0; s < nbStates; ++s) {
+                BigInteger c = BigInteger.ZERO;
+                for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                    BigInteger t = big[view.getTarget(e)];
+                    if (t.signum() != 0)
+                        c = c.add(bigSizes[view.getLabelId(e)].multiply(t));
+                }
+                bigNext[s] = c;
+            }
+            if (upTo)
+                bigTotal = bigTotal.add(bigNext[init]);
+            BigInteger[] tmp = big;
+            big = bigNext;
+            bigNext = tmp;
+        }
+        return upTo ? bigTotal : big[init];
+    }
+
+    /**
+     * Counts by exponentiation of the transition matrix M, M[s][t] being the number of values leading from s to t. <br>
+     * The words of length at most n are counted with the matrix [[M, a], [0, 1]], a being the vector of the accepting states,
+     * whose power n + 1 holds Σ<sub>k≤n</sub> M<sup>k</sup> a in its last column. The power n is computed first and the last
+     * product is done apart, n + 1 overflowing for n = Long.MAX_VALUE.
+     */
+    private static BigInteger byMatrix(AutomatonView view, long n, boolean upTo) {
+        int nbStates = view.getNbStates();
+        int dim = upTo ? nbStates + 1 : nbStates;
+        long[] sizes = labelSizes(view);
+        BigInteger[][] m = new BigInteger[dim][dim];
+        for (BigInteger[] row : m)
+            Arrays.fill(row, BigInteger.ZERO);
+        for (int s = 0; s < nbStates; ++s) {
+            for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e)
+                m[s][view.getTarget(e)] = m[s][view.getTarget(e)].add(BigInteger.valueOf(sizes[view.getLabelId(e)]));
+        }
+        if (upTo) {
+            for (int s = 0; s < nbStates; ++s)
+                m[s][nbStates] = view.isAccept(s) ? BigInteger.ONE : BigInteger.ZERO;
+            m[nbStates][nbStates] = BigInteger.ONE;
+        }
+        // only the row of the initial state is needed: it is multiplied by the successive squares of the matrix
+        int init = view.getInitialIndex();
+        BigInteger[] row = new BigInteger[dim];
+        Arrays.fill(row, BigInteger.ZERO);
+        row[init] = BigInteger.ONE;
+        BigInteger[][] step = m;
+        for (long p = n; p > 0; p >>= 1) {
+            if ((p & 1) != 0)
+                row = multiply(row, m);
+            if (p > 1)
+                m = multiply(m, m);
+        }
+        if (upTo)
+            return multiply(row, step)[nbStates];
+        BigInteger c = BigInteger.ZERO;
+        for (int s = 0; s < nbStates; ++s) {
+            if (view.isAccept(s))
+                c = c.add(row[s]);
+        }
+        return c;
+    }
+
+    private static BigInteger[] multiply(BigInteger[] row, BigInteger[][] m) {
+        BigInteger[] out = new BigInteger[row.length];
+        for (int j = 0; j < row.length; ++j) {
+            BigInteger c = BigInteger.ZERO;
+            for (int k = 0; k < row.length; ++k) {
+                if (row[k].signum() != 0 && m[k][j].signum() != 0)
+                    c = c.add(row[k].multiply(m[k][j]));
+            }
+            out[j] = c;
+        }
+        return out;
+    }
+
+    private static BigInteger[][] multiply(BigInteger[][] a, BigInteger[][] b) {
+        BigInteger[][] out = new BigInteger[a.length][];
+        for (int i = 0; i < a.length; ++i)
+            out[i] = multiply(a[i], b);
+        return out;
+    }
+
+    /**
+     * @return the cardinality of each label of the automaton
+     */
+    private static long[] labelSizes(AutomatonView view) {
+        long[] sizes = new long[view.getNbLabels()];
+        for (int l = 0; l < sizes.length; ++l)
+            sizes[l] = view.getLabel(l).cardinality();
+        return sizes;
+    }
+}
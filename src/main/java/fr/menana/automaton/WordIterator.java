@@ -0,0 +1,375 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.UnaryOperator;
+
+/**
+ * A lazy iterator over the words accepted by a deterministic automaton, in shortlex or lexicographic order, with optional
+ * length bounds. <br>
+ * The words are the leaves (shortlex) or the nodes (lexicographic) of the tree of prefixes, walked depth first with a stack of
+ * one state, one transition and one value per position. Interval labels are expanded value by value only as the walk reaches
+ * them. A prefix is only extended towards states that still accept a word of an admissible length, which is known from the
+ * sets V<sub>r</sub> of states accepting a word of length r, so each word is produced without exploring dead branches. <br>
+ * Besides the transitions of the automaton sorted by value, the iterator holds the current word, its states and its
+ * transitions, that is O(n) ints for words of length n. The sets of states allowed at each depth are taken from sequences
+ * iterating the predecessors, such as V<sub>r+1</sub> = pred(V<sub>r</sub>), which are eventually periodic on a finite
+ * automaton: each sequence is stored until its first repeated set, then indexed modulo its period. Their memory does not
+ * depend on the length of the words, although on some automata of |Q| states the period may reach up to 2<sup>|Q|</sup>
+ * sets.
+ */
+public class WordIterator implements Iterator<int[]> {
+
+    /**
+     * The order of enumeration
+     */
+    public enum Order {
+        /**
+         * Shorter words first, words of the same length in lexicographic order
+         */
+        SHORTLEX,
+        /**
+         * Lexicographic order, a prefix coming before its extensions. An upper bound on the length is needed for infinite languages
+         */
+        LEXICOGRAPHIC
+    }
+
+    private final AutomatonView view;
+
+    private final Order order;
+
+    /**
+     * The transitions of each state sorted by value: the intervals of the labels and their target
+     */
+    private final int[] entryOffsets;
+    private final int[] entryMins;
+    private final int[] entryMaxs;
+    private final int[] entryTargets;
+
+    /**
+     * The sets V<sub>r</sub> of states accepting a word of length r, computed on demand
+     */
+    private final Orbit viable;
+
+    /**
+     * The bounds on the length of the words
+     */
+    private final int minLength;
+    private final int maxLength;
+
+    /**
+     * The bounds on the length of the words of the current walk, a single length in shortlex order
+     */
+    private int low;
+    private int high;
+
+    /**
+     * The states that may be reached at each depth of the current lexicographic walk: the states accepting a word of length
+     * at most high - d at a depth d >= low, their predecessors at distance low - d below
+     */
+    private Orbit reach;
+    private Orbit before;
+
+    /**
+     * The walk: the depth of the current node, the state at each depth, the transition and the value taken at each depth
+     */
+    private int depth;
+    private int[] states;
+    private int[] entries;
+    private int[] values;
+
+    private boolean started;
+    private boolean exhausted;
+    private int[] next;
+
+    /**
+     * Constructs an iterator over the words accepted by a deterministic automaton
+     * @param view a deterministic automaton
+     * @param order the order of enumeration
+     * @param minLength the minimum length of the words
+     * @param maxLength the maximum length of the words, {@link Integer#MAX_VALUE} for no bound
+     * @throws IllegalArgumentException if the automaton is not deterministic, or if the lexicographic order is asked for an
+     * infinite language without bounding the length
+     */
+    public WordIterator(AutomatonView view, Order order, int minLength, int maxLength) {
+        if (!view.isDeterministic())
+            throw new IllegalArgumentException("Words can only be enumerated from deterministic automata");
+        this.view = view;
+        this.order = order;
+        int nbStates = view.getNbStates();
+        List<int[]> all = new ArrayList<>();
+        entryOffsets = new int[nbStates + 1];
+        for (int s = 0; s < nbStates; ++s) {
+            entryOffsets[s] = all.size();
+            int from = all.size();
+            for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                for (Interval i : view.getLabel(view.getLabelId(e)).intervals())
+                    all.add(new int[]{i.getMin(), i.getMax(), view.getTarget(e)});
+            }
+            all.subList(from, all.size()).sort((a, b) -> Integer.compare(a[0], b[0]));
+        }
+        entryOffsets[nbStates] = all.size();
+        entryMins = new int[all.size()];
+        entryMaxs = new int[all.size()];
+        entryTargets = new int[all.size()];
+        for (int i = 0; i < all.size(); ++i) {
+            entryMins[i] = all.get(i)[0];
+            entryMaxs[i] = all.get(i)[1];
+            entryTargets[i] = all.get(i)[2];
+        }
+        int longest = view.getInitialIndex() < 0 ? -1 : new StateDistances(view).getMaxDistance(view.getInitialIndex());
+        if (longest == StateDistances.INFINITE && maxLength == Integer.MAX_VALUE && order == Order.LEXICOGRAPHIC)
+            throw new IllegalArgumentException("The lexicographic enumeration of an infinite language needs a maximum length");
+        this.minLength = Math.max(0, minLength);
+        this.maxLength = Math.min(maxLength, longest);
+        this.exhausted = view.getInitialIndex() < 0 || this.minLength > this.maxLength;
+        if (order == Order.SHORTLEX)
+            this.low = this.minLength - 1;
+        BitSet accept = new BitSet(nbStates);
+        for (int s = 0; s < nbStates; ++s)
+            accept.set(s, view.isAccept(s));
+        this.viable = new Orbit(accept, this::predecessors);
+        this.states = new int[1];
+        this.entries = new int[1];
+        this.values = new int[1];
+    }
+
+    /**
+     * Constructs an iterator over all the words accepted by a deterministic automaton, in shortlex order
+     * @param view a deterministic automaton
+     */
+    public WordIterator(AutomatonView view) {
+        this(view, Order.SHORTLEX, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !exhausted) {
+            next = advance();
+            exhausted = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public int[] next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        int[] word = next;
+        next = null;
+        return word;
+    }
+
+    /**
+     * @return the next word, or null if there is none
+     */
+    private int[] advance() {
+        while (true) {
+            if (!started) {
+                if (!startWalk())
+                    return null;
+                started = true;
+                depth = 0;
+                states[0] = view.getInitialIndex();
+                if (emits(0))
+                    return word();
+            }
+            if (depth < high && firstChild(depth)) {
+                ++depth;
+                if (emits(depth))
+                    return word();
+                continue;
+            }
+            boolean moved = false;
+            while (depth > 0) {
+                if (nextSibling(depth - 1)) {
+                    moved = true;
+                    break;
+                }
+                --depth;
+            }
+            if (moved) {
+                if (emits(depth))
+                    return word();
+            }
+            else
+                started = false;
+        }
+    }
+
+    /**
+     * Prepares the next walk: the single walk of the lexicographic order, or the walk over the next length having words in
+     * shortlex order
+     * @return <code>false</code> if there is no walk left
+     */
+    private boolean startWalk() {
+        int init = view.getInitialIndex();
+        if (order == Order.LEXICOGRAPHIC) {
+            if (reach != null)
+                return false;
+            low = minLength;
+            high = maxLength;
+            BitSet accept = viable.get(0);
+            reach = new Orbit(accept, u -> {
+                BitSet union = predecessors(u);
+                union.or(accept);
+                return union;
+            });
+            before = new Orbit(reach.get(high - low), this::predecessors);
+        }
+        else {
+            do {
+                if (low >= maxLength)
+                    return false;
+                ++low;
+            } while (!viable.get(low).get(init));
+            high = low;
+        }
+        return allowed(0).get(init);
+    }
+
+    /**
+     * @return the states that may be reached at depth d of the current walk
+     */
+    private BitSet allowed(int d) {
+        if (order == Order.SHORTLEX)
+            return viable.get(high - d);
+        return d >= low ? reach.get(high - d) : before.get(low - d);
+    }
+
+    private boolean emits(int d) {
+        return d >= low && view.isAccept(states[d]);
+    }
+
+    private int[] word() {
+        return Arrays.copyOf(values, depth);
+    }
+
+    /**
+     * Moves to the first child of the node at the given depth that still leads to an admissible word
+     */
+    private boolean firstChild(int d) {
+        if (d + 1 == states.length) {
+            int size = (int) Math.min(2L * states.length, (long) high + 1);
+            states = Arrays.copyOf(states, size);
+            entries = Arrays.copyOf(entries, size);
+            values = Arrays.copyOf(values, size);
+        }
+        BitSet next = allowed(d + 1);
+        int s = states[d];
+        for (int e = entryOffsets[s]; e < entryOffsets[s + 1]; ++e) {
+            if (next.get(entryTargets[e])) {
+                entries[d] = e;
+                values[d] = entryMins[e];
+                states[d + 1] = entryTargets[e];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the node at depth d + 1 to its next sibling that still leads to an admissible word
+     */
+    private boolean nextSibling(int d) {
+        int e = entries[d];
+        if (values[d] < entryMaxs[e]) {
+            values[d]++;
+            return true;
+        }
+        BitSet next = allowed(d + 1);
+        int s = states[d];
+        for (++e; e < entryOffsets[s + 1]; ++e) {
+            if (next.get(entryTargets[e])) {
+                entries[d] = e;
+                values[d] = entryMins[e];
+                states[d + 1] = entryTargets[e];
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the set of states having a transition towards one of the given states
+     */
+    private BitSet predecessors(BitSet targets) {
+        BitSet out = new BitSet(view.getNbStates());
+        for (int s = 0; s < view.getNbStates(); ++s) {
+            for (int e = entryOffsets[s]; e < entryOffsets[s + 1]; ++e) {
+                if (targets.get(entryTargets[e])) {
+                    out.set(s);
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * A sequence of sets of states, each one obtained from the previous one by a given step. As there are finitely many sets,
+     * the sequence is eventually periodic: the sets are computed on demand until the first repetition, and the following
+     * ones are read modulo the period.
+     */
+    private static class Orbit {
+
+        private final UnaryOperator<BitSet> step;
+
+        /**
+         * The distinct sets of the sequence computed so far, and the index of each one
+         */
+        private final List<BitSet> sets = new ArrayList<>();
+        private final Map<BitSet, Integer> indices = new HashMap<>();
+
+        /**
+         * The index at which the periodic part starts, -1 until a set is repeated
+         */
+        private int start = -1;
+
+        Orbit(BitSet first, UnaryOperator<BitSet> step) {
+            this.step = step;
+            sets.add(first);
+            indices.put(first, 0);
+        }
+
+        /**
+         * @return the set of index r of the sequence
+         */
+        BitSet get(int r) {
+            while (start < 0 && sets.size() <= r) {
+                BitSet next = step.apply(sets.get(sets.size() - 1));
+                Integer seen = indices.putIfAbsent(next, sets.size());
+                if (seen != null)
+                    start = seen;
+                else
+                    sets.add(next);
+            }
+            if (r < sets.size())
+                return sets.get(r);
+            return sets.get(start + (r - start) % (sets.size() - start));
+        }
+    }
+}
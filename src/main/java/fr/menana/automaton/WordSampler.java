@@ -0,0 +1,308 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * A sampler drawing words of a fixed length uniformly among the words accepted by a deterministic automaton. <br>
+ * The number c(k,s) of words of length k accepted from each state s is computed once, together with the running sums of the
+ * weights |label(e)| c(k-1,target(e)) of the edges leaving each state. A word is then drawn in O(n log d) for an out-degree d:
+ * at each position, an edge is chosen with probability proportional to its weight by a binary search, and the value of its
+ * label is read from the same random number. Counts are kept in <code>long</code> values when they fit, and in
+ * {@link java.math.BigInteger}s otherwise. <br>
+ * The sampler is immutable, hence it can be shared by threads drawing with their own {@link java.util.SplittableRandom}.
+ */
+public class WordSampler {
+
+    /**
+     * The number of words drawn by a task of {@link #sample(int, long)}
+     */
+    private static final int BATCH = 1 << 12;
+
+    private final AutomatonView view;
+
+    private final int length;
+
+    /**
+     * The lower bounds of the intervals of each label and the number of values of the label before each interval
+     */
+    private final int[][] labelMins;
+    private final long[][] labelOffsets;
+
+    /**
+     * The counts c(k,s) at position k * nbStates + s and the running sums of the edge weights at position k * nbEdges + e,
+     * when every count fits in a long
+     */
+    private final long[] counts;
+    private final long[] sums;
+
+    /**
+     * The same tables with big integers, when some count does not fit in a long
+     */
+    private final BigInteger[] bigCounts;
+    private final BigInteger[] bigSums;
+
+    /**
+     * Constructs a sampler of the words of the given length accepted by a deterministic automaton
+     * @param view a deterministic automaton
+     * @param length the length of the words
+     * @throws IllegalArgumentException if the automaton is not deterministic
+     */
+    public WordSampler(AutomatonView view, int length) {
+        if (!view.isDeterministic())
+            throw new IllegalArgumentException("Words can only be sampled uniformly from deterministic automata");
+        this.view = view;
+        this.length = length;
+        int nbLabels = view.getNbLabels();
+        this.labelMins = new int[nbLabels][];
+        this.labelOffsets = new long[nbLabels][];
+        long[] sizes = new long[nbLabels];
+        for (int l = 0; l < nbLabels; ++l) {
+            IntervalSet label = view.getLabel(l);
+            int nb = label.intervals().size();
+            labelMins[l] = new int[nb];
+            labelOffsets[l] = new long[nb];
+            int i = 0;
+            long offset = 0;
+            for (Interval interval : label.intervals()) {
+                labelMins[l][i] = interval.getMin();
+                labelOffsets[l][i++] = offset;
+                offset += interval.cardinality();
+            }
+            sizes[l] = offset;
+        }
+        long[] c = null;
+        long[] s = null;
+        try {
+            c = new long[(length + 1) * view.getNbStates()];
+            s = new long[length * view.getNbEdges()];
+            fill(sizes, c, s);
+        } catch (ArithmeticException overflow) {
+            c = null;
+            s = null;
+        }
+        this.counts = c;
+        this.sums = s;
+        if (c == null) {
+            this.bigCounts = new BigInteger[(length + 1) * view.getNbStates()];
+            this.bigSums = new BigInteger[length * view.getNbEdges()];
+            fill(sizes, bigCounts, bigSums);
+        }
+        else {
+            this.bigCounts = null;
+            this.bigSums = null;
+        }
+    }
+
+    private void fill(long[] sizes, long[] c, long[] s) {
+        int nbStates = view.getNbStates();
+        int nbEdges = view.getNbEdges();
+        for (int q = 0; q < nbStates; ++q)
+            c[q] = view.isAccept(q) ? 1 : 0;
+        for (int k = 1; k <= length; ++k) {
+            for (int q = 0; q < nbStates; ++q) {
+                long sum = 0;
+                for (int e = view.getEdgeStart(q); e < view.getEdgeEnd(q); ++e) {
+                    sum = Math.addExact(sum, Math.multiplyExact(sizes[view.getLabelId(e)], c[(k - 1) * nbStates + view.getTarget(e)]));
+                    s[(k - 1) * nbEdges + e] = sum;
+                }
+                c[k * nbStates + q] = sum;
+            }
+        }
+    }
+
+    private void fill(long[] sizes, BigInteger[] c, BigInteger[] s) {
+        int nbStates = view.getNbStates();
+        int nbEdges = view.getNbEdges();
+        for (int q = 0; q < nbStates; ++q)
+            c[q] = view.isAccept(q) ? BigInteger.ONE : BigInteger.ZERO;
+        for (int k = 1; k <= length; ++k) {
+            for (int q = 0; q < nbStates; ++q) {
+                BigInteger sum = BigInteger.ZERO;
+                for (int e = view.getEdgeStart(q); e < view.getEdgeEnd(q); ++e) {
+                    BigInteger t = c[(k - 1) * nbStates + view.getTarget(e)];
+                    if (t.signum() != 0)
+                        sum = sum.add(BigInteger.valueOf(sizes[view.getLabelId(e)]).multiply(t));
+                    s[(k - 1) * nbEdges + e] = sum;
+                }
+                c[k * nbStates + q] = sum;
+            }
+        }
+    }
+
+    /**
+     * @return the length of the sampled words
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return the number of words the sampler draws from
+     */
+    public BigInteger getNbWords() {
+        int init = view.getInitialIndex();
+        if (init < 0)
+            return BigInteger.ZERO;
+        int i = length * view.getNbStates() + init;
+        return counts != null ? BigInteger.valueOf(counts[i]) : bigCounts[i];
+    }
+
+    /**
+     * @return <code>true</code> if and only if the automaton accepts no word of the sampler length
+     */
+    public boolean isEmpty() {
+        return getNbWords().signum() == 0;
+    }
+
+    /**
+     * Draws a word uniformly
+     * @param random the source of randomness
+     * @return a new accepted word
+     * @throws NoSuchElementException if no word of the sampler length is accepted
+     */
+    public int[] sample(SplittableRandom random) {
+        if (isEmpty())
+            throw new NoSuchElementException("No word of length " + length + " is accepted");
+        return counts != null ? sampleLong(random) : sampleBig(random);
+    }
+
+    /**
+     * Draws several words uniformly and independently
+     * @param nb the number of words
+     * @param random the source of randomness
+     * @return an array of nb new accepted words
+     */
+    public int[][] sample(int nb, SplittableRandom random) {
+        int[][] words = new int[nb][];
+        for (int i = 0; i < nb; ++i)
+            words[i] = sample(random);
+        return words;
+    }
+
+    /**
+     * Draws several words uniformly and independently, in parallel. <br>
+     * The words are drawn by batches, each batch using its own generator split from a generator seeded with the given seed,
+     * hence the result only depends on the seed and not on the scheduling of the threads
+     * @param nb the number of words
+     * @param seed the seed of the source of randomness
+     * @return an array of nb new accepted words
+     */
+    public int[][] sample(int nb, long seed) {
+        int[][] words = new int[nb][];
+        int nbBatches = (nb + BATCH - 1) / BATCH;
+        SplittableRandom[] randoms = new SplittableRandom[nbBatches];
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int b = 0; b < nbBatches; ++b)
+            randoms[b] = root.split();
+        IntStream.range(0, nbBatches).parallel().forEach(b -> {
+            for (int i = b * BATCH; i < Math.min(nb, (b + 1) * BATCH); ++i)
+                words[i] = sample(randoms[b]);
+        });
+        return words;
+    }
+
+    private int[] sampleLong(SplittableRandom random) {
+        int nbStates = view.getNbStates();
+        int nbEdges = view.getNbEdges();
+        int[] word = new int[length];
+        int q = view.getInitialIndex();
+        for (int i = 0; i < length; ++i) {
+            int k = length - i;
+            long r = random.nextLong(counts[k * nbStates + q]);
+            int base = (k - 1) * nbEdges;
+            int start = view.getEdgeStart(q);
+            // first edge whose running sum exceeds r
+            int lo = start;
+            int hi = view.getEdgeEnd(q) - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sums[base + mid] > r)
+                    hi = mid;
+                else
+                    lo = mid + 1;
+            }
+            int t = view.getTarget(lo);
+            long offset = r - (lo == start ? 0 : sums[base + lo - 1]);
+            word[i] = value(view.getLabelId(lo), offset / counts[(k - 1) * nbStates + t]);
+            q = t;
+        }
+        return word;
+    }
+
+    private int[] sampleBig(SplittableRandom random) {
+        int nbStates = view.getNbStates();
+        int nbEdges = view.getNbEdges();
+        int[] word = new int[length];
+        int q = view.getInitialIndex();
+        for (int i = 0; i < length; ++i) {
+            int k = length - i;
+            BigInteger r = below(bigCounts[k * nbStates + q], random);
+            int base = (k - 1) * nbEdges;
+            int start = view.getEdgeStart(q);
+            int lo = start;
+            int hi = view.getEdgeEnd(q) - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (bigSums[base + mid].compareTo(r) > 0)
+                    hi = mid;
+                else
+                    lo = mid + 1;
+            }
+            int t = view.getTarget(lo);
+            BigInteger offset = lo == start ? r : r.subtract(bigSums[base + lo - 1]);
+            word[i] = value(view.getLabelId(lo), offset.divide(bigCounts[(k - 1) * nbStates + t]).longValueExact());
+            q = t;
+        }
+        return word;
+    }
+
+    /**
+     * @return the value of the given rank in a label
+     */
+    private int value(int label, long rank) {
+        long[] offsets = labelOffsets[label];
+        int i = Arrays.binarySearch(offsets, rank);
+        if (i < 0)
+            i = -i - 2;
+        return (int) (labelMins[label][i] + (rank - offsets[i]));
+    }
+
+    /**
+     * @return a big integer drawn uniformly in [0, bound)
+     */
+    private static BigInteger below(BigInteger bound, SplittableRandom random) {
+        int bits = bound.bitLength();
+        byte[] bytes = new byte[(bits + 7) / 8 + 1];
+        while (true) {
+            for (int i = 1; i < bytes.length; ++i)
+                bytes[i] = (byte) random.nextInt(256);
+            // bytes[0] stays 0 so that the number is positive, the extra high bits are cleared
+            int extra = 8 * (bytes.length - 1) - bits;
+            bytes[1] &= (byte) (0xFF >>> extra);
+            BigInteger r = new BigInteger(bytes);
+            if (r.compareTo(bound) < 0)
+                return r;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.io;
+
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.AutomatonView;
+import fr.menana.automaton.CompactAutomaton;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader and writer of the AT&amp;T FSM text format. <br>
+ * Each line is either an edge <code>src dest symbol [output] [weight]</code> or an accepting state <code>state [weight]</code>,
+ * with fields separated by spaces or tabs. The source of the first line is the initial state. Output symbols and weights are ignored
+ * when reading, the output symbol of a written edge is its input symbol. The symbol <code>&lt;eps&gt;</code> denotes an epsilon edge.
+ */
+public class AttFormat extends TextFormat {
+
+    /**
+     * The token of an epsilon edge
+     */
+    private String epsilon;
+
+    /**
+     * Constructs an AT&amp;T reader and writer using the given symbol table
+     * @param symbols the table mapping symbols to integers
+     */
+    public AttFormat(SymbolTable symbols) {
+        super(symbols);
+        this.epsilon = "<eps>";
+    }
+
+    /**
+     * Sets the token of an epsilon edge
+     * @param epsilon the token of an epsilon edge
+     */
+    public void setEpsilon(String epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    @Override
+    public CompactAutomaton read(Reader in) throws IOException {
+        BufferedReader reader = buffered(in);
+        AutomatonBuilder builder = new AutomatonBuilder(1 << 10);
+        Map<String,Integer> states = new HashMap<>();
+        String[] tokens = new String[5];
+        boolean first = true;
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            ++lineNumber;
+            int nb = split(line, tokens);
+            if (nb == 0)
+                continue;
+            if (nb > tokens.length)
+                throw malformed(lineNumber, line);
+            int orig = state(tokens[0], states, builder);
+            if (first) {
+                builder.setInitial(orig);
+                first = false;
+            }
+            if (nb <= 2)
+                builder.setAccept(orig);
+            else if (tokens[2].equals(epsilon))
+                builder.addEpsilonEdge(orig, state(tokens[1], states, builder));
+            else {
+                int dest = state(tokens[1], states, builder);
+                try {
+                    builder.addEdge(orig, dest, symbols.toId(tokens[2]));
+                } catch (NumberFormatException e) {
+                    throw malformed(lineNumber, line);
+                }
+            }
+        }
+        return builder.buildCompact();
+    }
+
+    /**
+     * Splits a line into whitespace separated tokens
+     * @param line the line
+     * @param tokens the array receiving the tokens
+     * @return the number of tokens, or more than the length of the array if the line has too many tokens
+     */
+    private static int split(String line, String[] tokens) {
+        int nb = 0;
+        int i = 0;
+        int length = line.length();
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i)))
+                ++i;
+            if (i == length)
+                break;
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i)))
+                ++i;
+            if (nb == tokens.length)
+                return nb + 1;
+            tokens[nb++] = line.substring(start, i);
+        }
+        return nb;
+    }
+
+    @Override
+    public void write(AutomatonView view, Writer out) throws IOException {
+        int init = view.getInitialIndex();
+        if (init < 0)
+            return;
+        int[][] bounds = labelBounds(view);
+        writeEdges(view, init, bounds, out);
+        if (view.getEdgeStart(init) == view.getEdgeEnd(init)) {
+            if (!view.isAccept(init))
+                return;
+            out.write(init + "\n");
+        }
+        for (int s = 0; s < view.getNbStates(); ++s) {
+            if (s != init)
+                writeEdges(view, s, bounds, out);
+        }
+        for (int s = 0; s < view.getNbStates(); ++s) {
+            if (view.isAccept(s) && (s != init || view.getEdgeStart(init) != view.getEdgeEnd(init)))
+                out.write(s + "\n");
+        }
+        out.flush();
+    }
+
+    private void writeEdges(AutomatonView view, int s, int[][] bounds, Writer out) throws IOException {
+        for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+            String prefix = s + "\t" + view.getTarget(e) + "\t";
+            int label = view.getLabelId(e);
+            if (label == AutomatonView.EPSILON)
+                out.write(prefix + epsilon + "\t" + epsilon + "\n");
+            else {
+                int[] b = bounds[label];
+                for (int i = 0; i < b.length; i += 2) {
+                    for (long v = b[i]; v <= b[i + 1]; ++v) {
+                        String symbol = symbols.toSymbol((int) v);
+                        out.write(prefix + symbol + "\t" + symbol + "\n");
+                    }
+                }
+            }
+        }
+    }
+}
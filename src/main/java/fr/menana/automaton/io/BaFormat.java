@@ -0,0 +1,133 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.io;
+
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.AutomatonView;
+import fr.menana.automaton.CompactAutomaton;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reader and writer of the BA text format used by automata tools such as RABIT and GOAL. <br>
+ * A file starts with the initial state <code>[init]</code>, followed by one edge <code>symbol,[src]-&gt;[dest]</code> per line,
+ * followed by the accepting states, one <code>[state]</code> per line. If the initial state is omitted, the source of the first
+ * edge is the initial state. The format has no epsilon edge.
+ */
+public class BaFormat extends TextFormat {
+
+    /**
+     * Constructs a BA reader and writer using the given symbol table
+     * @param symbols the table mapping symbols to integers
+     */
+    public BaFormat(SymbolTable symbols) {
+        super(symbols);
+    }
+
+    @Override
+    public CompactAutomaton read(Reader in) throws IOException {
+        BufferedReader reader = buffered(in);
+        AutomatonBuilder builder = new AutomatonBuilder(1 << 10);
+        Map<String,Integer> states = new HashMap<>();
+        boolean initial = false;
+        boolean edges = false;
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            ++lineNumber;
+            line = line.trim();
+            if (line.isEmpty())
+                continue;
+            int arrow = line.indexOf("->");
+            if (arrow < 0) {
+                int state = state(name(line, 0, line.length(), lineNumber), states, builder);
+                if (!initial && !edges) {
+                    builder.setInitial(state);
+                    initial = true;
+                }
+                else
+                    builder.setAccept(state);
+            }
+            else {
+                int comma = line.lastIndexOf(',', arrow);
+                if (comma <= 0)
+                    throw malformed(lineNumber, line);
+                int orig = state(name(line, comma + 1, arrow, lineNumber), states, builder);
+                int dest = state(name(line, arrow + 2, line.length(), lineNumber), states, builder);
+                if (!initial) {
+                    builder.setInitial(orig);
+                    initial = true;
+                }
+                try {
+                    builder.addEdge(orig, dest, symbols.toId(line.substring(0, comma).trim()));
+                } catch (NumberFormatException e) {
+                    throw malformed(lineNumber, line);
+                }
+                edges = true;
+            }
+        }
+        return builder.buildCompact();
+    }
+
+    /**
+     * Returns the name of a state written between brackets
+     * @param line the line
+     * @param from the start of the bracketed name in the line
+     * @param to the end of the bracketed name in the line
+     * @param lineNumber the number of the line
+     * @return the name of the state
+     * @throws IOException if the name is not between brackets
+     */
+    private static String name(String line, int from, int to, int lineNumber) throws IOException {
+        String part = line.substring(from, to).trim();
+        if (part.length() < 2 || part.charAt(0) != '[' || part.charAt(part.length() - 1) != ']')
+            throw malformed(lineNumber, line);
+        return part.substring(1, part.length() - 1);
+    }
+
+    @Override
+    public void write(AutomatonView view, Writer out) throws IOException {
+        int init = view.getInitialIndex();
+        if (init < 0)
+            return;
+        int[][] bounds = labelBounds(view);
+        out.write("[" + init + "]\n");
+        for (int s = 0; s < view.getNbStates(); ++s) {
+            for (int e = view.getEdgeStart(s); e < view.getEdgeEnd(s); ++e) {
+                int label = view.getLabelId(e);
+                if (label == AutomatonView.EPSILON)
+                    throw new IllegalArgumentException("The BA format has no epsilon transition");
+                String edge = ",[" + s + "]->[" + view.getTarget(e) + "]\n";
+                int[] b = bounds[label];
+                for (int i = 0; i < b.length; i += 2) {
+                    for (long v = b[i]; v <= b[i + 1]; ++v)
+                        out.write(symbols.toSymbol((int) v) + edge);
+                }
+            }
+        }
+        for (int s = 0; s < view.getNbStates(); ++s) {
+            if (view.isAccept(s))
+                out.write("[" + s + "]\n");
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.io;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the symbol tokens of a text format to the integers of the alphabet of an automaton. <br>
+ * A numeric table reads tokens as integers. Otherwise each new token is given the next free identifier, starting from 0,
+ * and the same table can be shared by several readers and writers so that their automata use the same alphabet.
+ */
+public class SymbolTable {
+
+    /**
+     * <code>true</code> if tokens are integers
+     */
+    private final boolean numeric;
+
+    /**
+     * The identifier of each token
+     */
+    private final Map<String,Integer> ids;
+
+    /**
+     * The token of each identifier
+     */
+    private final List<String> symbols;
+
+    /**
+     * Constructs an empty table giving identifiers to tokens in order of appearance
+     */
+    public SymbolTable() {
+        this(false);
+    }
+
+    private SymbolTable(boolean numeric) {
+        this.numeric = numeric;
+        this.ids = new HashMap<>();
+        this.symbols = new ArrayList<>();
+    }
+
+    /**
+     * Returns a table reading the tokens as integers
+     * @return a new numeric table
+     */
+    public static SymbolTable numeric() {
+        return new SymbolTable(true);
+    }
+
+    /**
+     * Returns the identifier of a token, giving a new identifier to a new token
+     * @param symbol a token
+     * @return the integer identifying the token
+     * @throws NumberFormatException if the table is numeric and the token is not an integer
+     */
+    public int toId(String symbol) {
+        if (numeric)
+            return Integer.parseInt(symbol);
+        Integer id = ids.get(symbol);
+        if (id == null) {
+            id = symbols.size();
+            ids.put(symbol, id);
+            symbols.add(symbol);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the token of an identifier. An identifier that is unknown to the table is written as an integer
+     * @param id an integer of the alphabet
+     * @return the token of the identifier
+     */
+    public String toSymbol(int id) {
+        if (numeric || id < 0 || id >= symbols.size())
+            return Integer.toString(id);
+        return symbols.get(id);
+    }
+
+    /**
+     * Returns the number of tokens known by a non numeric table
+     * @return the number of tokens
+     */
+    public int size() {
+        return symbols.size();
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.io;
+
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.AutomatonView;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.Interval;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Base class of the readers and writers of edge list text formats. <br>
+ * Files are read line by line and the edges are handed to an {@link fr.menana.automaton.AutomatonBuilder}, so the memory
+ * used is proportional to the automaton read, whatever the size of the file. States are named by arbitrary tokens
+ * and symbols are mapped to integers by a {@link fr.menana.automaton.io.SymbolTable}. <br>
+ * The formats have one symbol per edge, hence each value of an interval label is written as its own edge.
+ */
+public abstract class TextFormat {
+
+    /**
+     * The default maximum number of values of a label that can be written
+     */
+    public static final long DEFAULT_MAX_EXPANSION = 1 << 16;
+
+    /**
+     * The table mapping symbols to integers
+     */
+    protected final SymbolTable symbols;
+
+    /**
+     * The maximum number of values of a label that can be written
+     */
+    private long maxExpansion;
+
+    /**
+     * Constructs a format using the given symbol table
+     * @param symbols the table mapping symbols to integers
+     */
+    protected TextFormat(SymbolTable symbols) {
+        this.symbols = symbols;
+        this.maxExpansion = DEFAULT_MAX_EXPANSION;
+    }
+
+    /**
+     * Sets the maximum number of values of a label that can be written, since each value is written as an edge
+     * @param maxExpansion the maximum number of values of a label
+     */
+    public void setMaxExpansion(long maxExpansion) {
+        this.maxExpansion = maxExpansion;
+    }
+
+    /**
+     * Returns the symbol table used by this format
+     * @return the symbol table
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Reads an automaton
+     * @param in the text to read
+     * @return a new automaton
+     * @throws IOException if the text cannot be read or is malformed
+     */
+    public abstract CompactAutomaton read(Reader in) throws IOException;
+
+    /**
+     * Writes an automaton
+     * @param view the automaton to write
+     * @param out the destination of the text
+     * @throws IOException if the text cannot be written
+     */
+    public abstract void write(AutomatonView view, Writer out) throws IOException;
+
+    /**
+     * Reads an automaton from an UTF-8 file
+     * @param path the file to read
+     * @return a new automaton
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public CompactAutomaton read(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return this.read(in);
+        }
+    }
+
+    /**
+     * Writes an automaton to an UTF-8 file
+     * @param view the automaton to write
+     * @param path the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(AutomatonView view, Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            this.write(view, out);
+        }
+    }
+
+    /**
+     * Returns the flattened bounds of the intervals of each label of an automaton
+     * @param view an automaton
+     * @return an array of lower and upper bounds for each label
+     * @throws IllegalArgumentException if a label has more values than the maximum expansion
+     */
+    protected int[][] labelBounds(AutomatonView view) {
+        int[][] bounds = new int[view.getNbLabels()][];
+        for (int l = 0; l < bounds.length; ++l) {
+            long size = 0;
+            int i = 0;
+            bounds[l] = new int[2 * view.getLabel(l).getIntervals().size()];
+            for (Interval interval : view.getLabel(l).getIntervals()) {
+                bounds[l][i] = interval.getMin();
+                bounds[l][i + 1] = interval.getMax();
+                size += (long) bounds[l][i + 1] - bounds[l][i] + 1;
+                i += 2;
+            }
+            if (size > maxExpansion)
+                throw new IllegalArgumentException("Label " + view.getLabel(l) + " has too many values to be written as edges: " + size);
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns a buffered reader on the given reader
+     * @param in a reader
+     * @return a buffered reader
+     */
+    protected static BufferedReader buffered(Reader in) {
+        return in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+    }
+
+    /**
+     * Returns the identifier of a state, adding a new state to the builder for a new name
+     * @param name the name of the state
+     * @param states the identifiers of the states read so far
+     * @param builder the builder of the automaton
+     * @return the identifier of the state
+     */
+    protected static int state(String name, Map<String,Integer> states, AutomatonBuilder builder) {
+        Integer id = states.get(name);
+        if (id == null) {
+            id = builder.addState();
+            states.put(name, id);
+        }
+        return id;
+    }
+
+    /**
+     * Builds the exception reporting a malformed line
+     * @param lineNumber the number of the line
+     * @param line the line
+     * @return a new exception
+     */
+    protected static IOException malformed(int lineNumber, String line) {
+        return new IOException("Malformed line " + lineNumber + ": " + line);
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.AutomatonView;
+import fr.menana.automaton.CompactAutomaton;
+
+import java.util.BitSet;
+
+/**
+ * A matcher of a bounded repetition e{min,max} that keeps repetition counters at runtime instead of unrolling the bounds into
+ * states. <br>
+ * Only the minimal deterministic automaton of e is built. A run follows configurations made of a state of this automaton and of
+ * the number of repetitions already completed, the counts reached in each state being stored in a {@link java.util.BitSet}. Its
+ * size is thus independent of the bounds, at the cost of a per symbol work proportional to the number of live counts.
+ */
+public class CountingMatcher {
+
+    /**
+     * The minimal deterministic automaton of the repeated expression
+     */
+    private final CompactAutomaton dfa;
+
+    /**
+     * The minimum number of repetitions
+     */
+    private final int min;
+
+    /**
+     * The maximum number of repetitions
+     */
+    private final int max;
+
+    /**
+     * Constructs a matcher of the given expression repeated between min and max times
+     * @param internal the repeated regular expression
+     * @param min the minimum number of repetitions
+     * @param max the maximum number of repetitions
+     */
+    public CountingMatcher(RegExp internal, int min, int max) {
+        if (min < 0 || max < min)
+            throw new IllegalArgumentException("Invalid repetition bounds {" + min + "," + max + "}");
+        this.dfa = internal.toNFA().minimize().toCompact();
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Checks if a word is made of between min and max words of the repeated expression
+     * @param word a word as an int array
+     * @return <code>true</code> if and only if the word is accepted
+     */
+    public boolean matches(int... word) {
+        if (word.length == 0 && this.min == 0)
+            return true;
+        int init = dfa.getInitialIndex();
+        if (init < 0 || this.max == 0)
+            return false;
+        int n = dfa.getNbStates();
+        BitSet[] current = new BitSet[n];
+        BitSet[] next = new BitSet[n];
+        current[init] = new BitSet();
+        current[init].set(0);
+        restart(current);
+        for (int value : word) {
+            boolean alive = false;
+            for (int s = 0; s < n; ++s) {
+                if (current[s] == null || current[s].isEmpty())
+                    continue;
+                int t = next(s, value);
+                if (t < 0)
+                    continue;
+                if (next[t] == null)
+                    next[t] = new BitSet();
+                next[t].or(current[s]);
+                alive = true;
+            }
+            if (!alive)
+                return false;
+            BitSet[] tmp = current;
+            current = next;
+            next = tmp;
+            for (BitSet counts : next) {
+                if (counts != null)
+                    counts.clear();
+            }
+            restart(current);
+        }
+        for (int s = 0; s < n; ++s) {
+            if (dfa.isAccept(s) && current[s] != null && current[s].nextSetBit(Math.max(0, this.min - 1)) >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts a new repetition from every configuration that completes one, without exceeding the maximum count
+     * @param current the counts reached in each state
+     */
+    private void restart(BitSet[] current) {
+        int init = dfa.getInitialIndex();
+        BitSet started = new BitSet();
+        for (int s = 0; s < current.length; ++s) {
+            if (!dfa.isAccept(s) || current[s] == null)
+                continue;
+            for (int c = current[s].nextSetBit(0); c >= 0 && c + 1 < this.max; c = current[s].nextSetBit(c + 1))
+                started.set(c + 1);
+        }
+        if (current[init] == null)
+            current[init] = new BitSet();
+        current[init].or(started);
+        // an initial accepting state completes the repetition it starts, every greater count is then reachable
+        if (dfa.isAccept(init) && !current[init].isEmpty())
+            current[init].set(current[init].nextSetBit(0), this.max);
+    }
+
+    /**
+     * @return the successor of a state of the deterministic automaton by a value, or -1 if there is none
+     */
+    private int next(int state, int value) {
+        for (int e = dfa.getEdgeStart(state); e < dfa.getEdgeEnd(state); ++e) {
+            int label = dfa.getLabelId(e);
+            if (label != AutomatonView.EPSILON && dfa.labelContains(label, value))
+                return dfa.getTarget(e);
+        }
+        return -1;
+    }
+}
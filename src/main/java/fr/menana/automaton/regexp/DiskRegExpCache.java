@@ -0,0 +1,242 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.OffHeapAutomaton;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A cache of compiled automata persisted in a directory, so that they survive restarts of the JVM. <br>
+ * Each automaton is stored in the binary format of {@link OffHeapAutomaton} in a file named after the SHA-256 hash of the library
+ * version, the format version and the normalized regular expression, so that upgrading the library invalidates the cache. Files are
+ * written to a temporary file then atomically moved into place, and the least recently used files are deleted once the directory
+ * exceeds its size limit. <br>
+ * The cache is best effort: an unreadable file is compiled again and a failed write only loses the entry. It implements
+ * {@link Function} so that it can serve as the compiler of a {@link RegExpCache}.
+ */
+public class DiskRegExpCache implements Function<String,Automaton> {
+
+    /**
+     * The suffix of the cache files
+     */
+    private static final String SUFFIX = ".aut";
+
+    /**
+     * The directory holding the cache files
+     */
+    private final Path directory;
+
+    /**
+     * The maximum total size in bytes of the cache files
+     */
+    private final long maxBytes;
+
+    /**
+     * The version of the library mixed in the keys
+     */
+    private final String version;
+
+    /**
+     * The function compiling a regular expression on a cache miss
+     */
+    private final Function<String,Automaton> compiler;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a disk cache of minimal deterministic automata built by {@link RegExpParser#toDFA(String)}
+     * @param directory the directory holding the cache files, created if needed
+     * @param maxBytes the maximum total size in bytes of the cache files
+     * @throws IOException if the directory cannot be created
+     */
+    public DiskRegExpCache(Path directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, libraryVersion(), RegExpParser::toDFA);
+    }
+
+    /**
+     * Constructs a disk cache of automata built by the given compiler
+     * @param directory the directory holding the cache files, created if needed
+     * @param maxBytes the maximum total size in bytes of the cache files
+     * @param version the version mixed in the keys, files written under another version are never read
+     * @param compiler the function compiling a regular expression on a cache miss
+     * @throws IOException if the directory cannot be created
+     */
+    public DiskRegExpCache(Path directory, long maxBytes, String version, Function<String,Automaton> compiler) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.version = version;
+        this.compiler = compiler;
+    }
+
+    /**
+     * @return the implementation version of the library, or "dev" when it does not run from a packaged jar
+     */
+    static String libraryVersion() {
+        Package p = Automaton.class.getPackage();
+        String v = p == null ? null : p.getImplementationVersion();
+        return v == null ? "dev" : v;
+    }
+
+    @Override
+    public Automaton apply(String regexp) {
+        return get(regexp);
+    }
+
+    /**
+     * Returns the automaton of the given regular expression, loading it from the directory or compiling and storing it
+     * @param regexp a regular expression
+     * @return a new automaton recognizing the regular expression
+     */
+    public Automaton get(String regexp) {
+        String key = RegExpCache.normalize(regexp);
+        Path file = directory.resolve(hash(key) + SUFFIX);
+        if (Files.isRegularFile(file)) {
+            try {
+                Automaton automaton = OffHeapAutomaton.map(file).toAutomaton();
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                hits.incrementAndGet();
+                return automaton;
+            } catch (IOException | RuntimeException e) {
+                delete(file);
+            }
+        }
+        misses.incrementAndGet();
+        Automaton automaton = compiler.apply(regexp);
+        store(automaton, file);
+        return automaton;
+    }
+
+    /**
+     * Atomically writes an automaton to the given file, then trims the directory to its size limit
+     * @param automaton the automaton to write
+     * @param file the destination file
+     */
+    private void store(Automaton automaton, Path file) {
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(directory, "regexp", ".tmp");
+            OffHeapAutomaton.write(automaton.toCompact(), tmp);
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+            trim();
+        } catch (IOException ignored) {
+        } finally {
+            if (tmp != null)
+                delete(tmp);
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the directory fits its size limit
+     * @throws IOException if the directory cannot be listed
+     */
+    private void trim() throws IOException {
+        List<Path> files = new ArrayList<>();
+        List<BasicFileAttributes> attributes = new ArrayList<>();
+        long size = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path p : stream) {
+                try {
+                    BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                    files.add(p);
+                    attributes.add(a);
+                    size += a.size();
+                } catch (NoSuchFileException ignored) {
+                }
+            }
+        }
+        if (size <= maxBytes)
+            return;
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> attributes.get(a).lastModifiedTime().compareTo(attributes.get(b).lastModifiedTime()));
+        for (int i = 0; i < order.length && size > maxBytes; ++i) {
+            if (delete(files.get(order[i]))) {
+                size -= attributes.get(order[i]).size();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            return Files.deleteIfExists(file);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param key a normalized regular expression
+     * @return the hexadecimal SHA-256 hash of the version, the format version and the key
+     */
+    private String hash(String key) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update((version + '\0' + OffHeapAutomaton.FORMAT_VERSION + '\0' + key).getBytes(StandardCharsets.UTF_8));
+        StringBuilder b = new StringBuilder(64);
+        for (byte x : digest.digest())
+            b.append(Character.forDigit((x >> 4) & 0xF, 16)).append(Character.forDigit(x & 0xF, 16));
+        return b.toString();
+    }
+
+    /**
+     * @return the number of automata loaded from the directory
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of automata compiled because they were not in the directory
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of files deleted to respect the size limit
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+}
@@ -19,6 +19,11 @@ package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
 /**
  * Abstract class for regular expression. <p>
  * Created by Julien Menana on 05/05/2015.
@@ -40,4 +45,58 @@ public abstract class RegExp {
      * @return a non deterministic {@link fr.menana.automaton.Automaton} equivalent to this regular expression
      */
     public abstract Automaton toNFA();
+
+    /**
+     * Returns the sub-expressions of this regular expression, so that trees are walked with an explicit stack instead of
+     * recursive calls whose depth would be the nesting depth of the expression
+     * @return the direct sub-expressions, empty for a symbol
+     */
+    List<RegExp> getChildren() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Compares this node with a node of the same class, regardless of their sub-expressions
+     * @param other a node of the same class
+     * @return <code>true</code> if both nodes have the same symbols or bounds
+     */
+    boolean sameNode(RegExp other) {
+        return true;
+    }
+
+    /**
+     * Checks whether two regular expressions are the same tree. <br>
+     * The trees are walked with an explicit stack and the hash codes, computed once when the nodes are constructed, are
+     * compared first, so that different trees are rejected without walking them and deep trees do not overflow the call stack
+     * @param other the object to compare with
+     * @return <code>true</code> if and only if the other object is an equal regular expression
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof RegExp))
+            return false;
+        Deque<RegExp> stack = new ArrayDeque<>();
+        stack.push(this);
+        stack.push((RegExp) other);
+        while (!stack.isEmpty()) {
+            RegExp b = stack.pop();
+            RegExp a = stack.pop();
+            if (a == b)
+                continue;
+            if (a.getClass() != b.getClass() || a.hashCode() != b.hashCode() || !a.sameNode(b))
+                return false;
+            List<RegExp> childrenA = a.getChildren();
+            List<RegExp> childrenB = b.getChildren();
+            if (childrenA.size() != childrenB.size())
+                return false;
+            for (int i = 0; i < childrenA.size(); ++i) {
+                stack.push(childrenA.get(i));
+                stack.push(childrenB.get(i));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public abstract int hashCode();
 }
@@ -42,4 +42,9 @@ public class RegExpAny extends RegExp {
         auto.addTransition(s1,s2, IntervalSet.ALL);
         return auto;
     }
+
+    @Override
+    public int hashCode() {
+        return 31;
+    }
 }
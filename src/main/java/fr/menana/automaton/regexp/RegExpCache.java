@@ -0,0 +1,266 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.State;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache of automata compiled from regular expressions. <br>
+ * Entries are keyed by the normalized regular expression and evicted in least recently used order once the cache holds more than
+ * a maximum number of entries or a maximum weight, the weight of an automaton being its number of states plus its number of
+ * transitions. Concurrent misses on the same key compile the automaton only once. <br>
+ * The cache returns a clone of the cached automaton so that callers are free to modify it.
+ */
+public class RegExpCache {
+
+    /**
+     * The function compiling a regular expression into an automaton
+     */
+    private final Function<String,Automaton> compiler;
+
+    /**
+     * The maximum number of cached automata
+     */
+    private final int maxEntries;
+
+    /**
+     * The maximum total weight of the cached automata
+     */
+    private final long maxWeight;
+
+    /**
+     * The cached automata in access order, guarded by this
+     */
+    private final LinkedHashMap<String,Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The compilations in progress
+     */
+    private final ConcurrentHashMap<String,CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    /**
+     * The total weight of the cached automata, guarded by this
+     */
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * Constructs a cache of minimal deterministic automata built by {@link RegExpParser#toDFA(String)}
+     * @param maxEntries the maximum number of cached automata
+     * @param maxWeight the maximum total number of states and transitions of the cached automata
+     */
+    public RegExpCache(int maxEntries, long maxWeight) {
+        this(maxEntries, maxWeight, RegExpParser::toDFA);
+    }
+
+    /**
+     * Constructs a cache of automata built by the given compiler
+     * @param maxEntries the maximum number of cached automata
+     * @param maxWeight the maximum total number of states and transitions of the cached automata
+     * @param compiler the function compiling a regular expression into an automaton
+     */
+    public RegExpCache(int maxEntries, long maxWeight, Function<String,Automaton> compiler) {
+        if (maxEntries < 0 || maxWeight < 0)
+            throw new IllegalArgumentException("The limits of the cache must be positive");
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Returns the automaton of the given regular expression, compiling it if it is not cached
+     * @param regexp a regular expression
+     * @return a copy of the cached automaton recognizing the regular expression
+     */
+    public Automaton get(String regexp) {
+        String key = normalize(regexp);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.automaton.clone();
+            }
+        }
+        misses.incrementAndGet();
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> previous = loading.putIfAbsent(key, future);
+        if (previous != null) {
+            try {
+                return previous.join().automaton.clone();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw e;
+            }
+        }
+        try {
+            Entry entry;
+            synchronized (this) {
+                entry = entries.get(key);
+            }
+            if (entry == null) {
+                Automaton automaton = compiler.apply(regexp);
+                loads.incrementAndGet();
+                entry = new Entry(automaton, weightOf(automaton));
+                put(key, entry);
+            }
+            future.complete(entry);
+            return entry.automaton.clone();
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Inserts an entry and evicts the least recently used ones until the cache fits its limits
+     * @param key the normalized regular expression
+     * @param entry the compiled automaton
+     */
+    private synchronized void put(String key, Entry entry) {
+        if (entry.weight > maxWeight || maxEntries == 0)
+            return;
+        Entry old = entries.put(key, entry);
+        if (old != null)
+            weight -= old.weight;
+        weight += entry.weight;
+        Iterator<Entry> it = entries.values().iterator();
+        while (weight > maxWeight || entries.size() > maxEntries) {
+            weight -= it.next().weight;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Removes every cached automaton, the statistics are kept
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return the number of cached automata
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total number of states and transitions of the cached automata
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the number of calls answered from the cache
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of calls whose key was not cached, including those waiting for a concurrent compilation
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of automata evicted to respect the limits of the cache
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of automata compiled by the cache
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * Normalizes a regular expression so that trivially equivalent strings share an entry. <br>
+     * The &lt;x&gt; notation is dropped for digits, a rewriting the parser accepts both ways, so that the normalized form is
+     * only used as a key and never changes which regular expressions are valid.
+     * @param regexp a regular expression
+     * @return the normalized regular expression
+     */
+    static String normalize(String regexp) {
+        StringBuilder b = new StringBuilder(regexp.length());
+        for (int i = 0; i < regexp.length(); ++i) {
+            char c = regexp.charAt(i);
+            if (c == '<' && i + 2 < regexp.length() && Character.isDigit(regexp.charAt(i + 1)) && regexp.charAt(i + 2) == '>') {
+                b.append(regexp.charAt(i + 1));
+                i += 2;
+            }
+            else
+                b.append(c);
+        }
+        return b.toString();
+    }
+
+    /**
+     * @param automaton an automaton
+     * @return the number of states plus the number of transitions of the automaton
+     */
+    static long weightOf(Automaton automaton) {
+        long w = automaton.getNbStates();
+        for (State s : automaton.getStates())
+            w += s.getTransitions().size();
+        return w;
+    }
+
+    /**
+     * A cached automaton and its weight
+     */
+    private static class Entry {
+        final Automaton automaton;
+        final long weight;
+
+        Entry(Automaton automaton, long weight) {
+            this.automaton = automaton;
+            this.weight = weight;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RegExpCache{size=" + entries.size() + ", weight=" + weight + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", loads=" + loads + "}";
+    }
+}
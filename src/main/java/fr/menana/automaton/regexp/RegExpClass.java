@@ -0,0 +1,92 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.Interval;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.State;
+
+/**
+ * A regular expression element that accepts any integer of a set, written as a bracket class such as
+ * [&lt;100&gt;-&lt;5000&gt;&lt;7000&gt;] or [^0-9]. <br>
+ * Whatever the number of values, the class is a single transition labeled by an interned {@link fr.menana.automaton.IntervalSet}.
+ */
+public class RegExpClass extends RegExp {
+
+    /**
+     * The accepted integers
+     */
+    private IntervalSet values;
+
+    /**
+     * Constructs a regular expression element that accepts any integer of the given set
+     * @param values the accepted integers
+     */
+    RegExpClass(IntervalSet values) {
+        this.values = values.intern();
+    }
+
+    /**
+     * @return the interned set of integers accepted by this element
+     */
+    public IntervalSet getValues() {
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("[");
+        for (Interval i : values.getIntervals()) {
+            append(b, i.getMin());
+            if (i.getMax() != i.getMin()) {
+                b.append('-');
+                append(b, i.getMax());
+            }
+        }
+        return b.append(']').toString();
+    }
+
+    private static void append(StringBuilder b, int value) {
+        if (value >= 0 && value < 10)
+            b.append(value);
+        else
+            b.append('<').append(value).append('>');
+    }
+
+    @Override
+    public Automaton toNFA() {
+        Automaton auto = new Automaton();
+        State s1 = auto.addState();
+        State s2 = auto.addState();
+        auto.setInitial(s1);
+        auto.setAccept(s2);
+        auto.addTransition(s1,s2, values);
+        return auto;
+    }
+
+    @Override
+    boolean sameNode(RegExp other) {
+        return ((RegExpClass) other).values.equals(values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+}
@@ -41,4 +41,9 @@ public class RegExpEpsilon extends RegExp {
         auto.addEpsilonTransition(s1,s2);
         return auto;
     }
+
+    @Override
+    public int hashCode() {
+        return 17;
+    }
 }
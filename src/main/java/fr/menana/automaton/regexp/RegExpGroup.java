@@ -0,0 +1,95 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.Automaton;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents a capture group, whose boundaries are reported by a {@link fr.menana.automaton.regexp.TaggedMatcher}. <br>
+ * A group does not change the language of the regular expression it encloses.
+ */
+public class RegExpGroup extends RegExp {
+
+    /**
+     * The number of the group, from 1
+     */
+    private int index;
+
+    /**
+     * The regular expression enclosed in the group
+     */
+    private RegExp internal;
+
+    /**
+     * The hash code, computed from those of the sub-expressions when the node is constructed
+     */
+    private final int hash;
+
+    /**
+     * Constructs a capture group
+     * @param index the number of the group, from 1
+     * @param internal the regular expression enclosed in the group
+     */
+    RegExpGroup(int index, RegExp internal) {
+        this.index = index;
+        this.internal = internal;
+        this.hash = 31 * internal.hashCode() + index;
+    }
+
+    /**
+     * @return the number of the group, from 1
+     */
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return the regular expression enclosed in the group
+     */
+    RegExp getInternal() {
+        return internal;
+    }
+
+    @Override
+    public String toString() {
+        return "(" + internal + ")";
+    }
+
+    @Override
+    public Automaton toNFA() {
+        return ThompsonConstruction.toNFA(this);
+    }
+
+    @Override
+    List<RegExp> getChildren() {
+        return Collections.singletonList(internal);
+    }
+
+    @Override
+    boolean sameNode(RegExp other) {
+        return ((RegExpGroup) other).index == index;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -57,4 +57,21 @@ public class RegExpInt extends RegExp {
         auto.addTransition(s1,s2,this.symbol);
         return auto;
     }
+
+    /**
+     * @return the integer represented by this element
+     */
+    int getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    boolean sameNode(RegExp other) {
+        return ((RegExpInt) other).symbol == symbol;
+    }
+
+    @Override
+    public int hashCode() {
+        return symbol;
+    }
 }
@@ -19,6 +19,9 @@ package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Represents a regular expression element composed of a regular expression with a Kleene plus symbol. <br>
  * The Kleene plus symbol stands for one or more times the given regular expression. <br>
@@ -28,25 +31,48 @@ import fr.menana.automaton.Automaton;
 public class RegExpKleenePlus extends RegExp {
 
     /**
-     * The regular expression on which to apply the Kleene plus
+     * The regular expression repeated one or more times
+     */
+    private RegExp base;
+
+    /**
+     * The hash code, computed from those of the sub-expressions when the node is constructed
      */
-    private RegExp internal;
+    private final int hash;
 
     /**
      * Constructs a new regular expression with the Kleene plus symbol
      * @param internal the regular expression the Kleene plus is applied
      */
     RegExpKleenePlus(RegExp internal) {
-        this.internal = new RegExpSequence(internal, new RegExpKleeneStar(internal));
+        this.base = internal;
+        this.hash = 31 * internal.hashCode() + 4;
     }
 
     @Override
     public String toString() {
-        return "(" + this.internal.toString() + ")*";
+        return "(" + this.base.toString() + ")+";
     }
 
     @Override
     public Automaton toNFA() {
-        return this.internal.toNFA();
+        return ThompsonConstruction.toNFA(this);
+    }
+
+    /**
+     * @return the regular expression repeated one or more times
+     */
+    RegExp getBase() {
+        return base;
+    }
+
+    @Override
+    List<RegExp> getChildren() {
+        return Collections.singletonList(base);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 }
@@ -18,11 +18,9 @@
 package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
-import fr.menana.automaton.State;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Represents a regular expression that is repeated a number of time in a given range  <p>
@@ -46,26 +44,21 @@ public class RegExpKleeneRange extends RegExp {
     int max;
 
     /**
-     * Constructs a new regular expression that is repeated a number of time in a given range
-     * @param internal the regular expression thas has to be repeated
-     * @param intRange the range within the regular expression has to be repeated
+     * The hash code, computed from that of the repeated expression when the node is constructed
      */
-    RegExpKleeneRange(RegExp internal, String intRange) {
-        this.internal = internal;
-        this.parse(intRange);
-    }
+    private final int hash;
 
     /**
-     * Parse a range or a integer into min and max
-     * @param intRange a integer range in the form X or X,Y
+     * Constructs a new regular expression that is repeated a number of time in a given range
+     * @param internal the regular expression thas has to be repeated
+     * @param min the minimum number of repetition
+     * @param max the maximum number of repetition
      */
-    private void  parse(String intRange) {
-        String[] splitted = intRange.split(",");
-        this.min = Integer.parseInt(splitted[0]);
-        if (splitted.length > 1)
-            this.max = Integer.parseInt(splitted[1]);
-        else
-            this.max = this.min;
+    RegExpKleeneRange(RegExp internal, int min, int max) {
+        this.internal = internal;
+        this.min = min;
+        this.max = max;
+        this.hash = 31 * (31 * (31 * internal.hashCode() + min) + max) + 5;
     }
 
     @Override
@@ -73,29 +66,37 @@ public class RegExpKleeneRange extends RegExp {
         return this.internal.toString()+"{"+(this.max==this.min?this.min:(this.min+","+this.max))+"}";
     }
 
+    /**
+     * Returns a matcher of this regular expression that counts the repetitions at runtime instead of unrolling them into states
+     * @return a new {@link fr.menana.automaton.regexp.CountingMatcher} of this regular expression
+     */
+    public CountingMatcher toCountingMatcher() {
+        return new CountingMatcher(this.internal, this.min, this.max);
+    }
+
+    /**
+     * Lays out max fragments of the repeated expression side by side, fragment k+1 being entered from the exit of fragment k,
+     * as done by {@link fr.menana.automaton.regexp.ThompsonConstruction}. <br>
+     * The construction is linear in the size of the result.
+     * @return a non deterministic {@link fr.menana.automaton.Automaton} equivalent to this regular expression
+     */
     @Override
     public Automaton toNFA() {
-        Automaton auto = new RegExpEpsilon().toNFA();
-        for (int i = 0 ; i < this.min ; ++i) {
-            auto = auto.concatenate(this.internal.toNFA());
-        }
-        List<Integer> finalIndexes = new ArrayList<>();
-        for (int i = this.min ; i < this.max ; ++i) {
-            finalIndexes.addAll(auto.getAcceptList().stream().map(State::getIndex).collect(Collectors.toList()));
-            auto = auto.concatenate(this.internal.toNFA());
-        }
-        State accept = auto.addState();
-        for (int i : finalIndexes)
-            auto.addEpsilonTransition(auto.getStates().get(i),accept);
-        for (State s : auto.getAcceptList()) {
-            auto.addEpsilonTransition(s,accept);
-            auto.setAccept(s,false);
-        }
-        auto.setAccept(accept);
-
-        return auto;
+        return ThompsonConstruction.toNFA(this);
+    }
 
+    @Override
+    List<RegExp> getChildren() {
+        return Collections.singletonList(internal);
     }
 
+    @Override
+    boolean sameNode(RegExp other) {
+        return ((RegExpKleeneRange) other).min == min && ((RegExpKleeneRange) other).max == max;
+    }
 
+    @Override
+    public int hashCode() {
+        return hash;
+    }
 }
@@ -18,7 +18,9 @@
 package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
-import fr.menana.automaton.State;
+
+import java.util.Collections;
+import java.util.List;
 
 
 /**
@@ -33,12 +35,18 @@ public class RegExpKleeneStar extends RegExp {
      */
     private RegExp internal;
 
+    /**
+     * The hash code, computed from those of the sub-expressions when the node is constructed
+     */
+    private final int hash;
+
     /**
      * Constructs a new regular expression with the Kleene stàr symbol
      * @param internal the regular expression the Kleene star is applied
      */
     RegExpKleeneStar(RegExp internal) {
         this.internal = internal;
+        this.hash = 31 * internal.hashCode() + 3;
     }
 
     @Override
@@ -48,23 +56,23 @@ public class RegExpKleeneStar extends RegExp {
 
     @Override
     public Automaton toNFA() {
-        Automaton auto = this.internal.toNFA();
-        State init = auto.addState();
-        State end  = auto.addState();
-
-        State oldInit = auto.getInitial();
+        return ThompsonConstruction.toNFA(this);
+    }
 
+    /**
+     * @return the regular expression on which the Kleene star is applied
+     */
+    RegExp getInternal() {
+        return internal;
+    }
 
-        auto.addEpsilonTransition(init, end);
-        auto.addEpsilonTransition(init,oldInit);
+    @Override
+    List<RegExp> getChildren() {
+        return Collections.singletonList(internal);
+    }
 
-        for (State s : auto.getAcceptList()) {
-            auto.addEpsilonTransition(s,oldInit);
-            auto.setAccept(s, false);
-            auto.addEpsilonTransition(s,end);
-        }
-        auto.setInitial(init);
-        auto.setAccept(end);
-        return auto;
+    @Override
+    public int hashCode() {
+        return hash;
     }
 }
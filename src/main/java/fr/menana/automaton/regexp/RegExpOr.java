@@ -18,27 +18,25 @@
 package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
-import fr.menana.automaton.IntervalSet;
-import fr.menana.automaton.State;
-import fr.menana.automaton.Transition;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * Represents a regular expression constructed by the union of two regular expressions <p>
+ * Represents a regular expression constructed by the union of regular expressions <p>
  * Created by Julien Menana on 05/05/2015.
  */
 public class RegExpOr extends RegExp {
     /**
-     * Regular expression composing the union
+     * Regular expressions composing the union
      */
-    private RegExp left;
+    private List<RegExp> choices;
 
     /**
-     * Regular expression composing the union
+     * The hash code, computed from those of the sub-expressions when the node is constructed
      */
-    private RegExp right;
+    private final int hash;
 
     /**
      * Constructs a new regular expression as the union of two given regular expression
@@ -46,45 +44,48 @@ public class RegExpOr extends RegExp {
      * @param right the second regular expressino composing the union
      */
     RegExpOr(RegExp left, RegExp right) {
-        this.left = left;
-        this.right = right;
+        this(Arrays.asList(left, right));
+    }
+
+    /**
+     * Constructs a new regular expression as the union of the given regular expressions
+     * @param choices the regular expressions composing the union
+     */
+    RegExpOr(List<RegExp> choices) {
+        this.choices = new ArrayList<>(choices);
+        this.hash = 31 * this.choices.hashCode() + 2;
     }
 
     @Override
     public String toString() {
-        return "(" + this.left + "|" + this.right + ")";
+        StringBuilder b = new StringBuilder("(");
+        for (int i = 0; i < choices.size(); ++i) {
+            if (i > 0)
+                b.append('|');
+            b.append(choices.get(i));
+        }
+        return b.append(')').toString();
     }
 
     @Override
     public Automaton toNFA() {
-        Automaton auto = new Automaton();
-        State s1 = auto.addState();
-        State s2 = auto.addState();
+        return ThompsonConstruction.toNFA(this);
+    }
+
+    /**
+     * @return the regular expressions composing the union
+     */
+    List<RegExp> getChoices() {
+        return choices;
+    }
 
-        Automaton[] choice = new Automaton[]{left.toNFA(), right.toNFA()};
+    @Override
+    List<RegExp> getChildren() {
+        return choices;
+    }
 
-        for (Automaton a : choice) {
-            Map<State,State> asso = new HashMap<>();
-            for (State s : a.getStates()) {
-                asso.put(s,auto.addState());
-            }
-            for (State s : a.getStates()) {
-                for (Transition tr : s.getTransitions().values()) {
-                    if (tr.values != null) {
-                        IntervalSet set = tr.values.clone();
-                        auto.addTransition(asso.get(tr.orig), asso.get(tr.dest), set);
-                    }
-                    if (tr.hasEpsilon())
-                        auto.addEpsilonTransition(asso.get(tr.orig),asso.get(tr.dest));
-                }
-            }
-            auto.addEpsilonTransition(s1,asso.get(a.getInitial()));
-            for (State s : a.getAcceptList()) {
-                auto.addEpsilonTransition(asso.get(s), s2);
-            }
-        }
-        auto.setInitial(s1);
-        auto.setAccept(s2);
-        return auto;
+    @Override
+    public int hashCode() {
+        return hash;
     }
 }
@@ -18,7 +18,14 @@
 package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
-import fr.menana.automaton.Util;
+import fr.menana.automaton.Interval;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.Operation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 
 /**
  * This class is a parser for regular expression whose alphabet is solely composed of integers. <br>
@@ -28,17 +35,27 @@ import fr.menana.automaton.Util;
  *    - * notation for Kleene star <br>
  *    - + notation for Kleene plus <br>
  *    - . notation for any integer <br>
+ *    - [...] notation for a class of integers, made of symbols and ranges x-y, negated by a leading ^ ("[0-5&lt;12&gt;]", "[^&lt;-1&gt;-3]") <br>
  *    - {x,y} notation to enforce the appearance of an expression between x and y times <br>
- *    - ? notation for zero or one. <p>
+ *    - ? notation for zero or one. <br>
+ *    - (x) notation for a capture group, numbered from 1 in the order of the opening parentheses, (?:x) for a group that does not
+ *    capture. Groups only matter to {@link fr.menana.automaton.regexp.TaggedMatcher}. <br>
+ * The input is read through a cursor and nested groups are kept on an explicit stack, so that parsing runs in linear time
+ * whatever the length and the nesting depth of the expression. <p>
  * Created by Julien Menana on 05/05/15.
  */
 public class RegExpParser {
 
 
     /**
-     * The input to consume and form the regular expression
+     * The regular expression to parse
      */
-    private String input;
+    private final String input;
+
+    /**
+     * The position of the next character to consume
+     */
+    private int pos;
 
     /**
      * Consturcts a new parser from a string
@@ -48,108 +65,247 @@ public class RegExpParser {
         this.input = input;
     }
 
+    /**
+     * A parenthesized group being parsed, made of the alternatives already read and of the sequence of the current alternative
+     */
+    private static class Group {
 
-    private String peek() {
-        if (input.charAt(0) == '<') {
-            return input.substring(1,input.indexOf('>',1));
-        }
-        return input.substring(0,1) ;
-    }
+        /**
+         * The position of the opening parenthesis, or -1 for the whole regular expression
+         */
+        final int start;
 
-    private void eat(String c) {
-        if (peek().equals(c)) {
-            if (c.length() == 1)
-                this.input = this.input.substring(c.length());
-            else
-                this.input = this.input.substring(c.length()+2);
-        }
-        else
-            throw new RuntimeException("Expected: " + c + "; got: " + peek()) ;
-    }
+        /**
+         * The number of the capture group, or 0 if the group does not capture
+         */
+        final int capture;
 
-    private String next() {
-        String c = peek() ;
-        eat(c) ;
-        return c ;
-    }
+        final List<RegExp> choices = new ArrayList<>();
 
-    private boolean more() {
-        return !input.isEmpty();
-    }
-    private RegExp regex() {
-        RegExp term = term() ;
-
-        if (more() && peek().equals("|")) {
-            eat ("|") ;
-            RegExp regex = regex() ;
-            return new RegExpOr(term,regex) ;
-        } else {
-            return term ;
-        }
-    }
+        List<RegExp> sequence = new ArrayList<>();
 
-    private RegExp term() {
-        RegExp factor = RegExp.blank ;
+        Group(int start, int capture) {
+            this.start = start;
+            this.capture = capture;
+        }
 
-        while (more() && !peek().equals(")") && !peek().equals("|")) {
-            RegExp nextFactor = factor() ;
-            factor = new RegExpSequence(factor,nextFactor) ;
+        void closeChoice() {
+            choices.add(sequence.isEmpty() ? RegExp.blank : sequence.size() == 1 ? sequence.get(0) : new RegExpSequence(sequence));
+            sequence = new ArrayList<>();
         }
 
-        return factor ;
+        RegExp close() {
+            closeChoice();
+            RegExp r = choices.size() == 1 ? choices.get(0) : new RegExpOr(choices);
+            return capture > 0 ? new RegExpGroup(capture, r) : r;
+        }
     }
 
-    private RegExp factor() {
-
-        RegExp base = base() ;
+    /**
+     * Parses the whole input with a cursor and an explicit stack of open groups, in linear time and constant call depth
+     * @return the regular expression tree
+     */
+    private RegExp parse() {
+        Deque<Group> stack = new ArrayDeque<>();
+        Group current = new Group(-1, 0);
+        int nbGroups = 0;
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == '(') {
+                stack.push(current);
+                if (input.startsWith("?:", pos + 1)) {
+                    current = new Group(pos, 0);
+                    pos += 3;
+                }
+                else
+                    current = new Group(pos++, ++nbGroups);
+            }
+            else if (c == '|') {
+                current.closeChoice();
+                ++pos;
+            }
+            else if (c == ')') {
+                if (stack.isEmpty())
+                    throw error("Unbalanced parenthesis");
+                ++pos;
+                RegExp group = current.close();
+                current = stack.pop();
+                current.sequence.add(postfix(group));
+            }
+            else {
+                current.sequence.add(postfix(atom()));
+            }
+        }
+        if (!stack.isEmpty()) {
+            pos = current.start;
+            throw error("Unclosed parenthesis");
+        }
+        return current.close();
+    }
 
-        while (more() && peek().equals("*")) {
-            eat("*") ;
-            base = new RegExpKleeneStar(base) ;
+    /**
+     * Consumes a symbol: a digit, a &lt;x&gt; integer or the . wildcard
+     * @return the regular expression of the symbol
+     */
+    private RegExp atom() {
+        char c = input.charAt(pos);
+        if (c >= '0' && c <= '9') {
+            ++pos;
+            return new RegExpInt(c - '0');
         }
-        while (more() && peek().equals("+")) {
-            eat("+") ;
-            base = new RegExpKleenePlus(base) ;
+        if (c == '.') {
+            ++pos;
+            return new RegExpAny();
         }
-        while (more() && peek().equals("?")) {
-            eat("?") ;
-            base = new RegExpKleeneRange(base,"0,1");
+        if (c == '<') {
+            ++pos;
+            return new RegExpInt(integer('>'));
         }
-        if (more() && peek().equals("{")) {
-            eat("{");
-            StringBuilder b = new StringBuilder();
-            while (more() && !peek().equals("}")) {
-                String s = peek();
-                b.append(s);
-                eat(s);
+        if (c == '[') {
+            ++pos;
+            return bracketClass();
+        }
+        throw error("Char allowed are int and . for any int");
+    }
+
+    /**
+     * Consumes a bracket class up to its closing bracket: an optional ^ negation followed by symbols and ranges x-y
+     * @return the regular expression of the class
+     */
+    private RegExp bracketClass() {
+        boolean negated = pos < input.length() && input.charAt(pos) == '^';
+        if (negated)
+            ++pos;
+        IntervalSet values = new IntervalSet();
+        while (pos < input.length() && input.charAt(pos) != ']') {
+            int min = symbol();
+            int max = min;
+            if (pos < input.length() && input.charAt(pos) == '-') {
+                ++pos;
+                max = symbol();
+                if (max < min)
+                    throw error("Empty range");
             }
-            eat("}");
-            base = new RegExpKleeneRange(base,b.toString());
+            values.add(new Interval(min, max));
+        }
+        if (pos == input.length())
+            throw error("Expected: ]");
+        if (values.isEmpty())
+            throw error("Empty class");
+        ++pos;
+        if (negated) {
+            values = values.complement();
+            if (values.isEmpty())
+                throw error("Empty class");
         }
+        return new RegExpClass(values);
+    }
 
-        return base ;
+    /**
+     * Consumes a symbol of a bracket class: a digit or a &lt;x&gt; integer
+     * @return the integer
+     */
+    private int symbol() {
+        if (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                ++pos;
+                return c - '0';
+            }
+            if (c == '<') {
+                ++pos;
+                return integer('>');
+            }
+        }
+        throw error("Expected a digit or an integer in a class");
     }
 
-    private RegExp base() {
-        if (peek().equals("(")) {
-            eat("(");
-            RegExp r = regex() ;
-            eat(")") ;
-            return r ;
+    /**
+     * Consumes an integer followed by the given character
+     * @param end the character closing the integer
+     * @return the integer
+     */
+    private int integer(char end) {
+        boolean negative = pos < input.length() && input.charAt(pos) == '-';
+        if (negative)
+            ++pos;
+        int first = pos;
+        long value = 0;
+        while (pos < input.length() && input.charAt(pos) >= '0' && input.charAt(pos) <= '9') {
+            value = 10 * value + (input.charAt(pos++) - '0');
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw error("Integer out of range");
         }
-        else {
-            String next = next();
-            if (Util.isInteger(next)) {
-                return new RegExpInt(Integer.parseInt(next));
-            }
-            else if (next.equals(".")) {
-                return new RegExpAny();
+        if (pos == first || pos == input.length() || input.charAt(pos) != end)
+            throw error("Expected an integer followed by " + end);
+        ++pos;
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE)
+            throw error("Integer out of range");
+        return (int) value;
+    }
+
+    /**
+     * Consumes the postfix operators following a regular expression, in any order
+     * @param base the regular expression the operators apply to
+     * @return the regular expression with its operators
+     */
+    private RegExp postfix(RegExp base) {
+        while (pos < input.length()) {
+            char c = input.charAt(pos);
+            if (c == '*') {
+                if (!(base instanceof RegExpKleeneStar))
+                    base = new RegExpKleeneStar(base);
             }
-            else {
-                throw new RuntimeException("Char allowed are int and . for any int");
+            else if (c == '+')
+                base = new RegExpKleenePlus(base);
+            else if (c == '?')
+                base = new RegExpKleeneRange(base, 0, 1);
+            else if (c == '{') {
+                StringBuilder b = new StringBuilder();
+                while (++pos < input.length() && input.charAt(pos) != '}') {
+                    char r = input.charAt(pos);
+                    if (r != '<' && r != '>')
+                        b.append(r);
+                }
+                if (pos == input.length())
+                    throw error("Expected: }");
+                base = range(base, b.toString());
             }
+            else
+                break;
+            ++pos;
+        }
+        return base;
+    }
 
+    /**
+     * Checks the bounds of a counted repetition, read before its closing brace
+     * @param base the repeated regular expression
+     * @param bounds the bounds in the form X or X,Y
+     * @return the repetition of base between its bounds
+     */
+    private RegExp range(RegExp base, String bounds) {
+        String[] splitted = bounds.split(",", -1);
+        if (splitted.length > 2)
+            throw error("Expected a repetition range X or X,Y");
+        int min;
+        int max;
+        try {
+            min = Integer.parseInt(splitted[0]);
+            max = splitted.length > 1 ? Integer.parseInt(splitted[1]) : min;
+        } catch (NumberFormatException e) {
+            throw error("Expected a repetition range X or X,Y");
         }
+        if (min < 0)
+            throw error("Negative repetition bound");
+        if (min > max)
+            throw error("Empty repetition range");
+        return new RegExpKleeneRange(base, min, max);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + pos);
     }
 
     /**
@@ -162,12 +318,13 @@ public class RegExpParser {
     }
 
     /**
-     * Returns a new non-deterministic {@link fr.menana.automaton.Automaton} from a regular expression represented by the given string
+     * Returns a new non-deterministic {@link fr.menana.automaton.Automaton} from a regular expression represented by the given string. <br>
+     * The regular expression is simplified by {@link fr.menana.automaton.regexp.RegExpSimplifier} before its automaton is built
      * @param regexp the regular expression string to parse
      * @return a new non-deterministic {@link fr.menana.automaton.Automaton} constructed from the input string
      */
     public static Automaton toNFA(String regexp) {
-        return toRegExp(regexp).toNFA();
+        return RegExpSimplifier.simplify(toRegExp(regexp)).toNFA();
     }
 
     /**
@@ -180,11 +337,16 @@ public class RegExpParser {
         return toNFA(regexp).minimize();
     }
 
-
-    private RegExp parse() {
-        return this.regex();
+    /**
+     * Returns a new deterministic {@link fr.menana.automaton.Automaton} from a regular expression represented by the given
+     * string, minimized with the given algorithm
+     * @param regexp the regular expression string to parse
+     * @param method the minimization algorithm to use
+     * @return a new deterministic {@link fr.menana.automaton.Automaton} constructed from the input string
+     */
+    public static Automaton toDFA(String regexp, Operation.MINIMIZATION_ALGO method) {
+        return toNFA(regexp).minimize(method);
     }
 
 
-
 }
@@ -18,27 +18,25 @@
 package fr.menana.automaton.regexp;
 
 import fr.menana.automaton.Automaton;
-import fr.menana.automaton.IntervalSet;
-import fr.menana.automaton.State;
-import fr.menana.automaton.Transition;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
-/** Represents a sequence or concatenation of two regular expressions <p>
+/** Represents a sequence or concatenation of regular expressions <p>
  * Created by Julien Menana on 05/05/2015.
  */
 public class RegExpSequence extends RegExp {
 
     /**
-     * The left hand side regular expression of the sequence
+     * The regular expressions of the sequence, in order
      */
-    private RegExp left;
+    private List<RegExp> parts;
 
     /**
-     * The right hand side regular expression of the sequence
+     * The hash code, computed from those of the sub-expressions when the node is constructed
      */
-    private RegExp right;
+    private final int hash;
 
     /**
      * Constructs a new regular expression as the sequence or concatenation of two given regular expression
@@ -46,45 +44,45 @@ public class RegExpSequence extends RegExp {
      * @param right the second regular expressino composing the sequence
      */
     RegExpSequence(RegExp left, RegExp right) {
-        this.left = left;
-        this.right = right;
+        this(Arrays.asList(left, right));
+    }
+
+    /**
+     * Constructs a new regular expression as the sequence or concatenation of the given regular expressions
+     * @param parts the regular expressions composing the sequence, in order
+     */
+    RegExpSequence(List<RegExp> parts) {
+        this.parts = new ArrayList<>(parts);
+        this.hash = 31 * this.parts.hashCode() + 1;
     }
 
     @Override
     public String toString() {
-        return left.toString() + right.toString();
+        StringBuilder b = new StringBuilder();
+        for (RegExp part : parts)
+            b.append(part);
+        return b.toString();
     }
 
     @Override
     public Automaton toNFA() {
-        Automaton auto = this.left.toNFA();
-        Automaton second = this.right.toNFA();
+        return ThompsonConstruction.toNFA(this);
+    }
 
-        Map<State,State> asso = new HashMap<>();
-        for (State s : second.getStates())
-        {
-            asso.put(s,auto.addState());
-        }
-        for (State s : second.getStates())
-        {
-            for (Transition tr : s.getTransitions().values()) {
-                if (tr.values != null) {
-                    IntervalSet set = tr.values.clone();
-                    auto.addTransition(asso.get(tr.orig), asso.get(tr.dest), set);
-                }
-                if (tr.hasEpsilon())
-                    auto.addEpsilonTransition(asso.get(tr.orig),asso.get(tr.dest));
-            }
-        }
-        for (State s : auto.getAcceptList()) {
-            auto.addEpsilonTransition(s,asso.get(second.getInitial()));
-            auto.setAccept(s, false);
-        }
-        for (State s : second.getAcceptList()) {
-            auto.setAccept(asso.get(s));
-        }
+    /**
+     * @return the regular expressions of the sequence, in order
+     */
+    List<RegExp> getParts() {
+        return parts;
+    }
 
-        return auto;
+    @Override
+    List<RegExp> getChildren() {
+        return parts;
+    }
 
+    @Override
+    public int hashCode() {
+        return hash;
     }
 }
@@ -0,0 +1,375 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.IntervalSet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class consists of static methods rewriting a {@link fr.menana.automaton.regexp.RegExp} tree into an equivalent smaller one
+ * before its automaton is built. <br>
+ * Sequences and unions are flattened, epsilons are dropped from sequences, duplicated alternatives are removed, single symbol
+ * alternatives are merged into one {@link fr.menana.automaton.regexp.RegExpClass}, common prefixes and suffixes of alternatives
+ * are factored out and nested repetitions are collapsed ((x*)* is x*, (x+)* is x*, ...). Capture groups are dropped.
+ */
+public final class RegExpSimplifier {
+
+    private RegExpSimplifier() {}
+
+    /**
+     * Returns a regular expression accepting the same language as the given one, with fewer nodes. <br>
+     * The tree is rewritten bottom-up with an explicit stack, so that deeply nested expressions do not overflow the call stack
+     * @param regexp a regular expression
+     * @return the simplified regular expression
+     */
+    public static RegExp simplify(RegExp regexp) {
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(regexp));
+        while (true) {
+            Frame frame = stack.peek();
+            if (frame.simplified.size() < frame.children.size()) {
+                stack.push(new Frame(frame.children.get(frame.simplified.size())));
+                continue;
+            }
+            stack.pop();
+            RegExp simplified = rebuild(frame.regexp, frame.simplified);
+            if (stack.isEmpty())
+                return simplified;
+            stack.peek().simplified.add(simplified);
+        }
+    }
+
+    /**
+     * Rewrites a node once its sub-expressions are simplified
+     * @param regexp the node
+     * @param children the simplified sub-expressions of the node
+     * @return the simplified node
+     */
+    private static RegExp rebuild(RegExp regexp, List<RegExp> children) {
+        if (regexp instanceof RegExpSequence)
+            return sequence(children);
+        if (regexp instanceof RegExpOr)
+            return union(children);
+        if (regexp instanceof RegExpKleeneStar)
+            return star(children.get(0));
+        if (regexp instanceof RegExpKleenePlus)
+            return plus(children.get(0));
+        if (regexp instanceof RegExpKleeneRange) {
+            RegExpKleeneRange range = (RegExpKleeneRange) regexp;
+            return range(children.get(0), range.min, range.max);
+        }
+        if (regexp instanceof RegExpGroup)
+            return children.get(0);
+        if (regexp instanceof RegExpClass)
+            return symbols(((RegExpClass) regexp).getValues());
+        return regexp;
+    }
+
+    /**
+     * Returns the sub-expressions of a node, those of the nested sequences of a sequence and of the nested unions of a union
+     * being inlined, so that a right nested chain is flattened once instead of being copied at each level
+     */
+    private static List<RegExp> childrenOf(RegExp regexp) {
+        if (!(regexp instanceof RegExpSequence) && !(regexp instanceof RegExpOr))
+            return regexp.getChildren();
+        List<RegExp> flat = new ArrayList<>();
+        Deque<Iterator<RegExp>> stack = new ArrayDeque<>();
+        stack.push(regexp.getChildren().iterator());
+        while (!stack.isEmpty()) {
+            Iterator<RegExp> it = stack.peek();
+            if (!it.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            RegExp child = it.next();
+            while (child instanceof RegExpGroup)
+                child = ((RegExpGroup) child).getInternal();
+            if (child.getClass() == regexp.getClass())
+                stack.push(child.getChildren().iterator());
+            else
+                flat.add(child);
+        }
+        return flat;
+    }
+
+    /**
+     * A node of the tree being simplified, its sub-expressions and those simplified so far
+     */
+    private static class Frame {
+        final RegExp regexp;
+        final List<RegExp> children;
+        final List<RegExp> simplified = new ArrayList<>();
+
+        Frame(RegExp regexp) {
+            this.regexp = regexp;
+            this.children = childrenOf(regexp);
+        }
+    }
+
+    /**
+     * Builds the sequence of simplified regular expressions, flattening nested sequences and dropping epsilons
+     */
+    private static RegExp sequence(List<RegExp> parts) {
+        List<RegExp> flat = new ArrayList<>(parts.size());
+        for (RegExp part : parts) {
+            if (part instanceof RegExpSequence)
+                flat.addAll(((RegExpSequence) part).getParts());
+            else if (!(part instanceof RegExpEpsilon))
+                flat.add(part);
+        }
+        if (flat.isEmpty())
+            return RegExp.blank;
+        return flat.size() == 1 ? flat.get(0) : new RegExpSequence(flat);
+    }
+
+    /**
+     * Builds the union of simplified regular expressions, flattening nested unions, merging single symbols, removing duplicates
+     * and factoring common prefixes and suffixes. <br>
+     * Factoring the alternatives sharing an element needs the union of their tails, which may share an element in turn: the
+     * pending unions are kept on an explicit stack, since common prefixes and suffixes can be arbitrarily long
+     */
+    private static RegExp union(List<RegExp> choices) {
+        Deque<Union> stack = new ArrayDeque<>();
+        stack.push(new Union(choices));
+        RegExp tail = null;
+        while (true) {
+            Union union = stack.peek();
+            if (tail != null) {
+                union.factor(tail);
+                tail = null;
+            }
+            List<RegExp> tails = union.advance();
+            if (tails != null) {
+                stack.push(new Union(tails));
+                continue;
+            }
+            stack.pop();
+            RegExp result = union.result();
+            if (stack.isEmpty())
+                return result;
+            tail = result;
+        }
+    }
+
+    /**
+     * A union being simplified: its alternatives are factored by their first element, then the result by their last element
+     */
+    private static class Union {
+
+        /**
+         * The alternatives to factor in the current pass
+         */
+        private List<RegExp> choices;
+
+        /**
+         * <code>true</code> while common prefixes are factored, <code>false</code> while common suffixes are
+         */
+        private boolean prefix = true;
+
+        /**
+         * The alternatives factored so far in the current pass
+         */
+        private List<RegExp> factored = new ArrayList<>();
+
+        /**
+         * The groups of alternatives sharing their first (or last) element, not factored yet
+         */
+        private Iterator<Map.Entry<RegExp,List<List<RegExp>>>> groups;
+
+        /**
+         * The elements shared by the group whose tails are being united
+         */
+        private RegExp shared;
+
+        Union(List<RegExp> choices) {
+            Set<RegExp> distinct = new LinkedHashSet<>();
+            for (RegExp choice : choices) {
+                if (choice instanceof RegExpOr)
+                    distinct.addAll(((RegExpOr) choice).getChoices());
+                else
+                    distinct.add(choice);
+            }
+            this.choices = new ArrayList<>(distinct);
+        }
+
+        /**
+         * Factors the groups of alternatives until one of them needs the union of its tails
+         * @return the tails to unite, or null once both passes are done
+         */
+        List<RegExp> advance() {
+            while (true) {
+                if (groups == null)
+                    groups = group().entrySet().iterator();
+                if (groups.hasNext()) {
+                    Map.Entry<RegExp,List<List<RegExp>>> entry = groups.next();
+                    List<List<RegExp>> group = entry.getValue();
+                    if (group.size() == 1) {
+                        factored.add(sequence(group.get(0)));
+                        continue;
+                    }
+                    int length = commonLength(group);
+                    List<RegExp> first = group.get(0);
+                    shared = sequence(prefix ? first.subList(0, length) : first.subList(first.size() - length, first.size()));
+                    List<RegExp> tails = new ArrayList<>(group.size());
+                    for (List<RegExp> parts : group)
+                        tails.add(sequence(prefix ? parts.subList(length, parts.size()) : parts.subList(0, parts.size() - length)));
+                    return tails;
+                }
+                if (!prefix)
+                    return null;
+                prefix = false;
+                choices = factored;
+                factored = new ArrayList<>();
+                groups = null;
+            }
+        }
+
+        /**
+         * Returns the length of the longest prefix (or suffix) shared by a group of alternatives, so that a long common prefix
+         * is factored at once instead of one element per nested union
+         */
+        private int commonLength(List<List<RegExp>> group) {
+            int min = Integer.MAX_VALUE;
+            for (List<RegExp> parts : group)
+                min = Math.min(min, parts.size());
+            List<RegExp> first = group.get(0);
+            int length = 1;
+            for (; length < min; ++length) {
+                RegExp element = first.get(prefix ? length : first.size() - 1 - length);
+                for (List<RegExp> parts : group) {
+                    if (!parts.get(prefix ? length : parts.size() - 1 - length).equals(element))
+                        return length;
+                }
+            }
+            return length;
+        }
+
+        /**
+         * Groups the alternatives by their first (or last) element, epsilon being kept apart
+         */
+        private Map<RegExp,List<List<RegExp>>> group() {
+            Map<RegExp,List<List<RegExp>>> groups = new LinkedHashMap<>();
+            for (RegExp choice : choices) {
+                if (choice instanceof RegExpEpsilon) {
+                    factored.add(choice);
+                    continue;
+                }
+                List<RegExp> parts = choice instanceof RegExpSequence ? ((RegExpSequence) choice).getParts() : Collections.singletonList(choice);
+                RegExp key = parts.get(prefix ? 0 : parts.size() - 1);
+                List<List<RegExp>> group = groups.get(key);
+                if (group == null)
+                    groups.put(key, group = new ArrayList<>());
+                group.add(parts);
+            }
+            return groups;
+        }
+
+        /**
+         * Adds the shared element of the current group followed (or preceded) by the union of its tails
+         * @param tail the union of the tails of the group
+         */
+        void factor(RegExp tail) {
+            factored.add(sequence(prefix ? Arrays.asList(shared, tail) : Arrays.asList(tail, shared)));
+        }
+
+        /**
+         * @return the factored union, its single symbol alternatives being merged into one
+         */
+        RegExp result() {
+            IntervalSet symbols = null;
+            Set<RegExp> distinct = new LinkedHashSet<>();
+            for (RegExp c : factored) {
+                IntervalSet values = symbolsOf(c);
+                if (values == null)
+                    distinct.add(c);
+                else
+                    symbols = symbols == null ? values : symbols.union(values);
+            }
+            List<RegExp> result = new ArrayList<>(distinct.size() + 1);
+            if (symbols != null)
+                result.add(symbols(symbols));
+            result.addAll(distinct);
+            return result.size() == 1 ? result.get(0) : new RegExpOr(result);
+        }
+    }
+
+    /**
+     * @return the values of a single symbol regular expression, or null if it is not one
+     */
+    private static IntervalSet symbolsOf(RegExp regexp) {
+        if (regexp instanceof RegExpInt)
+            return IntervalSet.fromIntArray(((RegExpInt) regexp).getSymbol());
+        if (regexp instanceof RegExpAny)
+            return IntervalSet.ALL;
+        if (regexp instanceof RegExpClass)
+            return ((RegExpClass) regexp).getValues();
+        return null;
+    }
+
+    /**
+     * @return the simplest regular expression accepting exactly one of the given values
+     */
+    private static RegExp symbols(IntervalSet values) {
+        if (values.equals(IntervalSet.ALL))
+            return new RegExpAny();
+        if (values.getMin() == values.getMax())
+            return new RegExpInt(values.getMin());
+        return new RegExpClass(values);
+    }
+
+    private static RegExp star(RegExp internal) {
+        if (internal instanceof RegExpEpsilon || internal instanceof RegExpKleeneStar)
+            return internal;
+        if (internal instanceof RegExpKleenePlus)
+            return new RegExpKleeneStar(((RegExpKleenePlus) internal).getBase());
+        if (internal instanceof RegExpKleeneRange && ((RegExpKleeneRange) internal).min <= 1)
+            return star(((RegExpKleeneRange) internal).internal);
+        if (internal instanceof RegExpOr && ((RegExpOr) internal).getChoices().contains(RegExp.blank)) {
+            // (|x)* is x*
+            List<RegExp> choices = new ArrayList<>(((RegExpOr) internal).getChoices());
+            choices.remove(RegExp.blank);
+            return star(choices.size() == 1 ? choices.get(0) : new RegExpOr(choices));
+        }
+        return new RegExpKleeneStar(internal);
+    }
+
+    private static RegExp plus(RegExp internal) {
+        if (internal instanceof RegExpEpsilon || internal instanceof RegExpKleeneStar || internal instanceof RegExpKleenePlus)
+            return internal;
+        return new RegExpKleenePlus(internal);
+    }
+
+    private static RegExp range(RegExp internal, int min, int max) {
+        if (internal instanceof RegExpEpsilon || max == 0)
+            return RegExp.blank;
+        if (min == 1 && max == 1)
+            return internal;
+        return new RegExpKleeneRange(internal, min, max);
+    }
+}
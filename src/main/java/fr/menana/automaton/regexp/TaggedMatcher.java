@@ -0,0 +1,302 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.IntervalSet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A matcher reporting the offsets of the capture groups of a regular expression. <br>
+ * The regular expression is compiled into a tagged NFA: a program whose save instructions record the position of each group
+ * boundary. The program is run by a Pike virtual machine, which follows all the threads of the NFA in lockstep, keeping at most
+ * one thread per instruction, so that a word of length n is matched in a single O(n.m) pass for a program of m instructions. When
+ * several runs accept the word, the one preferred by a backtracking matcher is reported: alternatives are tried from left to
+ * right and repetitions are greedy.
+ */
+public class TaggedMatcher {
+
+    private static final int SYMBOL = 0;
+    private static final int SPLIT = 1;
+    private static final int JUMP = 2;
+    private static final int SAVE = 3;
+    private static final int MATCH = 4;
+
+    /**
+     * The instructions of the program and their two arguments: the preferred and the other successor of a split, the target of
+     * a jump, the slot of a save
+     */
+    private int[] ops = new int[16];
+    private int[] args1 = new int[16];
+    private int[] args2 = new int[16];
+
+    /**
+     * The values read by the symbol instructions
+     */
+    private IntervalSet[] sets = new IntervalSet[16];
+
+    /**
+     * The number of instructions
+     */
+    private int size;
+
+    /**
+     * The number of groups, including the whole word as group 0
+     */
+    private int nbGroups = 1;
+
+    /**
+     * Constructs a matcher of the given regular expression, whose groups are numbered by {@link RegExpParser}
+     * @param regexp a regular expression as a string
+     */
+    public TaggedMatcher(String regexp) {
+        this(RegExpParser.toRegExp(regexp));
+    }
+
+    /**
+     * Constructs a matcher of the given regular expression
+     * @param regexp a regular expression
+     */
+    public TaggedMatcher(RegExp regexp) {
+        emit(SAVE, 0, 0, null);
+        compile(regexp);
+        emit(SAVE, 1, 0, null);
+        emit(MATCH, 0, 0, null);
+    }
+
+    /**
+     * @return the number of groups, including the whole word as group 0
+     */
+    public int getNbGroups() {
+        return nbGroups;
+    }
+
+    /**
+     * Matches a whole word and locates its groups
+     * @param word a word as an int array
+     * @return the offsets of the groups, or null if the word is not accepted
+     */
+    public Match match(int... word) {
+        Threads current = new Threads(size);
+        Threads next = new Threads(size);
+        int[] marks = new int[size];
+        int[] captures = new int[2 * nbGroups];
+        Arrays.fill(captures, -1);
+        int generation = 1;
+        add(current, 0, captures, 0, marks, generation);
+        for (int pos = 0; pos < word.length; ++pos) {
+            ++generation;
+            next.size = 0;
+            for (int t = 0; t < current.size; ++t) {
+                int pc = current.pcs[t];
+                if (ops[pc] == SYMBOL && sets[pc].contains(word[pos]))
+                    add(next, pc + 1, current.captures[t], pos + 1, marks, generation);
+            }
+            Threads tmp = current;
+            current = next;
+            next = tmp;
+            if (current.size == 0)
+                return null;
+        }
+        for (int t = 0; t < current.size; ++t) {
+            if (ops[current.pcs[t]] == MATCH)
+                return new Match(current.captures[t]);
+        }
+        return null;
+    }
+
+    /**
+     * Adds a thread and every thread reachable from it without reading a symbol, in order of preference
+     */
+    private void add(Threads list, int pc, int[] captures, int pos, int[] marks, int generation) {
+        int[] pcs = new int[16];
+        int[][] stack = new int[16][];
+        int top = 0;
+        pcs[top] = pc;
+        stack[top++] = captures;
+        while (top > 0) {
+            pc = pcs[--top];
+            captures = stack[top];
+            if (marks[pc] == generation)
+                continue;
+            marks[pc] = generation;
+            if (top + 2 > pcs.length) {
+                pcs = Arrays.copyOf(pcs, 2 * pcs.length);
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            switch (ops[pc]) {
+                case JUMP:
+                    pcs[top] = args1[pc];
+                    stack[top++] = captures;
+                    break;
+                case SPLIT:
+                    pcs[top] = args2[pc];
+                    stack[top++] = captures;
+                    pcs[top] = args1[pc];
+                    stack[top++] = captures;
+                    break;
+                case SAVE:
+                    int[] saved = captures.clone();
+                    saved[args1[pc]] = pos;
+                    pcs[top] = pc + 1;
+                    stack[top++] = saved;
+                    break;
+                default:
+                    list.pcs[list.size] = pc;
+                    list.captures[list.size++] = captures;
+            }
+        }
+    }
+
+    /**
+     * Appends the instructions of a regular expression to the program
+     */
+    private void compile(RegExp regexp) {
+        if (regexp instanceof RegExpInt)
+            emit(SYMBOL, 0, 0, IntervalSet.fromIntArray(((RegExpInt) regexp).getSymbol()).intern());
+        else if (regexp instanceof RegExpAny)
+            emit(SYMBOL, 0, 0, IntervalSet.ALL);
+        else if (regexp instanceof RegExpClass)
+            emit(SYMBOL, 0, 0, ((RegExpClass) regexp).getValues());
+        else if (regexp instanceof RegExpSequence) {
+            for (RegExp part : ((RegExpSequence) regexp).getParts())
+                compile(part);
+        }
+        else if (regexp instanceof RegExpOr) {
+            List<RegExp> choices = ((RegExpOr) regexp).getChoices();
+            int[] jumps = new int[choices.size() - 1];
+            for (int i = 0; i < choices.size() - 1; ++i) {
+                int split = emit(SPLIT, size + 1, 0, null);
+                compile(choices.get(i));
+                jumps[i] = emit(JUMP, 0, 0, null);
+                args2[split] = size;
+            }
+            compile(choices.get(choices.size() - 1));
+            for (int jump : jumps)
+                args1[jump] = size;
+        }
+        else if (regexp instanceof RegExpKleeneStar) {
+            int split = emit(SPLIT, size + 1, 0, null);
+            compile(((RegExpKleeneStar) regexp).getInternal());
+            emit(JUMP, split, 0, null);
+            args2[split] = size;
+        }
+        else if (regexp instanceof RegExpKleenePlus) {
+            int start = size;
+            compile(((RegExpKleenePlus) regexp).getBase());
+            emit(SPLIT, start, size + 1, null);
+        }
+        else if (regexp instanceof RegExpKleeneRange) {
+            RegExpKleeneRange range = (RegExpKleeneRange) regexp;
+            for (int i = 0; i < range.min; ++i)
+                compile(range.internal);
+            int[] splits = new int[Math.max(0, range.max - range.min)];
+            for (int i = 0; i < splits.length; ++i) {
+                splits[i] = emit(SPLIT, size + 1, 0, null);
+                compile(range.internal);
+            }
+            for (int split : splits)
+                args2[split] = size;
+        }
+        else if (regexp instanceof RegExpGroup) {
+            RegExpGroup group = (RegExpGroup) regexp;
+            nbGroups = Math.max(nbGroups, group.getIndex() + 1);
+            emit(SAVE, 2 * group.getIndex(), 0, null);
+            compile(group.getInternal());
+            emit(SAVE, 2 * group.getIndex() + 1, 0, null);
+        }
+        else if (!(regexp instanceof RegExpEpsilon))
+            throw new IllegalArgumentException("Unsupported regular expression: " + regexp.getClass().getSimpleName());
+    }
+
+    /**
+     * Appends an instruction to the program
+     * @return the position of the instruction
+     */
+    private int emit(int op, int arg1, int arg2, IntervalSet set) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, 2 * size);
+            args1 = Arrays.copyOf(args1, 2 * size);
+            args2 = Arrays.copyOf(args2, 2 * size);
+            sets = Arrays.copyOf(sets, 2 * size);
+        }
+        ops[size] = op;
+        args1[size] = arg1;
+        args2[size] = arg2;
+        sets[size] = set;
+        return size++;
+    }
+
+    /**
+     * The threads of the virtual machine at a position of the word, in order of preference
+     */
+    private static class Threads {
+        final int[] pcs;
+        final int[][] captures;
+        int size;
+
+        Threads(int capacity) {
+            pcs = new int[capacity];
+            captures = new int[capacity][];
+        }
+    }
+
+    /**
+     * The offsets of the groups of a matched word, an offset being -1 if the group did not take part in the match
+     */
+    public static class Match {
+
+        private final int[] offsets;
+
+        Match(int[] offsets) {
+            this.offsets = offsets;
+        }
+
+        /**
+         * @return the number of groups, including the whole word as group 0
+         */
+        public int getNbGroups() {
+            return offsets.length / 2;
+        }
+
+        /**
+         * @param group the number of a group
+         * @return the offset of the first value of the group in the word, or -1 if the group did not match
+         */
+        public int getStart(int group) {
+            return offsets[2 * group];
+        }
+
+        /**
+         * @param group the number of a group
+         * @return the offset following the last value of the group in the word, or -1 if the group did not match
+         */
+        public int getEnd(int group) {
+            return offsets[2 * group + 1];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder("Match{");
+            for (int g = 0; g < getNbGroups(); ++g)
+                b.append(g == 0 ? "" : ", ").append(g).append("=[").append(getStart(g)).append(',').append(getEnd(g)).append(')');
+            return b.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Automaton
+ * Copyright (c) 2015, Julien Menana, All rights reserved.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3.0 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library.
+ */
+package fr.menana.automaton.regexp;
+
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.AutomatonView;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.IntervalSet;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Builds the non-deterministic automaton of a {@link fr.menana.automaton.regexp.RegExp} tree with Thompson's construction. <br>
+ * Each node becomes a fragment with one entry and one exit state, built once the fragments of its sub-expressions are, in a
+ * single {@link fr.menana.automaton.AutomatonBuilder}. The tree is walked in post-order with an explicit stack, so that the
+ * depth of the expression is not bounded by the call stack, and fragments are connected by epsilon edges instead of being
+ * copied into the automaton of their parent.
+ */
+final class ThompsonConstruction {
+
+    private ThompsonConstruction() {}
+
+    /**
+     * Returns the non-deterministic automaton of a regular expression
+     * @param regexp a regular expression
+     * @return a new automaton with epsilon transitions
+     */
+    static Automaton toNFA(RegExp regexp) {
+        AutomatonBuilder builder = new AutomatonBuilder();
+        // the entry and exit states of the fragments built and not yet connected to their parent
+        int[] fragments = new int[16];
+        int nbFragments = 0;
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(regexp));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.next < frame.children.size()) {
+                stack.push(new Frame(frame.children.get(frame.next++)));
+                continue;
+            }
+            stack.pop();
+            int nb = frame.children.size();
+            nbFragments -= 2 * nb;
+            int[] fragment = build(builder, frame.regexp, fragments, nbFragments, nb);
+            if (nbFragments + 2 > fragments.length)
+                fragments = Arrays.copyOf(fragments, 2 * fragments.length);
+            fragments[nbFragments++] = fragment[0];
+            fragments[nbFragments++] = fragment[1];
+        }
+        builder.setInitial(fragments[0]);
+        builder.setAccept(fragments[1]);
+        return builder.build();
+    }
+
+    /**
+     * Builds the fragment of a node from the fragments of its sub-expressions
+     * @param builder the automaton being built
+     * @param regexp the node
+     * @param fragments the entry and exit states of the fragments of the sub-expressions, from the given offset
+     * @param offset the position of the entry state of the first sub-expression
+     * @param nb the number of sub-expressions
+     * @return the entry and exit states of the fragment of the node
+     */
+    private static int[] build(AutomatonBuilder builder, RegExp regexp, int[] fragments, int offset, int nb) {
+        if (regexp instanceof RegExpGroup)
+            return new int[]{fragments[offset], fragments[offset + 1]};
+        if (regexp instanceof RegExpSequence) {
+            for (int k = 1; k < nb; ++k)
+                builder.addEpsilonEdge(fragments[offset + 2 * k - 1], fragments[offset + 2 * k]);
+            return new int[]{fragments[offset], fragments[offset + 2 * nb - 1]};
+        }
+        int start = builder.addState();
+        int end = builder.addState();
+        if (regexp instanceof RegExpOr) {
+            for (int k = 0; k < nb; ++k) {
+                builder.addEpsilonEdge(start, fragments[offset + 2 * k]);
+                builder.addEpsilonEdge(fragments[offset + 2 * k + 1], end);
+            }
+        }
+        else if (regexp instanceof RegExpKleeneStar || regexp instanceof RegExpKleenePlus) {
+            builder.addEpsilonEdge(start, fragments[offset]);
+            builder.addEpsilonEdge(fragments[offset + 1], fragments[offset]);
+            builder.addEpsilonEdge(fragments[offset + 1], end);
+            if (regexp instanceof RegExpKleeneStar)
+                builder.addEpsilonEdge(start, end);
+        }
+        else if (regexp instanceof RegExpKleeneRange) {
+            // the sub-expression was built once per allowed repetition
+            int min = ((RegExpKleeneRange) regexp).min;
+            if (min == 0)
+                builder.addEpsilonEdge(start, end);
+            if (nb > 0)
+                builder.addEpsilonEdge(start, fragments[offset]);
+            for (int k = 0; k < nb; ++k) {
+                if (k + 1 < nb)
+                    builder.addEpsilonEdge(fragments[offset + 2 * k + 1], fragments[offset + 2 * k + 2]);
+                if (k + 1 >= min)
+                    builder.addEpsilonEdge(fragments[offset + 2 * k + 1], end);
+            }
+        }
+        else if (regexp instanceof RegExpInt)
+            builder.addEdge(start, end, ((RegExpInt) regexp).getSymbol());
+        else if (regexp instanceof RegExpAny)
+            builder.addEdge(start, end, IntervalSet.ALL);
+        else if (regexp instanceof RegExpClass)
+            builder.addEdge(start, end, ((RegExpClass) regexp).getValues());
+        else if (regexp instanceof RegExpEpsilon)
+            builder.addEpsilonEdge(start, end);
+        else
+            copy(builder, regexp.toNFA().toCompact(), start, end);
+        return new int[]{start, end};
+    }
+
+    /**
+     * Copies the automaton of a leaf of an unknown type between the entry and exit states of its fragment
+     */
+    private static void copy(AutomatonBuilder builder, CompactAutomaton leaf, int start, int end) {
+        if (leaf.getInitialIndex() < 0)
+            return;
+        int first = builder.addStates(leaf.getNbStates());
+        builder.addEpsilonEdge(start, first + leaf.getInitialIndex());
+        for (int s = 0; s < leaf.getNbStates(); ++s) {
+            for (int e = leaf.getEdgeStart(s); e < leaf.getEdgeEnd(s); ++e) {
+                int label = leaf.getLabelId(e);
+                if (label == AutomatonView.EPSILON)
+                    builder.addEpsilonEdge(first + s, first + leaf.getTarget(e));
+                else
+                    builder.addEdge(first + s, first + leaf.getTarget(e), leaf.getLabel(label));
+            }
+            if (leaf.isAccept(s))
+                builder.addEpsilonEdge(first + s, end);
+        }
+    }
+
+    /**
+     * A node of the tree and the number of its sub-expressions already built
+     */
+    private static class Frame {
+        final RegExp regexp;
+        final List<RegExp> children;
+        int next;
+
+        Frame(RegExp regexp) {
+            this.regexp = regexp;
+            if (regexp instanceof RegExpKleeneRange) {
+                RegExpKleeneRange range = (RegExpKleeneRange) regexp;
+                this.children = Collections.nCopies(Math.max(0, range.max), range.internal);
+            }
+            else
+                this.children = regexp.getChildren();
+        }
+    }
+}
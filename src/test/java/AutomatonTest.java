@@ -0,0 +1,83 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.Interval;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.Operation;
+import fr.menana.automaton.State;
+import fr.menana.automaton.Transition;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the predecessor index of the object automaton against the transitions
+ */
+public class AutomatonTest {
+
+    private static Set<State> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static void assertPredecessors(Automaton automaton) {
+        Map<State, Set<State>> expected = new IdentityHashMap<>();
+        for (Transition t : automaton.getAllTransitions())
+            expected.computeIfAbsent(t.dest, s -> identitySet()).add(t.orig);
+        for (State s : automaton.getStates()) {
+            Set<State> actual = identitySet();
+            actual.addAll(automaton.getPredecessors(s));
+            assertEquals(expected.getOrDefault(s, Collections.emptySet()), actual);
+        }
+    }
+
+    @Test
+    public void predecessorIndexFollowsTransitions() {
+        Automaton nfa = Automaton.nfaFromString("(0|1)*1(0|1)");
+        State init = nfa.getInitial();
+        nfa.getPredecessors(init);
+        assertPredecessors(nfa);
+
+        State last = nfa.getStates().get(nfa.getNbStates() - 1);
+        nfa.addTransition(last, init, 5);
+        State extra = nfa.addState();
+        nfa.addTransition(extra, last, new Interval(6, 8));
+        nfa.addTransition(init, extra, IntervalSet.fromIntArray(9));
+        assertPredecessors(nfa);
+
+        nfa.addEpsilonTransition(extra, init);
+        nfa.addEpsilonTransition(last, extra);
+        assertPredecessors(nfa);
+
+        State dead = nfa.addState();
+        nfa.addTransition(init, dead, 7);
+        nfa.addTransition(dead, dead, 7);
+        assertPredecessors(nfa);
+        nfa.removeDeadStates();
+        assertFalse(nfa.getStates().contains(dead));
+        assertPredecessors(nfa);
+
+        State unreachable = nfa.addState();
+        nfa.addTransition(unreachable, init, 3);
+        nfa.addEpsilonTransition(unreachable, last);
+        assertPredecessors(nfa);
+        nfa.reIndex();
+        assertFalse(nfa.getStates().contains(unreachable));
+        assertPredecessors(nfa);
+    }
+
+    @Test
+    public void revertsEpsilonTransitions() {
+        Automaton nfa = Automaton.nfaFromString("0(1|2)*3");
+        assertFalse(nfa.isDeterministic());
+        CompactAutomaton reverted = Operation.revert(nfa).toCompact();
+        assertTrue(reverted.run(3, 0));
+        assertTrue(reverted.run(3, 2, 1, 1, 0));
+        assertFalse(reverted.run(0, 1, 3));
+        assertFalse(reverted.run(3, 1));
+        assertTrue(Operation.revert(nfa).determinize().run(3, 1, 2, 0));
+    }
+}
@@ -0,0 +1,292 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.AutomatonView;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.CompiledMatcher;
+import fr.menana.automaton.MatcherGenerator;
+import fr.menana.automaton.OffHeapAutomaton;
+import fr.menana.automaton.Operation;
+import fr.menana.automaton.State;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the array based representations of an automaton accept the same words as the object one
+ */
+public class CompactAutomatonTest {
+
+    private static final String[] REGEXPS = {
+            "(0|1)*1(0|1){3}",
+            "0*(10*1)*0*",
+            "(01|10)+<12>?",
+            "(0|<-3>)*(11|.)",
+    };
+
+    static int[] randomWord(Random r) {
+        int[] word = new int[r.nextInt(12)];
+        for (int i = 0; i < word.length; ++i)
+            word[i] = r.nextInt(10) == 0 ? r.nextInt(20) - 5 : r.nextInt(2);
+        return word;
+    }
+
+    static void assertSameLanguage(Automaton expected, AutomatonView view) {
+        Random r = new Random(42);
+        for (int i = 0; i < 2000; ++i) {
+            int[] word = randomWord(r);
+            assertEquals(expected.run(word), view.run(word));
+        }
+    }
+
+    static void assertSameLanguage(AutomatonView expected, AutomatonView view) {
+        Random r = new Random(42);
+        for (int i = 0; i < 2000; ++i) {
+            int[] word = randomWord(r);
+            assertEquals(expected.run(word), view.run(word));
+        }
+    }
+
+    @Test
+    public void compactRunsLikeAutomaton() {
+        for (String regexp : REGEXPS) {
+            Automaton nfa = Automaton.nfaFromString(regexp);
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            assertSameLanguage(dfa, nfa.toCompact());
+            assertSameLanguage(dfa, dfa.toCompact());
+            assertTrue(dfa.toCompact().isDeterministic());
+        }
+    }
+
+    @Test
+    public void compactRoundTrip() {
+        for (String regexp : REGEXPS) {
+            Automaton nfa = Automaton.nfaFromString(regexp);
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            CompactAutomaton compact = nfa.toCompact();
+            Automaton back = compact.toAutomaton();
+            assertEquals(nfa.getNbStates(), back.getNbStates());
+            assertSameLanguage(dfa, back.toCompact());
+            assertSameLanguage(dfa, Operation.minimize(compact));
+            assertSameLanguage(dfa.toCompact().toAutomaton(), dfa.toCompact());
+        }
+    }
+
+    @Test
+    public void viewOperationsMatchAutomatonOperations() {
+        for (int i = 0; i < REGEXPS.length; ++i) {
+            Automaton nfa = Automaton.nfaFromString(REGEXPS[i]);
+            Automaton dfa = Automaton.dfaFromString(REGEXPS[i]);
+            Automaton other = Automaton.nfaFromString(REGEXPS[(i + 1) % REGEXPS.length]);
+            CompactAutomaton compact = nfa.toCompact();
+
+            CompactAutomaton determinized = Operation.determinize(compact);
+            assertTrue(determinized.isDeterministic());
+            assertSameLanguage(dfa, determinized);
+            CompactAutomaton hopcroft = Operation.minimize(compact, Operation.MINIMIZATION_ALGO.Hopcroft);
+            CompactAutomaton brzozowski = Operation.minimize(compact, Operation.MINIMIZATION_ALGO.Brzozowski);
+            assertEquals(dfa.getNbStates(), hopcroft.getNbStates());
+            assertEquals(dfa.getNbStates(), brzozowski.getNbStates());
+            assertSameLanguage(dfa, hopcroft);
+            assertSameLanguage(dfa, brzozowski);
+
+            CompactAutomaton reverted = Operation.revert(compact);
+            CompactAutomaton complement = Operation.complement(compact);
+            Random r = new Random(42);
+            for (int w = 0; w < 2000; ++w) {
+                int[] word = randomWord(r);
+                int[] mirror = new int[word.length];
+                for (int k = 0; k < word.length; ++k)
+                    mirror[k] = word[word.length - 1 - k];
+                assertEquals(dfa.run(word), reverted.run(mirror));
+                assertEquals(!dfa.run(word), complement.run(word));
+            }
+            assertSameLanguage(dfa, Operation.revert(reverted));
+            assertSameLanguage(dfa, Operation.complement(complement));
+
+            Automaton otherDfa = other.determinize();
+            assertSameLanguage(Operation.union(dfa, otherDfa), Operation.union(compact, other.toCompact()));
+            assertSameLanguage(Operation.concatenate(dfa, otherDfa), Operation.concatenate(compact, other.toCompact()));
+            assertSameLanguage(Operation.union(dfa, otherDfa), Operation.union(dfa.toCompact(), Operation.determinize(other.toCompact())));
+            assertSameLanguage(Operation.concatenate(dfa, otherDfa), Operation.concatenate(dfa.toCompact(), otherDfa.toCompact()));
+        }
+    }
+
+    @Test
+    public void offHeapRunsLikeAutomaton() {
+        for (String regexp : REGEXPS) {
+            Automaton nfa = Automaton.nfaFromString(regexp);
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            CompactAutomaton compact = nfa.toCompact();
+            OffHeapAutomaton offHeap = OffHeapAutomaton.copyOf(compact);
+            assertEquals(nfa.getNbStates(), offHeap.getNbStates());
+            for (int l = 0; l < offHeap.getNbLabels(); ++l) {
+                assertSame(compact.getLabel(l), offHeap.getLabel(l));
+                assertSame(offHeap.getLabel(l), offHeap.getLabel(l));
+            }
+            assertSameLanguage(dfa, offHeap);
+            assertSameLanguage(dfa, OffHeapAutomaton.copyOf(dfa.toCompact()));
+            assertSameLanguage(dfa, offHeap.toAutomaton().toCompact());
+        }
+    }
+
+    @Test
+    public void builderMatchesAddTransition() {
+        Random r = new Random(7);
+        for (int k = 0; k < 50; ++k) {
+            int nbStates = 1 + r.nextInt(8);
+            Automaton auto = new Automaton();
+            AutomatonBuilder builder = new AutomatonBuilder();
+            builder.addStates(nbStates);
+            for (int s = 0; s < nbStates; ++s) {
+                auto.addState();
+                boolean accept = r.nextBoolean();
+                auto.setAccept(auto.getStates().get(s), accept);
+                builder.setAccept(s, accept);
+            }
+            auto.setInitial(auto.getStates().get(0));
+            builder.setInitial(0);
+            int nbEdges = r.nextInt(4 * nbStates);
+            for (int e = 0; e < nbEdges; ++e) {
+                int orig = r.nextInt(nbStates);
+                int dest = r.nextInt(nbStates);
+                State o = auto.getStates().get(orig);
+                State d = auto.getStates().get(dest);
+                if (r.nextInt(10) == 0) {
+                    auto.addEpsilonTransition(o, d);
+                    builder.addEpsilonEdge(orig, dest);
+                }
+                else {
+                    int min = r.nextInt(6) - 1;
+                    int max = min + r.nextInt(2);
+                    auto.addTransition(o, d, min, max);
+                    builder.addEdge(orig, dest, min, max);
+                }
+            }
+            CompactAutomaton compact = builder.buildCompact();
+            // addTransition also flags repeated values towards the same state as non deterministic
+            assertTrue(!auto.isDeterministic() || compact.isDeterministic());
+            assertSameLanguage(auto.toCompact(), compact);
+            assertSameLanguage(auto.toCompact(), builder.build().toCompact());
+            assertSameLanguage(auto.toCompact(), Operation.minimize(compact));
+        }
+    }
+
+    @Test
+    public void mappedFileRunsLikeAutomaton() throws IOException {
+        for (String regexp : REGEXPS) {
+            Automaton nfa = Automaton.nfaFromString(regexp);
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            File file = File.createTempFile("automaton", ".bin");
+            file.deleteOnExit();
+            OffHeapAutomaton.write(nfa.toCompact(), file.toPath());
+            OffHeapAutomaton mapped = OffHeapAutomaton.map(file.toPath());
+            assertEquals(nfa.getNbStates(), mapped.getNbStates());
+            assertEquals(nfa.isDeterministic(), mapped.isDeterministic());
+            assertSameLanguage(dfa, mapped);
+            File copy = File.createTempFile("automaton", ".bin");
+            copy.deleteOnExit();
+            OffHeapAutomaton.write(mapped, copy.toPath());
+            assertSameLanguage(dfa, OffHeapAutomaton.map(copy.toPath()));
+        }
+    }
+
+    private static void assertCorruptedHeader(CompactAutomaton compact, int field, int value) throws IOException {
+        File file = File.createTempFile("automaton", ".bin");
+        file.deleteOnExit();
+        OffHeapAutomaton.write(compact, file.toPath());
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value), 4 * field);
+        }
+        try {
+            OffHeapAutomaton.map(file.toPath());
+            fail();
+        } catch (IOException ignored) {}
+    }
+
+    @Test
+    public void mappedFileChecksHeader() throws IOException {
+        CompactAutomaton compact = Automaton.nfaFromString(REGEXPS[2]).toCompact();
+        int nbStates = compact.getNbStates();
+        // the fields following the magic number, the version and the flags
+        assertCorruptedHeader(compact, 3, -1);
+        assertCorruptedHeader(compact, 3, nbStates - 1);
+        assertCorruptedHeader(compact, 3, Integer.MAX_VALUE);
+        assertCorruptedHeader(compact, 4, nbStates);
+        assertCorruptedHeader(compact, 4, -2);
+        assertCorruptedHeader(compact, 5, compact.getNbEdges() + 1);
+        assertCorruptedHeader(compact, 5, Integer.MIN_VALUE);
+        assertCorruptedHeader(compact, 6, compact.getNbLabels() - 1);
+        assertCorruptedHeader(compact, 7, 0);
+        assertCorruptedHeader(compact, 7, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void generatedMatcherRunsLikeAutomaton() {
+        for (String regexp : REGEXPS) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            CompiledMatcher matcher = MatcherGenerator.generate(Automaton.nfaFromString(regexp));
+            Random r = new Random(42);
+            for (int i = 0; i < 2000; ++i) {
+                int[] word = randomWord(r);
+                assertEquals(dfa.run(word), matcher.matches(word));
+            }
+            assertEquals(dfa.run(), matcher.matches());
+            assertEquals(dfa.run(Integer.MIN_VALUE), matcher.matches(Integer.MIN_VALUE));
+            assertEquals(dfa.run(1, Integer.MAX_VALUE), matcher.matches(1, Integer.MAX_VALUE));
+        }
+        CompiledMatcher wide = MatcherGenerator.generate(Automaton.dfaFromString("<100000>(<-70000>|<200>|7)*"));
+        assertTrue(wide.matches(100000, -70000, 200, 7));
+        assertFalse(wide.matches(100000, 8));
+    }
+
+    @Test
+    public void frozenAutomatonIsSharedByThreads() throws Exception {
+        Automaton dfa = Automaton.dfaFromString(REGEXPS[0], Operation.MINIMIZATION_ALGO.Brzozowski);
+        assertEquals(Automaton.dfaFromString(REGEXPS[0], Operation.MINIMIZATION_ALGO.Hopcroft).getNbStates(), dfa.getNbStates());
+        CompactAutomaton frozen = dfa.freeze();
+        Automaton copy = dfa.clone();
+        dfa.setAccept(dfa.getInitial());
+        assertFalse(frozen.run());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; ++t) {
+                final int seed = t;
+                results.add(executor.submit((Callable<Boolean>) () -> {
+                    Random r = new Random(seed);
+                    for (int i = 0; i < 2000; ++i) {
+                        int[] word = randomWord(r);
+                        if (frozen.run(word) != copy.run(word))
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results)
+                assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        Automaton other = Automaton.dfaFromString("0*");
+        assertSameLanguage(copy.union(other), copy.union(other, Operation.MINIMIZATION_ALGO.Brzozowski).toCompact());
+        assertSameLanguage(copy.concatenate(other), copy.concatenate(other, Operation.MINIMIZATION_ALGO.Brzozowski).toCompact());
+    }
+}
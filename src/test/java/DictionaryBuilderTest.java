@@ -0,0 +1,96 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.DictionaryBuilder;
+import fr.menana.automaton.Operation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the dictionary builder produces the minimal automaton of its words, whatever their order
+ */
+public class DictionaryBuilderTest {
+
+    private static List<int[]> randomWords(Random r, int nb) {
+        List<int[]> words = new ArrayList<>();
+        for (int i = 0; i < nb; ++i) {
+            int[] word = new int[r.nextInt(7)];
+            for (int j = 0; j < word.length; ++j)
+                word[j] = r.nextInt(4) - 1;
+            words.add(word);
+        }
+        return words;
+    }
+
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length && i < b.length; ++i) {
+            if (a[i] != b[i])
+                return Integer.compare(a[i], b[i]);
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private static List<Integer> asList(int[] word) {
+        List<Integer> l = new ArrayList<>();
+        for (int v : word)
+            l.add(v);
+        return l;
+    }
+
+    private static void assertRecognizes(List<int[]> words, CompactAutomaton dict, Random r) {
+        Set<List<Integer>> set = new HashSet<>();
+        for (int[] w : words) {
+            set.add(asList(w));
+            assertTrue(dict.run(w));
+        }
+        for (int[] w : randomWords(r, 2000))
+            assertEquals(set.contains(asList(w)), dict.run(w));
+        assertEquals(Operation.minimize(dict).getNbStates(), dict.getNbStates());
+        assertTrue(dict.isDeterministic());
+    }
+
+    @Test
+    public void sortedAndUnsortedWordsGiveTheMinimalAutomaton() {
+        Random r = new Random(11);
+        for (int k = 0; k < 30; ++k) {
+            List<int[]> words = randomWords(r, 1 + r.nextInt(60));
+            DictionaryBuilder unsorted = new DictionaryBuilder();
+            for (int[] w : words)
+                unsorted.add(w);
+            CompactAutomaton a = unsorted.buildCompact();
+            assertRecognizes(words, a, r);
+
+            List<int[]> sortedWords = new ArrayList<>(words);
+            sortedWords.sort(DictionaryBuilderTest::compare);
+            DictionaryBuilder sorted = new DictionaryBuilder();
+            for (int[] w : sortedWords)
+                sorted.add(w);
+            CompactAutomaton b = sorted.buildCompact();
+            assertRecognizes(words, b, r);
+            assertEquals(a.getNbStates(), b.getNbStates());
+
+            // words added after a build switch to the unsorted algorithm
+            List<int[]> more = randomWords(r, 10);
+            for (int[] w : more)
+                sorted.add(w);
+            more.addAll(words);
+            assertRecognizes(more, sorted.buildCompact(), r);
+        }
+    }
+
+    @Test
+    public void emptyDictionary() {
+        DictionaryBuilder builder = new DictionaryBuilder();
+        assertFalse(builder.build().run());
+        builder.add();
+        Automaton auto = builder.build();
+        assertTrue(auto.run());
+        assertFalse(auto.run(0));
+    }
+}
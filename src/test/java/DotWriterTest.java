@@ -0,0 +1,86 @@
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.DotWriter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the dot output of each option of the writer on a small automaton
+ */
+public class DotWriterTest {
+
+    private static final String HEADER = "digraph Automaton {\n rankdir = LR;\n";
+
+    private static final String STATE_0 = " 0 [shape=circle];\n initial [shape=plaintext,label=\"\"];\n initial -> 0\n";
+
+    /**
+     * 0 -(0,2..3,eps)-> 1 -1-> 2 -1-> 3 -5-> 0, 0 being initial and 3 accepting
+     */
+    private static CompactAutomaton cycle() {
+        AutomatonBuilder builder = new AutomatonBuilder();
+        builder.addStates(4);
+        builder.setInitial(0);
+        builder.setAccept(3);
+        builder.addEdge(0, 1, 0);
+        builder.addEdge(0, 1, 2, 3);
+        builder.addEpsilonEdge(0, 1);
+        builder.addEdge(1, 2, 1);
+        builder.addEdge(2, 3, 1);
+        builder.addEdge(3, 0, 5);
+        return builder.buildCompact();
+    }
+
+    private static String write(DotWriter writer) throws IOException {
+        StringWriter out = new StringWriter();
+        writer.write(cycle(), out);
+        return out.toString();
+    }
+
+    @Test
+    public void writesEachOption() throws IOException {
+        assertEquals(HEADER + STATE_0
+                + " 0 -> 1 [label=\"{[|0|],[|2,3|],eps}\"]\n"
+                + " 1 [shape=circle];\n 1 -> 2 [label=\"{[|1|]}\"]\n"
+                + " 2 [shape=circle];\n 2 -> 3 [label=\"{[|1|]}\"]\n"
+                + " 3 [shape=doublecircle];\n 3 -> 0 [label=\"{[|5|]}\"]\n}\n", write(new DotWriter()));
+
+        assertEquals(HEADER + STATE_0
+                + " 0 -> 1 [label=\"{[|0|]}\"]\n 0 -> 1 [label=\"{[|2,3|]}\"]\n 0 -> 1 [label=\"{eps}\"]\n"
+                + " 1 [shape=circle];\n 1 -> 2 [label=\"{[|1|]}\"]\n"
+                + " 2 [shape=circle];\n 2 -> 3 [label=\"{[|1|]}\"]\n"
+                + " 3 [shape=doublecircle];\n 3 -> 0 [label=\"{[|5|]}\"]\n}\n", write(new DotWriter().mergeParallelEdges(false)));
+
+        assertEquals(HEADER
+                + " 2 [shape=circle];\n 2 -> 3 [label=\"{[|1|]}\"]\n"
+                + " 3 [shape=doublecircle];\n 3 -> 0 [label=\"{[|5|]}\"]\n"
+                + STATE_0 + " 0 -> 1 [label=\"{[|0|],[|2,3|],eps}\"]\n"
+                + " 1 [shape=circle];\n 1 -> 2 [label=\"{[|1|]}\"]\n}\n", write(new DotWriter().fromStates(2)));
+
+        assertEquals(HEADER + STATE_0
+                + " 0 -> 1 [label=\"{[|0|],[|2,3|],eps}\"]\n"
+                + " 1 [shape=circle];\n}\n", write(new DotWriter().maxDepth(1)));
+
+        assertEquals(HEADER
+                + " 2 [shape=circle];\n 2 -> 3 [label=\"{[|1|]}\"]\n"
+                + " 3 [shape=doublecircle];\n}\n", write(new DotWriter().fromStates(2).maxDepth(1)));
+    }
+
+    @Test
+    public void rejectsUnknownStates() throws IOException {
+        try {
+            new DotWriter().fromStates(0, -1);
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+        DotWriter writer = new DotWriter().fromStates(1, 4);
+        StringWriter out = new StringWriter();
+        try {
+            writer.write(cycle(), out);
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+        assertEquals("", out.toString());
+    }
+}
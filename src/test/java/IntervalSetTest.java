@@ -0,0 +1,58 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.State;
+import fr.menana.automaton.Transition;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests on the value semantic and the interning of {@link fr.menana.automaton.IntervalSet}
+ */
+public class IntervalSetTest {
+
+    @Test
+    public void equalsComparesValues() {
+        IntervalSet a = IntervalSet.fromIntArray(1, 2, 3, 7);
+        IntervalSet b = IntervalSet.fromIntArray(7, 3, 2, 1);
+        IntervalSet c = IntervalSet.fromIntArray(1, 2, 3, 8);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertFalse(a.equals(c));
+        assertEquals(a.intern(), b);
+    }
+
+    @Test
+    public void internSharesInstances() {
+        IntervalSet a = IntervalSet.fromIntArray(4, 5, 6).intern();
+        IntervalSet b = IntervalSet.fromIntArray(4, 5, 6).intern();
+        assertSame(a, b);
+        assertTrue(a.isImmutable());
+        assertSame(a, a.clone());
+        assertNotSame(a, IntervalSet.fromIntArray(4, 5).intern());
+        try {
+            a.add(12);
+            fail();
+        } catch (UnsupportedOperationException ignored) {}
+    }
+
+    @Test
+    public void mergingTransitionsDoesNotAlterInternedLabels() {
+        Automaton auto = new Automaton();
+        State s1 = auto.addState();
+        State s2 = auto.addState();
+        auto.setInitial(s1);
+        auto.setAccept(s2);
+        IntervalSet label = IntervalSet.fromIntArray(1).intern();
+        auto.addTransition(s1, s2, label);
+        auto.addTransition(s1, s2, 2);
+        assertEquals(IntervalSet.fromIntArray(1), label);
+        assertTrue(auto.run(1) && auto.run(2));
+
+        Automaton min = auto.minimize();
+        Automaton clone = min.clone();
+        Transition tr = min.getInitial().getTransitions().values().iterator().next();
+        Transition ctr = clone.getInitial().getTransitions().values().iterator().next();
+        assertSame(tr.values, ctr.values);
+    }
+}
@@ -0,0 +1,80 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.LayeredGraph;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the arcs of a layered graph are exactly the ones used by the accepted words
+ */
+public class LayeredGraphTest {
+
+    /**
+     * Checks by enumeration over small domains that a value has an arc in a layer if and only if it is used by an accepted word
+     */
+    private static void assertSupports(Automaton dfa, LayeredGraph graph, int[][] domains) {
+        int n = domains.length;
+        boolean[][] used = new boolean[n][];
+        for (int i = 0; i < n; ++i)
+            used[i] = new boolean[domains[i].length];
+        int[] choice = new int[n];
+        int[] word = new int[n];
+        boolean any = false;
+        while (true) {
+            for (int i = 0; i < n; ++i)
+                word[i] = domains[i][choice[i]];
+            if (dfa.run(word)) {
+                any = true;
+                for (int i = 0; i < n; ++i)
+                    used[i][choice[i]] = true;
+            }
+            int i = n - 1;
+            while (i >= 0 && ++choice[i] == domains[i].length)
+                choice[i--] = 0;
+            if (i < 0)
+                break;
+        }
+        assertEquals(!any, graph.isEmpty());
+        for (int i = 0; i < n; ++i) {
+            IntervalSet support = graph.getSupport(i);
+            for (int k = 0; k < domains[i].length; ++k)
+                assertEquals(used[i][k], support.contains(domains[i][k]));
+        }
+    }
+
+    @Test
+    public void keepsOnlyArcsOfAcceptedWords() {
+        String[] regexps = {"(0|1)*1(0|1){3}", "0*(10*1)*0*", "(01|10)+<12>?", "(0|<-3>)*(11|[2-4])"};
+        Random r = new Random(13);
+        for (String regexp : regexps) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            for (int k = 0; k < 20; ++k) {
+                int n = 1 + r.nextInt(6);
+                int[][] domains = new int[n][];
+                IntervalSet[] sets = new IntervalSet[n];
+                for (int i = 0; i < n; ++i) {
+                    domains[i] = new int[1 + r.nextInt(3)];
+                    for (int j = 0; j < domains[i].length; ++j)
+                        domains[i][j] = r.nextInt(6) - 3 + (j == 0 ? 3 : 0);
+                    sets[i] = IntervalSet.fromIntArray(domains[i]);
+                }
+                LayeredGraph graph = Automaton.nfaFromString(regexp).unroll(sets);
+                assertSupports(dfa, graph, domains);
+                assertEquals(n, graph.getLength());
+                for (int i = 0; i < n; ++i) {
+                    for (int node = 0; node < graph.getNbNodes(i); ++node) {
+                        assertEquals(node, graph.getNode(i, graph.getState(i, node)));
+                        assertTrue(graph.getArcEnd(i, node) > graph.getArcStart(i, node));
+                    }
+                }
+            }
+        }
+        LayeredGraph graph = Automaton.dfaFromString("0*1").unroll(4);
+        assertEquals(1, graph.getNbNodes(0));
+        assertEquals(IntervalSet.fromIntArray(1), graph.getSupport(3));
+        assertTrue(Automaton.dfaFromString("0{5}").unroll(4).isEmpty());
+    }
+}
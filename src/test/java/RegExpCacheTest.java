@@ -0,0 +1,119 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.regexp.DiskRegExpCache;
+import fr.menana.automaton.regexp.RegExpCache;
+import fr.menana.automaton.regexp.RegExpParser;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests on the caches of compiled regular expressions
+ */
+public class RegExpCacheTest {
+
+    @Test
+    public void cachedAutomataAreCopies() {
+        RegExpCache cache = new RegExpCache(10, 1000);
+        Automaton a = cache.get("(0|1)*1");
+        Automaton b = cache.get("(0|1)*<1>");
+        assertNotSame(a, b);
+        assertEquals(1, cache.getLoads());
+        assertEquals(1, cache.getHits());
+        a.setAccept(a.getInitial());
+        assertFalse(cache.get("(0|1)*1").run());
+        assertTrue(b.run(0, 1));
+        try {
+            cache.get("(0 | 1)");
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        RegExpCache cache = new RegExpCache(2, 1000);
+        cache.get("0");
+        cache.get("1");
+        cache.get("0");
+        cache.get("2");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.get("0");
+        assertEquals(3, cache.getLoads());
+        cache.get("1");
+        assertEquals(4, cache.getLoads());
+
+        RegExpCache light = new RegExpCache(10, 5);
+        light.get("0123456789");
+        assertEquals(0, light.size());
+        assertEquals(0, light.getWeight());
+    }
+
+    @Test
+    public void concurrentMissesCompileOnce() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger compilations = new AtomicInteger();
+        final RegExpCache cache = new RegExpCache(10, 1000, regexp -> {
+            compilations.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return RegExpParser.toDFA(regexp);
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Future<?>[] futures = new Future<?>[8];
+        for (int i = 0; i < futures.length; ++i) {
+            futures[i] = pool.submit(() -> {
+                start.await();
+                return cache.get("(01)+");
+            });
+        }
+        start.countDown();
+        for (Future<?> f : futures)
+            assertTrue(((Automaton) f.get()).run(0, 1, 0, 1));
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        assertEquals(1, compilations.get());
+        assertEquals(1, cache.getLoads());
+    }
+
+    @Test
+    public void diskCacheSurvivesNewInstances() throws IOException {
+        Path dir = Files.createTempDirectory("regexp-cache");
+        dir.toFile().deleteOnExit();
+        DiskRegExpCache disk = new DiskRegExpCache(dir, 1 << 20);
+        Automaton compiled = disk.get("(0|1)*1(0|1){3}");
+        assertEquals(1, disk.getMisses());
+
+        DiskRegExpCache warm = new DiskRegExpCache(dir, 1 << 20, "dev", regexp -> {
+            throw new AssertionError("should be loaded from disk");
+        });
+        Automaton loaded = new RegExpCache(10, 1000, warm).get("(0|1)*1(0|1){3}");
+        assertEquals(1, warm.getHits());
+        CompactAutomatonTest.assertSameLanguage(compiled, loaded.toCompact());
+
+        DiskRegExpCache other = new DiskRegExpCache(dir, 1 << 20, "other", RegExpParser::toDFA);
+        other.get("(0|1)*1(0|1){3}");
+        assertEquals(1, other.getMisses());
+
+        DiskRegExpCache small = new DiskRegExpCache(dir, 1, "small", RegExpParser::toDFA);
+        small.get("0");
+        assertTrue(small.getEvictions() >= 2);
+        File[] left = dir.toFile().listFiles();
+        assertNotNull(left);
+        for (File f : left)
+            f.delete();
+    }
+}
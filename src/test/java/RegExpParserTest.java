@@ -0,0 +1,183 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.regexp.CountingMatcher;
+import fr.menana.automaton.regexp.RegExp;
+import fr.menana.automaton.regexp.RegExpKleeneRange;
+import fr.menana.automaton.regexp.RegExpParser;
+import fr.menana.automaton.regexp.RegExpSimplifier;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests on the parsing of regular expressions
+ */
+public class RegExpParserTest {
+
+    @Test
+    public void parsesLongAndDeepExpressions() {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 100000; ++i)
+            b.append(i % 2 == 0 ? "0" : "<1>");
+        Automaton auto = RegExpParser.toNFA(b.toString());
+        int[] word = new int[100000];
+        for (int i = 1; i < word.length; i += 2)
+            word[i] = 1;
+        assertTrue(auto.toCompact().run(word));
+
+        StringBuilder deep = new StringBuilder();
+        for (int i = 0; i < 100000; ++i)
+            deep.append("(0");
+        for (int i = 0; i < 100000; ++i)
+            deep.append(")");
+        assertNotNull(RegExpParser.toRegExp(deep.toString()));
+        int[] zeros = new int[100000];
+        assertTrue(RegExpParser.toNFA(deep.toString()).toCompact().run(zeros));
+        assertFalse(RegExpParser.toNFA(deep.toString()).toCompact().run(new int[99999]));
+        assertTrue(RegExpParser.toRegExp(deep.toString()).toNFA().toCompact().run(zeros));
+
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < 5000; ++i)
+            nested.append("(0");
+        for (int i = 0; i < 5000; ++i)
+            nested.append(")");
+        assertTrue(RegExpParser.toNFA(nested.toString()).toCompact().run(new int[5000]));
+        // minimizing a long chain is slow, a shallower one is enough to go through the whole pipeline
+        Automaton dfa = RegExpParser.toDFA(nested.substring(0, 4000) + nested.substring(nested.length() - 2000));
+        assertTrue(dfa.run(new int[2000]));
+        assertFalse(dfa.run(new int[1999]));
+        CompactAutomaton stars = RegExpParser.toNFA(nested.toString().replace(")", ")*")).toCompact();
+        assertTrue(stars.run(new int[3]));
+        assertFalse(stars.run(0, 1));
+
+        StringBuilder alternatives = new StringBuilder("(0");
+        for (int i = 1; i < 10000; ++i)
+            alternatives.append("|<").append(i).append('>');
+        alternatives.append(")*");
+        CompactAutomaton nfa = RegExpParser.toNFA(alternatives.toString()).toCompact();
+        assertTrue(nfa.run(9999, 0, 42));
+        assertFalse(nfa.run(10000));
+    }
+
+    @Test
+    public void parsesOperatorsAndIntegers() {
+        Automaton auto = RegExpParser.toDFA("<4><-12>(0|)+?{2}<2147483647>");
+        assertTrue(auto.run(4, -12, Integer.MAX_VALUE));
+        assertTrue(auto.run(4, -12, 0, 0, 0, Integer.MAX_VALUE));
+        assertFalse(auto.run(4, -12, 0));
+        assertTrue(RegExpParser.toDFA("(0|1){1,<12>}").run(0, 1, 1));
+    }
+
+    @Test
+    public void rejectsMalformedExpressions() {
+        String[] malformed = {"[", "[]", "[5-2]", "[0-]", "[.]", "(0|1", "0)1", "<12", "<>", "a", "0{1", "<99999999999>",
+                "1{3,2}", "1{-1}", "1{-2,3}", "1{}", "1{2,}", "1{,2}", "1{1,2,3}", "1{99999999999}"};
+        for (String regexp : malformed) {
+            try {
+                RegExpParser.toRegExp(regexp);
+                fail(regexp);
+            } catch (IllegalArgumentException ignored) {}
+        }
+    }
+
+    @Test
+    public void classesAreSingleTransitions() {
+        Automaton auto = RegExpParser.toNFA("[<100>-<5000><7000>]");
+        assertEquals(2, auto.getNbStates());
+        assertEquals(1, auto.getAllTransitions().size());
+        Automaton dfa = RegExpParser.toDFA("[<100>-<5000><7000>]+[^0-9]");
+        assertTrue(dfa.run(100, 4999, 7000, -1));
+        assertTrue(dfa.run(5000, Integer.MAX_VALUE));
+        assertFalse(dfa.run(5001, 10));
+        assertFalse(dfa.run(100, 9));
+        assertEquals("[0-35<12>]", RegExpParser.toRegExp("[<12>5<0>-3]").toString());
+    }
+
+    @Test
+    public void countedRepetitions() {
+        String[] regexps = {"(01|1){2,5}", "(0*1){3}", "(0?){0,4}", "(1|<12>){0,1}", "(0(1|))*{2,3}"};
+        Random r = new Random(3);
+        for (String regexp : regexps) {
+            Automaton dfa = RegExpParser.toDFA(regexp);
+            CountingMatcher counting = ((RegExpKleeneRange) RegExpParser.toRegExp(regexp)).toCountingMatcher();
+            for (int i = 0; i < 3000; ++i) {
+                int[] word = CompactAutomatonTest.randomWord(r);
+                assertEquals(regexp, dfa.run(word), counting.matches(word));
+            }
+        }
+        Automaton big = RegExpParser.toNFA("(01|1){1000,5000}");
+        assertTrue(big.getNbStates() < 100000);
+        int[] word = new int[1500];
+        Arrays.fill(word, 1);
+        assertTrue(big.toCompact().run(word));
+        assertFalse(big.toCompact().run(new int[]{1, 1}));
+        CountingMatcher counting = ((RegExpKleeneRange) RegExpParser.toRegExp("(01|1){1000,5000}")).toCountingMatcher();
+        assertTrue(counting.matches(word));
+        assertFalse(counting.matches(1, 1));
+    }
+
+    @Test
+    public void simplificationKeepsLanguage() {
+        String[] regexps = {"(0|1|0|<12>)*", "(012|013|0)+", "(10|20|(30))?", "((0*)*|(1+)*)*", "(0|)(|1)(.|<3>)", "(0{1,1}1|1{0}|01)",
+                "(0|1)*1(0|1){3}", "(01|10)+<12>?", "((01)*|0(10)*1)"};
+        Random r = new Random(5);
+        for (String regexp : regexps) {
+            Automaton expected = RegExpParser.toRegExp(regexp).toNFA().minimize();
+            Automaton nfa = RegExpParser.toNFA(regexp);
+            for (int i = 0; i < 3000; ++i) {
+                int[] word = CompactAutomatonTest.randomWord(r);
+                assertEquals(regexp, expected.run(word), nfa.toCompact().run(word));
+            }
+        }
+        assertEquals("[0-2<12>]", RegExpSimplifier.simplify(RegExpParser.toRegExp("(0|(1|<12>)|2|0)")).toString());
+        assertEquals("0(|1[2-3])", RegExpSimplifier.simplify(RegExpParser.toRegExp("(012|013|0)")).toString());
+        assertEquals("[1-2]0", RegExpSimplifier.simplify(RegExpParser.toRegExp("(10|20)")).toString());
+
+        StringBuilder deep = new StringBuilder();
+        StringBuilder stars = new StringBuilder();
+        for (int i = 0; i < 100000; ++i) {
+            deep.append("(0");
+            stars.append('(');
+        }
+        stars.append('0');
+        for (int i = 0; i < 100000; ++i) {
+            deep.append(')');
+            stars.append(")*");
+        }
+        assertEquals(100000, RegExpSimplifier.simplify(RegExpParser.toRegExp(deep.toString())).toString().length());
+        assertEquals("(0)*", RegExpSimplifier.simplify(RegExpParser.toRegExp(stars.toString())).toString());
+    }
+
+    @Test
+    public void simplifiesDeepUnionsInLinearTime() {
+        // (2|1(2|1(...(2|10)...))) accepts 1^k 2 for k < n and 1^n 0
+        int n = 20000;
+        StringBuilder nested = new StringBuilder();
+        for (int i = 0; i < n; ++i)
+            nested.append("(2|1");
+        nested.append('0');
+        for (int i = 0; i < n; ++i)
+            nested.append(')');
+        CompactAutomaton nfa = RegExpParser.toNFA(nested.toString()).toCompact();
+        int[] word = new int[n + 1];
+        Arrays.fill(word, 1);
+        word[n] = 0;
+        assertTrue(nfa.run(word));
+        word[n] = 2;
+        assertFalse(nfa.run(word));
+        word[n - 1] = 2;
+        assertTrue(nfa.run(Arrays.copyOf(word, n)));
+        assertTrue(nfa.run(1, 1, 2));
+        assertFalse(nfa.run(1, 1));
+
+        // two alternatives sharing a prefix of n symbols
+        StringBuilder common = new StringBuilder();
+        for (int i = 0; i < n; ++i)
+            common.append('0');
+        RegExp simplified = RegExpSimplifier.simplify(RegExpParser.toRegExp("(" + common + "1|" + common + "2)"));
+        assertEquals(common + "[1-2]", simplified.toString());
+    }
+}
@@ -0,0 +1,88 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.Interval;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.LayeredGraph;
+import fr.menana.automaton.RegularFilter;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the incremental filter against unrolling the automaton from scratch over the current domains
+ */
+public class RegularFilterTest {
+
+    private static void assertSupports(CompactAutomaton dfa, IntervalSet[] domains, RegularFilter filter) {
+        LayeredGraph graph = LayeredGraph.unroll(dfa, domains);
+        assertEquals(graph.isEmpty(), filter.isFailed());
+        for (int i = 0; i < domains.length; ++i) {
+            assertEquals(domains[i], filter.getDomain(i));
+            assertEquals(graph.getSupport(i), filter.getSupport(i));
+        }
+    }
+
+    @Test
+    public void filtersLikeUnrolling() {
+        String[] regexps = {"(0|1)*1(0|1){2}", "([0-9]|<20>)*(5|[7-8])[0-3]", "(01|2[3-40])*[0-100]"};
+        Random r = new Random(11);
+        for (String regexp : regexps) {
+            CompactAutomaton dfa = Automaton.dfaFromString(regexp).toCompact();
+            for (int k = 0; k < 20; ++k) {
+                int length = 1 + r.nextInt(6);
+                IntervalSet[] domains = new IntervalSet[length];
+                Arrays.fill(domains, IntervalSet.fromInterval(new Interval(-2, 45)).intern());
+                RegularFilter filter = new RegularFilter(dfa, domains);
+                assertSupports(dfa, domains, filter);
+                Deque<IntervalSet[]> saved = new ArrayDeque<>();
+                for (int step = 0; step < 30; ++step) {
+                    if (r.nextInt(3) == 0 && filter.getWorldIndex() > 0) {
+                        filter.worldPop();
+                        domains = saved.pop();
+                    }
+                    else {
+                        filter.worldPush();
+                        saved.push(domains.clone());
+                        int position = r.nextInt(length);
+                        int min = r.nextInt(30) - 2;
+                        IntervalSet removed = IntervalSet.fromInterval(new Interval(min, min + r.nextInt(4)));
+                        filter.remove(position, removed);
+                        domains[position] = domains[position].minus(removed).intern();
+                    }
+                    assertSupports(dfa, domains, filter);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void detectsFailure() {
+        RegularFilter filter = new RegularFilter(Automaton.dfaFromString("0*1").toCompact(), null, null, null);
+        assertEquals(IntervalSet.fromIntArray(0), filter.getSupport(0));
+        assertEquals(IntervalSet.fromIntArray(1), filter.getSupport(2));
+        filter.worldPush();
+        assertFalse(filter.remove(1, IntervalSet.fromIntArray(0)));
+        assertTrue(filter.isFailed());
+        assertTrue(filter.getSupport(0).isEmpty());
+        filter.worldPop();
+        assertFalse(filter.isFailed());
+        assertEquals(IntervalSet.fromIntArray(1), filter.getSupport(2));
+    }
+
+    @Test
+    public void copiesTheDomains() {
+        IntervalSet domain = IntervalSet.fromIntArray(0, 1);
+        RegularFilter filter = new RegularFilter(Automaton.dfaFromString("0*1").toCompact(), domain, domain);
+        domain.add(5);
+        assertTrue(filter.getDomain(0).isImmutable());
+        assertEquals(IntervalSet.fromIntArray(0, 1), filter.getDomain(0));
+        assertEquals(IntervalSet.fromIntArray(0), filter.getSupport(0));
+        assertTrue(filter.restrict(1, IntervalSet.fromIntArray(1, 5)));
+        assertEquals(IntervalSet.fromIntArray(1), filter.getDomain(1));
+    }
+}
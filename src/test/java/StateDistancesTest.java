@@ -0,0 +1,72 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.AutomatonBuilder;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.StateDistances;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the distances to acceptance and the early rejecting run
+ */
+public class StateDistancesTest {
+
+    @Test
+    public void measuresDistances() {
+        CompactAutomaton dfa = Automaton.dfaFromString("01{2,4}|2(3|4)*5").toCompact();
+        StateDistances distances = new StateDistances(dfa);
+        int init = dfa.getInitialIndex();
+        assertEquals(2, distances.getMinDistance(init));
+        assertEquals(StateDistances.INFINITE, distances.getMaxDistance(init));
+        assertTrue(distances.isViablePrefix(0, 1, 1));
+        assertFalse(distances.isViablePrefix(0, 1, 1, 1, 1, 1));
+        assertFalse(distances.isViablePrefix(new int[]{0}, 0, 2));
+        assertTrue(distances.isViablePrefix(new int[]{0}, 0, 3));
+        assertTrue(distances.isViablePrefix(new int[]{2, 3}, 50, StateDistances.INFINITE));
+        assertFalse(distances.isViablePrefix(3));
+
+        CompactAutomaton finite = Automaton.dfaFromString("0(1|23)").toCompact();
+        StateDistances bounded = new StateDistances(finite);
+        assertEquals(2, bounded.getMinDistance(finite.getInitialIndex()));
+        assertEquals(3, bounded.getMaxDistance(finite.getInitialIndex()));
+        for (int s = 0; s < finite.getNbStates(); ++s)
+            assertEquals(bounded.isDead(s), bounded.getMaxDistance(s) < 0);
+
+        // 0 | 01 | 0 2* 3 without merging the common prefixes
+        AutomatonBuilder builder = new AutomatonBuilder();
+        int first = builder.addStates(6);
+        builder.setInitial(first);
+        builder.addEdge(first, first + 1, 0);
+        builder.addEdge(first, first + 2, 0);
+        builder.addEdge(first + 2, first + 3, 1);
+        builder.addEdge(first, first + 4, 0);
+        builder.addEdge(first + 4, first + 4, 2);
+        builder.addEdge(first + 4, first + 5, 3);
+        builder.setAccept(first + 1, true);
+        builder.setAccept(first + 3, true);
+        builder.setAccept(first + 5, true);
+        StateDistances nondeterministic = new StateDistances(builder.buildCompact());
+        assertTrue(nondeterministic.run(0));
+        assertTrue(nondeterministic.run(0, 1));
+        assertTrue(nondeterministic.run(0, 2, 2, 3));
+        assertFalse(nondeterministic.run(0, 2, 1));
+        assertTrue(nondeterministic.isViablePrefix(new int[]{0, 2}, 4, 4));
+        assertFalse(nondeterministic.isViablePrefix(new int[]{0, 1}, 3, 5));
+    }
+
+    @Test
+    public void runsLikeAutomaton() {
+        String[] regexps = {"(0|1)*1(0|1){3}", "0*(10*1)*0*", "(01|10)+<12>?", "(0|<-3>)*(11|.)", "0{2,5}1?"};
+        for (String regexp : regexps) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            StateDistances distances = new StateDistances(dfa.toCompact());
+            Random r = new Random(42);
+            for (int i = 0; i < 2000; ++i) {
+                int[] word = CompactAutomatonTest.randomWord(r);
+                assertEquals(dfa.run(word), distances.run(word));
+            }
+        }
+    }
+}
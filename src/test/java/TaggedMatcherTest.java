@@ -0,0 +1,63 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.regexp.RegExpParser;
+import fr.menana.automaton.regexp.TaggedMatcher;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests on the extraction of capture groups
+ */
+public class TaggedMatcherTest {
+
+    @Test
+    public void reportsGroupOffsets() {
+        TaggedMatcher matcher = new TaggedMatcher("(0*)(1+)(?:2|(3))<12>?");
+        assertEquals(4, matcher.getNbGroups());
+        TaggedMatcher.Match m = matcher.match(0, 0, 1, 1, 1, 3, 12);
+        assertNotNull(m);
+        assertEquals(0, m.getStart(0));
+        assertEquals(7, m.getEnd(0));
+        assertEquals(0, m.getStart(1));
+        assertEquals(2, m.getEnd(1));
+        assertEquals(2, m.getStart(2));
+        assertEquals(5, m.getEnd(2));
+        assertEquals(5, m.getStart(3));
+        assertEquals(6, m.getEnd(3));
+
+        m = matcher.match(1, 2);
+        assertEquals(0, m.getStart(1));
+        assertEquals(0, m.getEnd(1));
+        assertEquals(-1, m.getStart(3));
+        assertNull(matcher.match(0, 2));
+    }
+
+    @Test
+    public void repetitionsAreGreedyAndKeepTheLastIteration() {
+        TaggedMatcher matcher = new TaggedMatcher("(0|01)*(1*)");
+        TaggedMatcher.Match m = matcher.match(0, 1, 0, 1, 1);
+        // the first alternative is preferred, so the star stops before the trailing ones
+        assertEquals(2, m.getStart(1));
+        assertEquals(3, m.getEnd(1));
+        assertEquals(3, m.getStart(2));
+        m = new TaggedMatcher("(0|1){2,3}").match(1, 0, 1);
+        assertEquals(2, m.getStart(1));
+        assertEquals(3, m.getEnd(1));
+    }
+
+    @Test
+    public void acceptsTheLanguageOfTheExpression() {
+        String[] regexps = {"(0|1)*1(0|1){3}", "0*(10*1)*0*", "((01|10)+)<12>?", "(0|<-3>)*(11|.)", "(()|0)*1", "([0-3]{1,2})+"};
+        Random r = new Random(9);
+        for (String regexp : regexps) {
+            Automaton dfa = RegExpParser.toDFA(regexp);
+            TaggedMatcher matcher = new TaggedMatcher(regexp);
+            for (int i = 0; i < 3000; ++i) {
+                int[] word = CompactAutomatonTest.randomWord(r);
+                assertEquals(regexp, dfa.run(word), matcher.match(word) != null);
+            }
+        }
+    }
+}
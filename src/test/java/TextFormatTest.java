@@ -0,0 +1,69 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.io.AttFormat;
+import fr.menana.automaton.io.BaFormat;
+import fr.menana.automaton.io.SymbolTable;
+import fr.menana.automaton.io.TextFormat;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trips of automata through the AT&amp;T and BA text formats
+ */
+public class TextFormatTest {
+
+    private static final String[] REGEXPS = {
+            "(0|1)*1(0|1){3}",
+            "0*(10*1)*0*",
+            "(01|10)+<12>?",
+            "(0|<-3>)*(11|4)",
+    };
+
+    private static CompactAutomaton roundTrip(TextFormat format, CompactAutomaton compact) throws IOException {
+        StringWriter out = new StringWriter();
+        format.write(compact, out);
+        return format.read(new StringReader(out.toString()));
+    }
+
+    @Test
+    public void attRoundTrip() throws IOException {
+        for (String regexp : REGEXPS) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            AttFormat format = new AttFormat(SymbolTable.numeric());
+            CompactAutomatonTest.assertSameLanguage(dfa, roundTrip(format, Automaton.nfaFromString(regexp).toCompact()));
+            CompactAutomatonTest.assertSameLanguage(dfa, roundTrip(format, dfa.toCompact()));
+        }
+    }
+
+    @Test
+    public void baRoundTrip() throws IOException {
+        for (String regexp : REGEXPS) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            CompactAutomatonTest.assertSameLanguage(dfa, roundTrip(new BaFormat(SymbolTable.numeric()), dfa.toCompact()));
+        }
+    }
+
+    @Test
+    public void readsNamedSymbols() throws IOException {
+        SymbolTable symbols = new SymbolTable();
+        CompactAutomaton att = new AttFormat(symbols).read(new StringReader("q0 q1 a\nq1 q1 b\nq1 q0 <eps>\nq1\n"));
+        int a = symbols.toId("a");
+        int b = symbols.toId("b");
+        assertTrue(att.run(a, b, b, a));
+        assertFalse(att.run(b));
+        CompactAutomaton ba = new BaFormat(symbols).read(new StringReader("[x]\na,[x]->[y]\nb,[y]->[y]\n[y]\n"));
+        assertTrue(ba.run(a, b, b));
+        assertFalse(ba.run(a, a));
+        try {
+            new AttFormat(SymbolTable.numeric()).read(new StringReader("0 1 x\n"));
+            fail();
+        } catch (IOException ignored) {}
+    }
+}
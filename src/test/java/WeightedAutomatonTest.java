@@ -0,0 +1,77 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.CompactAutomaton;
+import fr.menana.automaton.IntervalSet;
+import fr.menana.automaton.WeightedAutomaton;
+import fr.menana.automaton.WeightedLayeredGraph;
+import fr.menana.automaton.WordIterator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the cost queries of weighted automata against the enumeration of their words
+ */
+public class WeightedAutomatonTest {
+
+    @Test
+    public void costsMatchEnumeration() {
+        CompactAutomaton dfa = Automaton.dfaFromString("[0-4]*(2|3)[0-4]").toCompact();
+        Random r = new Random(3);
+        for (int k = 0; k < 20; ++k) {
+            WeightedAutomaton weighted = new WeightedAutomaton(dfa);
+            for (int s = 0; s < dfa.getNbStates(); ++s) {
+                for (int c = 0; c < 3; ++c) {
+                    int min = r.nextInt(5);
+                    weighted.setCost(s, min, min + r.nextInt(3), r.nextInt(21) - 10);
+                }
+            }
+            int length = 4;
+            List<int[]> words = new ArrayList<>();
+            new WordIterator(dfa, WordIterator.Order.SHORTLEX, length, length).forEachRemaining(words::add);
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (int[] word : words) {
+                min = Math.min(min, weighted.cost(word));
+                max = Math.max(max, weighted.cost(word));
+            }
+            WeightedLayeredGraph graph = weighted.unroll(length);
+            assertEquals(min, graph.getMinCost());
+            assertEquals(max, graph.getMaxCost());
+            assertEquals(min, weighted.cost(graph.getMinCostWord()));
+            assertEquals(max, weighted.cost(graph.getMaxCostWord()));
+
+            long bound = (min + max) / 2;
+            IntervalSet[] supports = graph.filter(Long.MIN_VALUE, bound);
+            for (int i = 0; i < length; ++i) {
+                IntervalSet expected = new IntervalSet();
+                for (int[] word : words) {
+                    if (weighted.cost(word) <= bound)
+                        expected.add(word[i]);
+                }
+                assertEquals(expected, supports[i]);
+            }
+            for (IntervalSet support : graph.filter(max + 1, Long.MAX_VALUE))
+                assertTrue(support.isEmpty());
+        }
+    }
+
+    @Test
+    public void costsDependOnTheState() {
+        Automaton auto = Automaton.dfaFromString("(0|1)*");
+        WeightedAutomaton weighted = new WeightedAutomaton(auto.toCompact());
+        weighted.setCost(0, IntervalSet.fromIntArray(0, 1), 5);
+        weighted.setCost(0, 1, 1, -2);
+        assertEquals(5, weighted.getCost(0, 0));
+        assertEquals(-2, weighted.getCost(0, 1));
+        assertEquals(0, weighted.getCost(0, 2));
+        WeightedLayeredGraph graph = weighted.unroll(IntervalSet.fromIntArray(0, 1), IntervalSet.fromIntArray(0));
+        assertEquals(3, graph.getMinCost());
+        assertArrayEquals(new int[]{1, 0}, graph.getMinCostWord());
+        assertArrayEquals(new int[]{0, 0}, graph.getMaxCostWord());
+        assertTrue(weighted.unroll(IntervalSet.fromIntArray(2)).isEmpty());
+    }
+}
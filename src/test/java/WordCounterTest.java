@@ -0,0 +1,84 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.WordCounter;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the number of accepted words against enumeration and closed forms
+ */
+public class WordCounterTest {
+
+    private static long enumerate(Automaton dfa, int n, int maxValue) {
+        int[] word = new int[n];
+        long count = 0;
+        while (true) {
+            if (dfa.run(word))
+                ++count;
+            int i = n - 1;
+            while (i >= 0 && ++word[i] > maxValue)
+                word[i--] = 0;
+            if (i < 0)
+                return count;
+        }
+    }
+
+    @Test
+    public void countsLikeEnumeration() {
+        String[] regexps = {"(0|1)*1(0|1){3}", "0*(10*1)*0*", "(01|10)+2?", "(0|[1-2])*(11|2)"};
+        for (String regexp : regexps) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            long upTo = 0;
+            for (int n = 0; n <= 7; ++n) {
+                long expected = enumerate(dfa, n, 2);
+                upTo += expected;
+                assertEquals(regexp, BigInteger.valueOf(expected), dfa.countWords(n));
+                assertEquals(regexp, BigInteger.valueOf(upTo), dfa.countWordsUpTo(n));
+                assertEquals(BigInteger.valueOf(expected), Automaton.nfaFromString(regexp).countWords(n));
+            }
+        }
+    }
+
+    @Test
+    public void countsBeyondLongAndForHugeLengths() {
+        Automaton any = Automaton.dfaFromString(".*");
+        BigInteger values = BigInteger.ONE.shiftLeft(32);
+        assertEquals(values.pow(3), any.countWords(3));
+        assertEquals(values.pow(2).add(values).add(BigInteger.ONE), any.countWordsUpTo(2));
+
+        Automaton binary = Automaton.dfaFromString("[0-1]*");
+        assertEquals(BigInteger.ONE.shiftLeft(100), binary.countWords(100));
+        assertEquals(BigInteger.ONE.shiftLeft(101).subtract(BigInteger.ONE), binary.countWordsUpTo(100));
+        assertEquals(BigInteger.ONE.shiftLeft(100000), binary.countWords(100000));
+
+        // words without two consecutive ones are counted by Fibonacci numbers
+        Automaton fibonacci = Automaton.dfaFromString("(0|10)*(1|)");
+        BigInteger a = BigInteger.ONE;
+        BigInteger b = BigInteger.valueOf(2);
+        for (int n = 1; n < 300; ++n) {
+            BigInteger c = a.add(b);
+            a = b;
+            b = c;
+        }
+        assertEquals(a, fibonacci.countWords(299));
+        assertEquals(WordCounter.count(fibonacci.toCompact(), 5000), fibonacci.countWords(4999).add(fibonacci.countWords(4998)));
+        assertEquals(BigInteger.valueOf(5000 / 2 + 1), Automaton.dfaFromString("(00)*").countWordsUpTo(5000));
+    }
+
+    @Test
+    public void countsNearTheLargestLength() {
+        Automaton cycle = Automaton.dfaFromString("(012)*");
+        long max = Long.MAX_VALUE;
+        // 2^63 - 2 is a multiple of 3
+        assertEquals(BigInteger.ONE, cycle.countWords(max - 1));
+        assertEquals(BigInteger.ZERO, cycle.countWords(max));
+        assertEquals(BigInteger.valueOf(max / 3 + 1), cycle.countWordsUpTo(max));
+        assertEquals(BigInteger.valueOf((max - 1) / 3 + 1), cycle.countWordsUpTo(max - 1));
+
+        Automaton binary = Automaton.dfaFromString("[0-1]*");
+        assertEquals(BigInteger.valueOf(max), binary.countWordsUpTo(62));
+        assertEquals(BigInteger.ONE.shiftLeft(63), binary.countWords(63));
+    }
+}
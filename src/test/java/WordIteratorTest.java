@@ -0,0 +1,132 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.WordIterator;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the enumeration of accepted words against a brute force one
+ */
+public class WordIteratorTest {
+
+    private static final Comparator<int[]> LEXICOGRAPHIC = (a, b) -> {
+        for (int i = 0; i < Math.min(a.length, b.length); ++i) {
+            if (a[i] != b[i])
+                return Integer.compare(a[i], b[i]);
+        }
+        return Integer.compare(a.length, b.length);
+    };
+
+    private static final Comparator<int[]> SHORTLEX = Comparator.<int[]>comparingInt(w -> w.length).thenComparing(LEXICOGRAPHIC);
+
+    private static List<int[]> bruteForce(Automaton dfa, int maxLength, int minLength) {
+        List<int[]> words = new ArrayList<>();
+        List<int[]> layer = new ArrayList<>();
+        layer.add(new int[0]);
+        for (int length = 0; length <= maxLength; ++length) {
+            List<int[]> nextLayer = new ArrayList<>();
+            for (int[] word : layer) {
+                if (length >= minLength && dfa.run(word))
+                    words.add(word);
+                for (int v = -1; v <= 3; ++v) {
+                    int[] longer = Arrays.copyOf(word, length + 1);
+                    longer[length] = v;
+                    nextLayer.add(longer);
+                }
+            }
+            layer = nextLayer;
+        }
+        return words;
+    }
+
+    private static List<int[]> take(WordIterator it, int max) {
+        List<int[]> words = new ArrayList<>();
+        while (words.size() < max && it.hasNext())
+            words.add(it.next());
+        return words;
+    }
+
+    private static void assertSameWords(List<int[]> expected, List<int[]> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i)
+            assertArrayEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test
+    public void enumeratesInOrder() {
+        String[] regexps = {"(0|1)*1(0|1)", "(0[1-3])*|<-1>2?", "((00)*|1{2,3})3", "[0-2]{1,3}"};
+        for (String regexp : regexps) {
+            Automaton dfa = Automaton.dfaFromString(regexp);
+            List<int[]> expected = bruteForce(dfa, 5, 2);
+            expected.sort(SHORTLEX);
+            assertSameWords(expected, take(dfa.words(WordIterator.Order.SHORTLEX, 2, 5), Integer.MAX_VALUE));
+            expected.sort(LEXICOGRAPHIC);
+            assertSameWords(expected, take(dfa.words(WordIterator.Order.LEXICOGRAPHIC, 2, 5), Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void boundsFiniteAndInfiniteLanguages() {
+        Automaton finite = Automaton.dfaFromString("[0-2]{1,3}|3{6}");
+        List<int[]> all = take(finite.words(WordIterator.Order.LEXICOGRAPHIC, 0, Integer.MAX_VALUE), Integer.MAX_VALUE);
+        assertEquals(3 + 9 + 27 + 1, all.size());
+        assertArrayEquals(new int[]{3, 3, 3, 3, 3, 3}, all.get(all.size() - 1));
+        assertEquals(all.size(), take(finite.words(), Integer.MAX_VALUE).size());
+
+        Automaton infinite = Automaton.dfaFromString("(00)*");
+        List<int[]> first = take(infinite.words(), 4);
+        assertEquals(4, first.size());
+        assertEquals(6, first.get(3).length);
+        try {
+            infinite.words(WordIterator.Order.LEXICOGRAPHIC, 0, Integer.MAX_VALUE);
+            fail();
+        } catch (IllegalArgumentException ignored) {}
+        List<int[]> longest = take(infinite.words(WordIterator.Order.LEXICOGRAPHIC, 99997, 100000), Integer.MAX_VALUE);
+        assertEquals(2, longest.size());
+        assertEquals(99998, longest.get(0).length);
+        assertEquals(100000, longest.get(1).length);
+        assertFalse(Automaton.dfaFromString("0<4>").words(WordIterator.Order.SHORTLEX, 3, 10).hasNext());
+    }
+
+    @Test
+    public void pagesThroughLargeLanguagesLazily() {
+        Automaton dfa = Automaton.dfaFromString("[0-999]{3}.");
+        WordIterator it = dfa.words();
+        assertArrayEquals(new int[]{0, 0, 0, Integer.MIN_VALUE}, it.next());
+        assertArrayEquals(new int[]{0, 0, 0, Integer.MIN_VALUE + 1}, it.next());
+    }
+
+    @Test
+    public void walksLongWordsWithPeriodicSets() {
+        Automaton dfa = Automaton.dfaFromString("(000)*1|(00)*2");
+        List<int[]> expected = new ArrayList<>();
+        for (int length = 1; length <= 30; ++length) {
+            if (length % 3 == 1 || length % 2 == 1) {
+                int[] word = new int[length];
+                word[length - 1] = length % 3 == 1 ? 1 : 2;
+                expected.add(word);
+                if (length % 3 == 1 && length % 2 == 1) {
+                    word = word.clone();
+                    word[length - 1] = 2;
+                    expected.add(word);
+                }
+            }
+        }
+        assertSameWords(expected, take(dfa.words(WordIterator.Order.SHORTLEX, 0, 30), Integer.MAX_VALUE));
+        expected.sort(LEXICOGRAPHIC);
+        assertSameWords(expected, take(dfa.words(WordIterator.Order.LEXICOGRAPHIC, 0, 30), Integer.MAX_VALUE));
+
+        // the sets allowed at each depth are not allocated for the whole length
+        List<int[]> first = take(Automaton.dfaFromString("(01)*").words(WordIterator.Order.LEXICOGRAPHIC, 0, Integer.MAX_VALUE - 1), 4);
+        assertEquals(4, first.size());
+        assertArrayEquals(new int[]{0, 1, 0, 1, 0, 1}, first.get(3));
+        int[] word = dfa.words(WordIterator.Order.SHORTLEX, 1000000, Integer.MAX_VALUE).next();
+        assertEquals(1000000, word.length);
+        assertEquals(1, word[999999]);
+    }
+}
@@ -0,0 +1,48 @@
+import fr.menana.automaton.Automaton;
+import fr.menana.automaton.WordSampler;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that sampled words are accepted and evenly distributed
+ */
+public class WordSamplerTest {
+
+    @Test
+    public void samplesUniformly() {
+        Automaton dfa = Automaton.dfaFromString("(0|[1-3]|<10>)*1(0|1)");
+        WordSampler sampler = dfa.sampler(4);
+        int nbWords = sampler.getNbWords().intValueExact();
+        assertEquals(dfa.countWords(4).intValueExact(), nbWords);
+        Map<String,Integer> frequencies = new HashMap<>();
+        SplittableRandom random = new SplittableRandom(1);
+        int nbSamples = 400 * nbWords;
+        for (int[] word : sampler.sample(nbSamples, random)) {
+            assertTrue(dfa.run(word));
+            frequencies.merge(Arrays.toString(word), 1, Integer::sum);
+        }
+        assertEquals(nbWords, frequencies.size());
+        for (int f : frequencies.values())
+            assertTrue(f > 300 && f < 500);
+    }
+
+    @Test
+    public void samplesHugeLanguagesInParallel() {
+        Automaton dfa = Automaton.dfaFromString(".{2}(0|.)<-5>");
+        WordSampler sampler = new WordSampler(dfa.toCompact(), 4);
+        assertEquals(BigInteger.ONE.shiftLeft(96), sampler.getNbWords());
+        int[][] words = sampler.sample(10000, 3L);
+        for (int[] word : words)
+            assertTrue(dfa.run(word));
+        assertTrue(Arrays.deepEquals(words, sampler.sample(10000, 3L)));
+        assertFalse(Arrays.equals(words[0], words[1]));
+        assertTrue(Automaton.dfaFromString("0{3}").sampler(4).isEmpty());
+    }
+}